@@ -0,0 +1,254 @@
+/**
+ * A change made through a {@link BookingService}, as published on a {@link BookingEventBus}.
+ *
+ * Events live in the slots of the bus's ring and are reused once every
+ * consumer has passed them, so a handler must copy out whatever it keeps
+ * after {@link BookingEventHandler#onEvent} returns. Which fields an event
+ * carries depends on its type; the others are left at zero or null.
+ */
+public class BookingEvent {
+
+    /**
+     * What changed.
+     */
+    public enum Type {
+        /** A hotel with no rooms was created: hotel, amount (base price). */
+        HOTEL_CREATED,
+        /** A hotel was renamed: hotel (old name), text (new name). */
+        HOTEL_RENAMED,
+        /** A hotel was removed: hotel. */
+        HOTEL_REMOVED,
+        /** A room was added: hotel, room number, room type, amount (room base price). */
+        ROOM_ADDED,
+        /** A room was removed: hotel, room number. */
+        ROOM_REMOVED,
+        /** A hotel's base price changed: hotel, amount (new base price). */
+        PRICE_CHANGED,
+        /** A date price modifier changed: hotel, day, modifier. */
+        MODIFIER_CHANGED,
+        /**
+         * A reservation was made: hotel, reservation ID, room number, room type,
+         * check-in, check-out, amount (total price), text (guest name).
+         */
+        RESERVATION_CREATED,
+        /** A reservation was cancelled: the same fields as when it was made. */
+        RESERVATION_CANCELLED,
+        /**
+         * A reservation moved to another room: hotel, reservation ID, room number
+         * (new room), room type, check-in, check-out.
+         */
+        RESERVATION_MOVED,
+        /**
+         * A reservation was locked to its room, so re-optimizing leaves it
+         * there: hotel, reservation ID, room number, room type, check-in, check-out.
+         */
+        RESERVATION_LOCKED,
+        /** A reservation was unlocked: the same fields as when it was locked. */
+        RESERVATION_UNLOCKED,
+        /**
+         * The stays of a hotel that checked out on or before a date were
+         * moved into its history: hotel, day.
+         */
+        STAYS_ARCHIVED
+    }
+
+    private static final Type[] TYPES = Type.values();
+    private static final RoomType[] ROOM_TYPES = RoomType.values();
+
+    private Type type;
+    private long sequence;
+    private long timestamp;
+    private String hotel;
+    private String text;
+    private long reservationId;
+    private int roomNo;
+    private RoomType roomType;
+    private int checkIn;
+    private int checkOut;
+    private int day;
+    private int modifier;
+    private long amount;
+
+    /**
+     * Constructs an empty event, to be filled in by the bus or a reader.
+     */
+    BookingEvent() {
+    }
+
+    /**
+     * Retrieves what changed.
+     *
+     * @return The event type.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Retrieves the event's position in the stream, counting from 0 when the bus was created.
+     *
+     * @return The sequence number.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Retrieves when the change was published.
+     *
+     * @return The time in epoch milliseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Retrieves the name of the hotel that changed, before any rename.
+     *
+     * @return The hotel name.
+     */
+    public String getHotel() {
+        return hotel;
+    }
+
+    /**
+     * Retrieves the new name of a renamed hotel, or the guest name of a reservation.
+     *
+     * @return The text, or null.
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Retrieves the ID of the reservation that changed.
+     *
+     * @return The reservation ID, or 0.
+     */
+    public long getReservationId() {
+        return reservationId;
+    }
+
+    /**
+     * Retrieves the number of the room that changed or that the reservation is in.
+     *
+     * @return The room number, or 0.
+     */
+    public int getRoomNo() {
+        return roomNo;
+    }
+
+    /**
+     * Retrieves the type of the room that changed or that the reservation is in.
+     *
+     * @return The room type, or null.
+     */
+    public RoomType getRoomType() {
+        return roomType;
+    }
+
+    /**
+     * Retrieves the reservation's check-in date.
+     *
+     * @return The check-in date as an epoch day, or 0.
+     */
+    public int getCheckIn() {
+        return checkIn;
+    }
+
+    /**
+     * Retrieves the reservation's check-out date.
+     *
+     * @return The check-out date as an epoch day, or 0.
+     */
+    public int getCheckOut() {
+        return checkOut;
+    }
+
+    /**
+     * Retrieves the date whose price modifier changed, or up to which stays were archived.
+     *
+     * @return The date as an epoch day, or 0.
+     */
+    public int getDay() {
+        return day;
+    }
+
+    /**
+     * Retrieves the new price modifier of the date.
+     *
+     * @return The modifier in basis points, or 0.
+     */
+    public int getModifier() {
+        return modifier;
+    }
+
+    /**
+     * Retrieves the price carried by the event: a base price, or a reservation's total price.
+     *
+     * @return The amount in centavos, or 0.
+     */
+    public long getAmount() {
+        return amount;
+    }
+
+    @Override
+    public String toString() {
+        return sequence + " " + type + " " + hotel;
+    }
+
+    /**
+     * Clears the event and sets what every event has.
+     */
+    void reset(Type type, long sequence, long timestamp, String hotel) {
+        this.type = type;
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.hotel = hotel;
+        this.text = null;
+        this.reservationId = 0;
+        this.roomNo = 0;
+        this.roomType = null;
+        this.checkIn = 0;
+        this.checkOut = 0;
+        this.day = 0;
+        this.modifier = 0;
+        this.amount = 0;
+    }
+
+    void setText(String text) {
+        this.text = text;
+    }
+
+    void setRoom(int roomNo, RoomType roomType) {
+        this.roomNo = roomNo;
+        this.roomType = roomType;
+    }
+
+    void setStay(long reservationId, int checkIn, int checkOut) {
+        this.reservationId = reservationId;
+        this.checkIn = checkIn;
+        this.checkOut = checkOut;
+    }
+
+    void setDay(int day) {
+        this.day = day;
+    }
+
+    void setModifier(int day, int modifier) {
+        this.day = day;
+        this.modifier = modifier;
+    }
+
+    void setAmount(long amount) {
+        this.amount = amount;
+    }
+
+    static Type typeOf(int ordinal) {
+        return TYPES[ordinal];
+    }
+
+    static RoomType roomTypeOf(int ordinal) {
+        return ordinal < 0 ? null : ROOM_TYPES[ordinal];
+    }
+}
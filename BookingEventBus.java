@@ -0,0 +1,397 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process stream of the changes made through a {@link BookingService},
+ * for consumers such as {@link EventFileSink} that feed systems downstream.
+ *
+ * Events travel through a ring of preallocated {@link BookingEvent} slots,
+ * Disruptor-style. A publisher claims the next sequence number with one
+ * atomic increment, fills in the slot it maps to and marks the slot as
+ * published with a release write of the sequence's turn around the ring.
+ * Nothing is allocated, and the only lock is taken about once per turn of
+ * the ring, to read how far the consumers have got. Each consumer runs on its own
+ * thread, follows its own sequence, and takes every event published since it
+ * last looked as one batch before moving its sequence past them, which frees
+ * their slots for reuse.
+ *
+ * A publisher only waits when the ring is full, that is when the slowest
+ * consumer is a whole ring behind, so a stalled consumer slows changes down
+ * rather than losing events. With no consumer, publishing does nothing.
+ */
+public class BookingEventBus implements AutoCloseable {
+
+    /** Number of event slots used by default. */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final VarHandle PUBLISHED = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final int SPIN_TRIES = 100;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final BookingEvent[] slots;
+    private final int[] published; // Turn of the sequence last published in each slot, -1 before the first
+    private final int mask;
+    private final int shift; // log2 of the capacity
+    private final AtomicLong claimed; // Next sequence to hand out
+    private volatile long gatingCache; // Lowest consumer sequence last seen by a publisher
+    private final Object gatingLock; // Keeps consumers from joining while a publisher reads their sequences
+    private final CopyOnWriteArrayList<Consumer> consumers;
+    private final LongAdder failures;
+
+    /**
+     * Thread that hands events to one handler.
+     */
+    private final class Consumer implements Runnable {
+        private final BookingEventHandler handler;
+        private final Thread thread;
+        private volatile long sequence; // Last sequence handled
+        private volatile boolean stopping;
+
+        private Consumer(String name, BookingEventHandler handler, long start) {
+            this.handler = handler;
+            this.sequence = start - 1;
+            this.thread = new Thread(this, "booking-events-" + name);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            int idle = 0;
+            while (true) {
+                long next = sequence + 1;
+                long last = lastPublished(next, claimed.get() - 1);
+                if (last < next) {
+                    if (stopping && next >= claimed.get()) {
+                        return; // Drained
+                    }
+                    idle = idle(idle);
+                    continue;
+                }
+                idle = 0;
+                for (long s = next; s <= last; s++) {
+                    try {
+                        handler.onEvent(slots[(int) s & mask], s == last);
+                    } catch (Exception e) {
+                        failures.increment();
+                    }
+                }
+                sequence = last;
+            }
+        }
+    }
+
+    /**
+     * Constructs a bus with {@value #DEFAULT_CAPACITY} event slots and no consumers.
+     */
+    public BookingEventBus() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a bus with no consumers.
+     *
+     * @param capacity The number of event slots, a power of two.
+     * @throws IllegalArgumentException If the capacity is not a positive power of two.
+     */
+    public BookingEventBus(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.slots = new BookingEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new BookingEvent();
+        }
+        this.published = new int[capacity];
+        Arrays.fill(published, -1);
+        this.mask = capacity - 1;
+        this.shift = Integer.numberOfTrailingZeros(capacity);
+        this.claimed = new AtomicLong();
+        this.gatingLock = new Object();
+        this.consumers = new CopyOnWriteArrayList<>();
+        this.failures = new LongAdder();
+    }
+
+    /**
+     * Starts handing events to a handler on a thread of its own, beginning
+     * with the next event published.
+     *
+     * @param name A name for the consumer's thread.
+     * @param handler The handler.
+     */
+    public void addConsumer(String name, BookingEventHandler handler) {
+        Consumer consumer;
+        synchronized (gatingLock) {
+            consumer = new Consumer(name, handler, claimed.get());
+            consumers.add(consumer);
+            gatingCache = Math.min(gatingCache, consumer.sequence);
+        }
+        consumer.thread.start();
+    }
+
+    /**
+     * Checks whether any consumer is listening.
+     *
+     * @return True if events are being handled.
+     */
+    public boolean hasConsumers() {
+        return !consumers.isEmpty();
+    }
+
+    /**
+     * Retrieves the number of events published.
+     *
+     * @return The count.
+     */
+    public long getPublished() {
+        return claimed.get();
+    }
+
+    /**
+     * Retrieves the number of events a handler failed on.
+     *
+     * @return The count.
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * Hands every event published so far to the consumers, then stops their threads.
+     */
+    @Override
+    public void close() {
+        for (Consumer consumer : consumers) {
+            consumer.stopping = true;
+        }
+        for (Consumer consumer : consumers) {
+            try {
+                consumer.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        consumers.clear();
+    }
+
+    /**
+     * Publishes that a hotel was created.
+     */
+    public void hotelCreated(String hotel, long basePrice) {
+        if (consumers.isEmpty()) {
+            return;
+        }
+        long sequence = claim();
+        BookingEvent event = start(sequence, BookingEvent.Type.HOTEL_CREATED, hotel);
+        event.setAmount(basePrice);
+        publish(sequence);
+    }
+
+    /**
+     * Publishes that a hotel was renamed.
+     */
+    public void hotelRenamed(String oldName, String newName) {
+        if (consumers.isEmpty()) {
+            return;
+        }
+        long sequence = claim();
+        BookingEvent event = start(sequence, BookingEvent.Type.HOTEL_RENAMED, oldName);
+        event.setText(newName);
+        publish(sequence);
+    }
+
+    /**
+     * Publishes that a hotel was removed.
+     */
+    public void hotelRemoved(String hotel) {
+        if (consumers.isEmpty()) {
+            return;
+        }
+        long sequence = claim();
+        start(sequence, BookingEvent.Type.HOTEL_REMOVED, hotel);
+        publish(sequence);
+    }
+
+    /**
+     * Publishes that a room was added to a hotel.
+     */
+    public void roomAdded(String hotel, Room room) {
+        if (consumers.isEmpty()) {
+            return;
+        }
+        long sequence = claim();
+        BookingEvent event = start(sequence, BookingEvent.Type.ROOM_ADDED, hotel);
+        event.setRoom(room.getRoomNo(), room.getType());
+        event.setAmount(room.getBasePrice());
+        publish(sequence);
+    }
+
+    /**
+     * Publishes that a room was removed from a hotel.
+     */
+    public void roomRemoved(String hotel, int roomNo) {
+        if (consumers.isEmpty()) {
+            return;
+        }
+        long sequence = claim();
+        BookingEvent event = start(sequence, BookingEvent.Type.ROOM_REMOVED, hotel);
+        event.setRoom(roomNo, null);
+        publish(sequence);
+    }
+
+    /**
+     * Publishes a change of a hotel's base price.
+     */
+    public void priceChanged(String hotel, long price) {
+        if (consumers.isEmpty()) {
+            return;
+        }
+        long sequence = claim();
+        BookingEvent event = start(sequence, BookingEvent.Type.PRICE_CHANGED, hotel);
+        event.setAmount(price);
+        publish(sequence);
+    }
+
+    /**
+     * Publishes a change of a hotel's price modifier for one date.
+     */
+    public void modifierChanged(String hotel, int day, int modifier) {
+        if (consumers.isEmpty()) {
+            return;
+        }
+        long sequence = claim();
+        BookingEvent event = start(sequence, BookingEvent.Type.MODIFIER_CHANGED, hotel);
+        event.setModifier(day, modifier);
+        publish(sequence);
+    }
+
+    /**
+     * Publishes that a reservation was made.
+     */
+    public void reservationCreated(String hotel, Reservation reservation) {
+        reservation(BookingEvent.Type.RESERVATION_CREATED, hotel, reservation, reservation.getRoom());
+    }
+
+    /**
+     * Publishes that a reservation was cancelled.
+     */
+    public void reservationCancelled(String hotel, Reservation reservation) {
+        reservation(BookingEvent.Type.RESERVATION_CANCELLED, hotel, reservation, reservation.getRoom());
+    }
+
+    /**
+     * Publishes that a reservation was locked to its room or unlocked, as it now is.
+     */
+    public void reservationLocked(String hotel, Reservation reservation) {
+        BookingEvent.Type type = reservation.isLocked()
+                ? BookingEvent.Type.RESERVATION_LOCKED : BookingEvent.Type.RESERVATION_UNLOCKED;
+        reservation(type, hotel, reservation, reservation.getRoom());
+    }
+
+    /**
+     * Publishes that reservations moved to other rooms, one event per reservation.
+     */
+    public void reservationsMoved(String hotel, Map<Reservation, Room> moves) {
+        for (Map.Entry<Reservation, Room> move : moves.entrySet()) {
+            reservation(BookingEvent.Type.RESERVATION_MOVED, hotel, move.getKey(), move.getValue());
+        }
+    }
+
+    /**
+     * Publishes that a hotel's stays checking out on or before a date were archived.
+     */
+    public void staysArchived(String hotel, int before) {
+        if (consumers.isEmpty()) {
+            return;
+        }
+        long sequence = claim();
+        BookingEvent event = start(sequence, BookingEvent.Type.STAYS_ARCHIVED, hotel);
+        event.setDay(before);
+        publish(sequence);
+    }
+
+    private void reservation(BookingEvent.Type type, String hotel, Reservation reservation, Room room) {
+        if (consumers.isEmpty()) {
+            return;
+        }
+        long sequence = claim();
+        BookingEvent event = start(sequence, type, hotel);
+        event.setStay(reservation.getId(), reservation.getCheckIn(), reservation.getCheckOut());
+        event.setRoom(room.getRoomNo(), room.getType());
+        if (type == BookingEvent.Type.RESERVATION_CREATED || type == BookingEvent.Type.RESERVATION_CANCELLED) {
+            event.setAmount(reservation.getTotalPrice());
+            event.setText(reservation.getName());
+        }
+        publish(sequence);
+    }
+
+    /**
+     * Takes the next sequence number, waiting while its slot still holds an
+     * event that some consumer has not handled.
+     */
+    private long claim() {
+        long sequence = claimed.getAndIncrement();
+        long wrapPoint = sequence - slots.length;
+        int idle = 0;
+        while (wrapPoint > gatingCache) {
+            synchronized (gatingLock) {
+                gatingCache = slowestConsumer(sequence);
+            }
+            if (wrapPoint > gatingCache) {
+                idle = idle(idle);
+            }
+        }
+        return sequence;
+    }
+
+    private BookingEvent start(long sequence, BookingEvent.Type type, String hotel) {
+        BookingEvent event = slots[(int) sequence & mask];
+        event.reset(type, sequence, System.currentTimeMillis(), hotel);
+        return event;
+    }
+
+    private void publish(long sequence) {
+        PUBLISHED.setRelease(published, (int) sequence & mask, (int) (sequence >>> shift));
+    }
+
+    /**
+     * Finds the last sequence in a range that is published along with every one before it.
+     */
+    private long lastPublished(long from, long to) {
+        for (long s = from; s <= to; s++) {
+            if ((int) PUBLISHED.getAcquire(published, (int) s & mask) != (int) (s >>> shift)) {
+                return s - 1;
+            }
+        }
+        return to;
+    }
+
+    private long slowestConsumer(long fallback) {
+        long slowest = fallback;
+        for (Consumer consumer : consumers) {
+            slowest = Math.min(slowest, consumer.sequence);
+        }
+        return slowest;
+    }
+
+    /**
+     * Waits a little longer each time nothing has changed: spinning first, then yielding, then parking.
+     */
+    private static int idle(int idle) {
+        if (idle < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (idle < 2 * SPIN_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        return idle + 1;
+    }
+}
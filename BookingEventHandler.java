@@ -0,0 +1,19 @@
+import java.io.IOException;
+
+/**
+ * Consumer of the events published on a {@link BookingEventBus}. Each handler
+ * runs on its own thread and sees every event in sequence order.
+ */
+public interface BookingEventHandler {
+
+    /**
+     * Handles one event. Events that arrived together are handed over in a
+     * batch, and the last of a batch is flagged, so a handler can buffer its
+     * work and finish it once per batch.
+     *
+     * @param event The event; it is reused after this call returns.
+     * @param endOfBatch True if no further event is waiting.
+     * @throws IOException If the event could not be handled; it is counted and skipped.
+     */
+    void onEvent(BookingEvent event, boolean endOfBatch) throws IOException;
+}
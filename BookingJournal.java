@@ -0,0 +1,519 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Binary write-ahead log of the changes made through a {@link BookingService}.
+ *
+ * The file starts with a header holding the generation of the snapshot the
+ * log continues from, followed by one record per change:
+ * <pre>
+ * int length | int crc32 | byte type | fields...
+ * </pre>
+ * Strings are written as a short length followed by UTF-8 bytes.
+ *
+ * Records are appended to an in-memory buffer and written out by a single
+ * flusher thread, which forces everything that arrived since its last write
+ * to disk in one call (group commit). With synchronous commits, each append
+ * waits until its record is on disk, so many threads share one fsync instead
+ * of paying for one each.
+ */
+public class BookingJournal implements AutoCloseable {
+
+    static final byte CREATE_HOTEL = 1;
+    static final byte RENAME_HOTEL = 2;
+    static final byte REMOVE_HOTEL = 3;
+    static final byte ADD_ROOM = 4;
+    static final byte REMOVE_ROOM = 5;
+    static final byte BASE_PRICE = 6;
+    static final byte DATE_MODIFIER = 7;
+    static final byte RESERVE = 8;
+    static final byte CANCEL = 9;
+    static final byte LOCK = 10;
+    static final byte REASSIGN = 11;
+    static final byte ARCHIVE = 12;
+    static final byte REASSIGN_PART = 13;
+
+    /** Longest string a record can hold, in UTF-8 bytes. */
+    static final int MAX_STRING_BYTES = 0xFFFF;
+
+    /** Most reservation moves written in one record. */
+    static final int MAX_MOVES_PER_RECORD = 80_000;
+
+    private static final int MAGIC = 0x484A5233; // "HJR3", reservations carry their room lock
+    private static final int HEADER_SIZE = 12;
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+    private static final long FLUSH_INTERVAL_MILLIS = 5;
+
+    private final FileChannel channel;
+    private final boolean syncCommit;
+    private final ReentrantLock lock;
+    private final Condition pendingAvailable;
+    private final Condition flushed;
+    private final Thread flusher;
+
+    private byte[] pending; // Records waiting to be written, guarded by lock
+    private int pendingSize;
+    private long appended; // Number of records appended
+    private long durable; // Number of records written and forced to disk
+    private IOException failure;
+    private boolean closed;
+
+    /**
+     * Opens a journal file for appending, truncating anything after the given
+     * position. A new file is created with a header for the given generation.
+     *
+     * @param file The journal file.
+     * @param generation The generation written to the header of a new file.
+     * @param validEnd The position up to which an existing file holds complete records,
+     *                 as returned by {@link #read}, or 0 to start a new file.
+     * @param syncCommit Whether each append waits until its record is on disk.
+     * @throws IOException If the file cannot be opened.
+     */
+    public BookingJournal(Path file, long generation, long validEnd, boolean syncCommit) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.syncCommit = syncCommit;
+        this.lock = new ReentrantLock();
+        this.pendingAvailable = lock.newCondition();
+        this.flushed = lock.newCondition();
+        this.pending = new byte[64 * 1024];
+        if (validEnd < HEADER_SIZE) {
+            channel.truncate(0);
+            writeHeader(generation);
+        } else {
+            channel.truncate(validEnd);
+            channel.position(validEnd);
+        }
+        this.flusher = new Thread(this::flushLoop, "booking-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Reads every complete record of a journal file.
+     * Reading stops at the first truncated or corrupt record, which is what a
+     * crash in the middle of a write leaves behind.
+     *
+     * @param file The journal file.
+     * @param generation The generation the journal must continue from.
+     * @param handler Receives the body of each record, starting at its type byte.
+     * @return The position just after the last complete record, or 0 if the file
+     *         is missing or belongs to another generation and was not read.
+     * @throws IOException If the file cannot be read.
+     */
+    public static long read(Path file, long generation, Consumer<ByteBuffer> handler) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        // Snapshots keep the journal short, so it is read in one go
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        if (bytes.length < HEADER_SIZE || in.getInt() != MAGIC || in.getLong() != generation) {
+            return 0;
+        }
+        CRC32 crc = new CRC32();
+        int position = HEADER_SIZE;
+        while (bytes.length - position >= 8) {
+            int length = in.getInt(position);
+            int checksum = in.getInt(position + 4);
+            int body = position + 8;
+            if (length <= 0 || length > MAX_RECORD_SIZE || length > bytes.length - body) {
+                break;
+            }
+            crc.reset();
+            crc.update(bytes, body, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            handler.accept(ByteBuffer.wrap(bytes, body, length).slice());
+            position = body + length;
+        }
+        return position;
+    }
+
+    /**
+     * Reads a string written by the journal.
+     *
+     * @param buffer The record body.
+     * @return The string.
+     */
+    public static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * Records that a hotel with no rooms was created.
+     */
+    public void logCreateHotel(String name, long basePrice) {
+        append(new Record(CREATE_HOTEL).putString(name).putLong(basePrice));
+    }
+
+    /**
+     * Records that a hotel was renamed.
+     */
+    public void logRenameHotel(String oldName, String newName) {
+        append(new Record(RENAME_HOTEL).putString(oldName).putString(newName));
+    }
+
+    /**
+     * Records that a hotel was removed.
+     */
+    public void logRemoveHotel(String name) {
+        append(new Record(REMOVE_HOTEL).putString(name));
+    }
+
+    /**
+     * Records that a room was added to a hotel.
+     */
+    public void logAddRoom(String hotel, Room room) {
+        append(new Record(ADD_ROOM).putString(hotel).putInt(room.getRoomNo())
+                .putByte(room.getType().ordinal()).putLong(room.getBasePrice()));
+    }
+
+    /**
+     * Records that a room was removed from a hotel.
+     */
+    public void logRemoveRoom(String hotel, int roomNo) {
+        append(new Record(REMOVE_ROOM).putString(hotel).putInt(roomNo));
+    }
+
+    /**
+     * Records a change of a hotel's base price.
+     */
+    public void logBasePrice(String hotel, long price) {
+        append(new Record(BASE_PRICE).putString(hotel).putLong(price));
+    }
+
+    /**
+     * Records a change of a hotel's price modifier for one date.
+     */
+    public void logDateModifier(String hotel, int day, int modifier) {
+        append(new Record(DATE_MODIFIER).putString(hotel).putInt(day).putInt(modifier));
+    }
+
+    /**
+     * Records that a reservation was added to a hotel.
+     */
+    public void logReserve(String hotel, Reservation reservation) {
+        append(new Record(RESERVE).putString(hotel).putLong(reservation.getId()).putString(reservation.getName())
+                .putInt(reservation.getCheckIn()).putInt(reservation.getCheckOut())
+                .putInt(reservation.getRoom().getRoomNo()).putString(reservation.getDiscountCode())
+                .putLong(reservation.getTotalPrice()).putByte(reservation.isLocked() ? 1 : 0));
+    }
+
+    /**
+     * Records that a reservation was removed from a hotel.
+     */
+    public void logCancel(String hotel, Reservation reservation) {
+        append(new Record(CANCEL).putString(hotel).putLong(reservation.getId()));
+    }
+
+    /**
+     * Records that a reservation was locked to its room or unlocked.
+     */
+    public void logLock(String hotel, Reservation reservation) {
+        append(new Record(LOCK).putString(hotel).putLong(reservation.getId())
+                .putByte(reservation.isLocked() ? 1 : 0));
+    }
+
+    /**
+     * Records that reservations were moved to other rooms. Moves that do not
+     * fit in one record go first in REASSIGN_PART records, and replay applies
+     * them only once it reaches the REASSIGN record that ends them, so it moves
+     * all of the reservations or none. Callers must keep other changes from
+     * being recorded in between.
+     */
+    public void logReassign(String hotel, Map<Reservation, Room> moves) {
+        int remaining = moves.size();
+        int leftInRecord = 0;
+        Record record = null;
+        for (Map.Entry<Reservation, Room> move : moves.entrySet()) {
+            if (leftInRecord == 0) {
+                leftInRecord = Math.min(remaining, MAX_MOVES_PER_RECORD);
+                byte type = remaining > leftInRecord ? REASSIGN_PART : REASSIGN;
+                record = new Record(type).putString(hotel).putInt(leftInRecord);
+            }
+            record.putLong(move.getKey().getId()).putInt(move.getValue().getRoomNo());
+            remaining--;
+            if (--leftInRecord == 0) {
+                append(record);
+            }
+        }
+    }
+
+    /**
+     * Records that the stays of a hotel that checked out on or before a date were archived.
+     */
+    public void logArchive(String hotel, int before) {
+        append(new Record(ARCHIVE).putString(hotel).putInt(before));
+    }
+
+    /**
+     * Retrieves the number of records appended since the journal was opened or last reset.
+     *
+     * @return The number of records.
+     */
+    public long getRecordCount() {
+        lock.lock();
+        try {
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every record appended so far is on disk.
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            awaitDurable(appended);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Discards every record and starts the file over for a new generation.
+     * Called once a snapshot holding all changes so far has been written;
+     * the caller must make sure nothing is appended meanwhile.
+     *
+     * @param generation The generation of that snapshot.
+     * @throws IOException If the file cannot be rewritten.
+     */
+    public void reset(long generation) throws IOException {
+        lock.lock();
+        try {
+            awaitDurable(appended);
+            channel.truncate(0);
+            channel.position(0);
+            writeHeader(generation);
+            appended = 0;
+            durable = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes out every pending record and closes the file.
+     *
+     * @throws IOException If the last records could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            awaitDurable(appended);
+            closed = true;
+            pendingAvailable.signal();
+        } catch (UncheckedIOException e) {
+            closed = true;
+            pendingAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Adds a record to the pending buffer and, with synchronous commits,
+     * waits for the flusher to put it on disk.
+     */
+    private void append(Record record) {
+        byte[] body = record.bytes;
+        int length = record.size;
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, length);
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            if (failure != null) {
+                throw new UncheckedIOException(failure);
+            }
+            if (pending.length - pendingSize < length + 8) {
+                pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingSize + length + 8));
+            }
+            ByteBuffer.wrap(pending, pendingSize, 8).putInt(length).putInt((int) crc.getValue());
+            System.arraycopy(body, 0, pending, pendingSize + 8, length);
+            pendingSize += length + 8;
+            long sequence = ++appended;
+            pendingAvailable.signal();
+            if (syncCommit) {
+                awaitDurable(sequence);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the given number of records is on disk. Must be called while holding the lock.
+     */
+    private void awaitDurable(long sequence) {
+        boolean interrupted = false;
+        while (durable < sequence && failure == null) {
+            pendingAvailable.signal();
+            try {
+                flushed.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (durable < sequence) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    /**
+     * Body of the flusher thread: takes whatever is pending, writes and forces
+     * it, and wakes the appenders waiting for it.
+     */
+    private void flushLoop() {
+        byte[] spare = new byte[pending.length];
+        while (true) {
+            byte[] batch;
+            int batchSize;
+            long batchEnd;
+            lock.lock();
+            try {
+                while (pendingSize == 0 && !closed) {
+                    try {
+                        pendingAvailable.await(FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pendingSize == 0) {
+                    return; // Closed with nothing left to write
+                }
+                batch = pending;
+                batchSize = pendingSize;
+                batchEnd = appended;
+                pending = spare.length >= batch.length ? spare : new byte[batch.length];
+                pendingSize = 0;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch, 0, batchSize);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+            spare = batch;
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durable = batchEnd;
+                }
+                flushed.signalAll();
+                if (error != null) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void writeHeader(long generation) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putLong(generation);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.force(true);
+    }
+
+    /**
+     * Growable buffer holding the body of one record.
+     */
+    private static class Record {
+        private byte[] bytes;
+        private int size;
+
+        private Record(byte type) {
+            this.bytes = new byte[64];
+            putByte(type);
+        }
+
+        private Record putByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+            return this;
+        }
+
+        private Record putInt(int value) {
+            ensure(4);
+            ByteBuffer.wrap(bytes, size, 4).putInt(value);
+            size += 4;
+            return this;
+        }
+
+        private Record putLong(long value) {
+            ensure(8);
+            ByteBuffer.wrap(bytes, size, 8).putLong(value);
+            size += 8;
+            return this;
+        }
+
+        private Record putString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            if (utf8.length > MAX_STRING_BYTES) {
+                throw new IllegalArgumentException("String too long for the journal");
+            }
+            ensure(2 + utf8.length);
+            ByteBuffer.wrap(bytes, size, 2).putShort((short) utf8.length);
+            System.arraycopy(utf8, 0, bytes, size + 2, utf8.length);
+            size += 2 + utf8.length;
+            return this;
+        }
+
+        private void ensure(int extra) {
+            if (bytes.length - size < extra) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
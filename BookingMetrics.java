@@ -0,0 +1,319 @@
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Reads the {@link HotelMetrics} of every hotel in a {@link BookingService}
+ * and publishes them over JMX and as Prometheus text.
+ *
+ * Counters are kept by each hotel as it is used; this class only adds them
+ * up when asked. Gauges are computed when read: occupancy tonight and over
+ * the next {@value #OCCUPANCY_WINDOW_DAYS} days from the hotel's
+ * {@link OccupancyLedger}, and reservation counts from its reservation index.
+ * The service's {@link QuoteCache} reports its hits and misses unlabelled,
+ * its {@link HoldManager} its holds, and its {@link BookingEventBus} the
+ * events it has published.
+ */
+public class BookingMetrics implements BookingMetricsMXBean {
+
+    /** Name the metrics are registered under with {@link #register()}. */
+    public static final String OBJECT_NAME = "hotel:type=BookingMetrics";
+
+    /** Number of nights, from tonight, that the windowed occupancy gauge covers. */
+    public static final int OCCUPANCY_WINDOW_DAYS = 30;
+
+    private final BookingService service;
+
+    /**
+     * Constructs the metrics of a booking service.
+     *
+     * @param service The service whose hotels to read.
+     */
+    public BookingMetrics(BookingService service) {
+        this.service = service;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server under {@link #OBJECT_NAME}.
+     *
+     * @throws JMException If the name is already registered.
+     */
+    public void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(this, new ObjectName(OBJECT_NAME));
+    }
+
+    @Override
+    public int getHotelCount() {
+        return service.getHotels().size();
+    }
+
+    @Override
+    public long getSearches() {
+        return sum(HotelMetrics::getSearches);
+    }
+
+    @Override
+    public long getRoomsScanned() {
+        return sum(HotelMetrics::getRoomsScanned);
+    }
+
+    @Override
+    public long getQuotes() {
+        return sum(HotelMetrics::getQuotes);
+    }
+
+    @Override
+    public long getBookings() {
+        return sum(HotelMetrics::getBookings);
+    }
+
+    @Override
+    public long getBookingConflicts() {
+        return sum(HotelMetrics::getBookingConflicts);
+    }
+
+    @Override
+    public long getCancellations() {
+        return sum(HotelMetrics::getCancellations);
+    }
+
+    @Override
+    public long getAvailabilityChecks() {
+        return sum(HotelMetrics::getAvailabilityChecks);
+    }
+
+    @Override
+    public long getReservations() {
+        long total = 0;
+        for (Hotel hotel : service.getHotels()) {
+            total += hotel.getNumReservations();
+        }
+        return total;
+    }
+
+    @Override
+    public double getBookingP99Micros() {
+        LatencyHistogram all = new LatencyHistogram();
+        for (Hotel hotel : service.getHotels()) {
+            all.add(hotel.getMetrics().getBookingLatency());
+        }
+        return all.getPercentile(99) / 1000.0;
+    }
+
+    @Override
+    public double getSearchP99Micros() {
+        LatencyHistogram all = new LatencyHistogram();
+        for (Hotel hotel : service.getHotels()) {
+            all.add(hotel.getMetrics().getSearchLatency());
+        }
+        return all.getPercentile(99) / 1000.0;
+    }
+
+    @Override
+    public long getQuoteCacheHits() {
+        return service.getQuoteCache().getHits();
+    }
+
+    @Override
+    public long getQuoteCacheMisses() {
+        return service.getQuoteCache().getMisses();
+    }
+
+    @Override
+    public double getQuoteCacheHitRate() {
+        return service.getQuoteCache().getHitRate();
+    }
+
+    @Override
+    public int getActiveHolds() {
+        return service.getHolds().getActiveHolds();
+    }
+
+    @Override
+    public long getExpiredHolds() {
+        return service.getHolds().getExpiredHolds();
+    }
+
+    @Override
+    public long getEventsPublished() {
+        return service.getEvents().getPublished();
+    }
+
+    @Override
+    public Map<String, Double> getOccupancy() {
+        int today = HotelCalendar.today();
+        Map<String, Double> occupancy = new LinkedHashMap<>();
+        for (Hotel hotel : service.getHotels()) {
+            occupancy.put(hotel.getName(), occupancy(hotel, today, 1));
+        }
+        return occupancy;
+    }
+
+    @Override
+    public Map<String, Long> getBookingsByHotel() {
+        Map<String, Long> bookings = new LinkedHashMap<>();
+        for (Hotel hotel : service.getHotels()) {
+            bookings.put(hotel.getName(), hotel.getMetrics().getBookings());
+        }
+        return bookings;
+    }
+
+    /**
+     * Formats every metric in the Prometheus text exposition format, labelled by hotel.
+     *
+     * @return The metrics.
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        counter(out, "hotel_searches_total", "Searches for free rooms.", HotelMetrics::getSearches);
+        counter(out, "hotel_rooms_scanned_total", "Room slots looked at by searches.", HotelMetrics::getRoomsScanned);
+        counter(out, "hotel_quotes_total", "Quotes for stays.", HotelMetrics::getQuotes);
+        counter(out, "hotel_bookings_total", "Reservations added.", HotelMetrics::getBookings);
+        counter(out, "hotel_booking_conflicts_total", "Reservations turned away because the room was taken.",
+                HotelMetrics::getBookingConflicts);
+        counter(out, "hotel_cancellations_total", "Reservations removed.", HotelMetrics::getCancellations);
+        counter(out, "hotel_availability_checks_total", "Checks of whether a room is free for a stay.",
+                HotelMetrics::getAvailabilityChecks);
+        counter(out, "hotel_room_nights_booked_total", "Room-nights booked.", HotelMetrics::getNightsBooked);
+
+        header(out, "hotel_reservations", "Reservations held.", "gauge");
+        for (Hotel hotel : service.getHotels()) {
+            sample(out, "hotel_reservations", hotel, "", hotel.getNumReservations());
+        }
+        header(out, "hotel_rooms", "Rooms in the hotel.", "gauge");
+        for (Hotel hotel : service.getHotels()) {
+            sample(out, "hotel_rooms", hotel, "", hotel.getNumRooms());
+        }
+        header(out, "hotel_occupancy_ratio", "Share of room-nights booked, tonight or over the next "
+                + OCCUPANCY_WINDOW_DAYS + " nights.", "gauge");
+        int today = HotelCalendar.today();
+        for (Hotel hotel : service.getHotels()) {
+            sample(out, "hotel_occupancy_ratio", hotel, ",window=\"1d\"", occupancy(hotel, today, 1));
+            sample(out, "hotel_occupancy_ratio", hotel, ",window=\"" + OCCUPANCY_WINDOW_DAYS + "d\"",
+                    occupancy(hotel, today, OCCUPANCY_WINDOW_DAYS));
+        }
+
+        QuoteCache quotes = service.getQuoteCache();
+        header(out, "quote_cache_hits_total", "Quotes served from the quote cache.", "counter");
+        out.append("quote_cache_hits_total ").append(quotes.getHits()).append('\n');
+        header(out, "quote_cache_misses_total", "Quotes the quote cache had to compute.", "counter");
+        out.append("quote_cache_misses_total ").append(quotes.getMisses()).append('\n');
+        header(out, "quote_cache_entries", "Prices held in the quote cache.", "gauge");
+        out.append("quote_cache_entries ").append(quotes.size()).append('\n');
+
+        HoldManager holds = service.getHolds();
+        header(out, "holds_placed_total", "Holds placed on rooms or overbooked.", "counter");
+        out.append("holds_placed_total ").append(holds.getPlacedHolds()).append('\n');
+        header(out, "holds_expired_total", "Holds that ran out before being confirmed or released.", "counter");
+        out.append("holds_expired_total ").append(holds.getExpiredHolds()).append('\n');
+        header(out, "holds_active", "Holds in force.", "gauge");
+        out.append("holds_active ").append(holds.getActiveHolds()).append('\n');
+
+        BookingEventBus events = service.getEvents();
+        header(out, "events_published_total", "Change events published to consumers.", "counter");
+        out.append("events_published_total ").append(events.getPublished()).append('\n');
+        header(out, "event_handler_failures_total", "Change events a consumer failed to handle.", "counter");
+        out.append("event_handler_failures_total ").append(events.getFailures()).append('\n');
+
+        header(out, "hotel_search_seconds", "Time taken by searches for free rooms.", "summary");
+        for (Hotel hotel : service.getHotels()) {
+            summary(out, "hotel_search_seconds", "hotel=\"" + escape(hotel.getName()) + "\"",
+                    hotel.getMetrics().getSearchLatency());
+        }
+        header(out, "hotel_booking_seconds", "Time taken to add reservations.", "summary");
+        for (Hotel hotel : service.getHotels()) {
+            summary(out, "hotel_booking_seconds", "hotel=\"" + escape(hotel.getName()) + "\"",
+                    hotel.getMetrics().getBookingLatency());
+        }
+        header(out, "hotel_cancellation_seconds", "Time taken to remove reservations.", "summary");
+        for (Hotel hotel : service.getHotels()) {
+            summary(out, "hotel_cancellation_seconds", "hotel=\"" + escape(hotel.getName()) + "\"",
+                    hotel.getMetrics().getCancellationLatency());
+        }
+        return out.toString();
+    }
+
+    /**
+     * Appends a latency histogram as a Prometheus summary with the usual quantiles, in seconds.
+     *
+     * @param out The text to append to.
+     * @param name The metric name.
+     * @param labels The labels, without braces, such as {@code path="/hotels"}.
+     * @param histogram The histogram.
+     */
+    static void summary(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        for (double quantile : new double[] {0.5, 0.9, 0.99, 0.999}) {
+            out.append(name).append('{').append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+                    .append(seconds(histogram.getPercentile(quantile * 100))).append('\n');
+        }
+        out.append(name).append("_sum{").append(labels).append("} ")
+                .append(seconds(histogram.getTotalNanos())).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(histogram.getCount()).append('\n');
+    }
+
+    /**
+     * Appends the HELP and TYPE lines of a metric.
+     *
+     * @param out The text to append to.
+     * @param name The metric name.
+     * @param help What the metric measures.
+     * @param type The Prometheus metric type.
+     */
+    static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Escapes a label value for the Prometheus text format.
+     *
+     * @param value The label value.
+     * @return The value with backslashes, quotes and line breaks escaped.
+     */
+    static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private void counter(StringBuilder out, String name, String help, ToLongFunction<HotelMetrics> value) {
+        header(out, name, help, "counter");
+        for (Hotel hotel : service.getHotels()) {
+            sample(out, name, hotel, "", value.applyAsLong(hotel.getMetrics()));
+        }
+    }
+
+    private static void sample(StringBuilder out, String name, Hotel hotel, String moreLabels, double value) {
+        out.append(name).append("{hotel=\"").append(escape(hotel.getName())).append('"').append(moreLabels)
+                .append("} ");
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(String.format(Locale.ROOT, "%.6f", value));
+        }
+        out.append('\n');
+    }
+
+    private long sum(ToLongFunction<HotelMetrics> value) {
+        long total = 0;
+        for (Hotel hotel : service.getHotels()) {
+            total += value.applyAsLong(hotel.getMetrics());
+        }
+        return total;
+    }
+
+    /**
+     * Computes the share of a hotel's room-nights booked over some nights from a day.
+     */
+    private static double occupancy(Hotel hotel, int from, int nights) {
+        return hotel.getOccupancy().report(from, from + nights, null).getOccupancy();
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+}
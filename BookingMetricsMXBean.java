@@ -0,0 +1,142 @@
+import java.util.Map;
+
+/**
+ * Management interface of {@link BookingMetrics}, for reading a booking
+ * service's metrics over JMX. Counts are totals over all hotels since each
+ * hotel was created or loaded.
+ */
+public interface BookingMetricsMXBean {
+
+    /**
+     * Retrieves the number of hotels.
+     *
+     * @return The count.
+     */
+    int getHotelCount();
+
+    /**
+     * Retrieves the number of searches for free rooms.
+     *
+     * @return The count.
+     */
+    long getSearches();
+
+    /**
+     * Retrieves the number of room slots looked at by all searches.
+     *
+     * @return The count.
+     */
+    long getRoomsScanned();
+
+    /**
+     * Retrieves the number of quotes for stays.
+     *
+     * @return The count.
+     */
+    long getQuotes();
+
+    /**
+     * Retrieves the number of reservations added.
+     *
+     * @return The count.
+     */
+    long getBookings();
+
+    /**
+     * Retrieves the number of reservations turned away because their room was already booked.
+     *
+     * @return The count.
+     */
+    long getBookingConflicts();
+
+    /**
+     * Retrieves the number of reservations removed.
+     *
+     * @return The count.
+     */
+    long getCancellations();
+
+    /**
+     * Retrieves the number of checks of whether a room is free for a stay.
+     *
+     * @return The count.
+     */
+    long getAvailabilityChecks();
+
+    /**
+     * Retrieves the number of reservations held.
+     *
+     * @return The count.
+     */
+    long getReservations();
+
+    /**
+     * Retrieves the 99th percentile time taken to add a reservation.
+     *
+     * @return The latency in microseconds.
+     */
+    double getBookingP99Micros();
+
+    /**
+     * Retrieves the 99th percentile time taken by a search.
+     *
+     * @return The latency in microseconds.
+     */
+    double getSearchP99Micros();
+
+    /**
+     * Retrieves the number of quotes served from the service's quote cache.
+     *
+     * @return The count.
+     */
+    long getQuoteCacheHits();
+
+    /**
+     * Retrieves the number of quotes the service's quote cache had to compute.
+     *
+     * @return The count.
+     */
+    long getQuoteCacheMisses();
+
+    /**
+     * Retrieves the share of quotes served from the service's quote cache.
+     *
+     * @return The hit rate between 0 and 1.
+     */
+    double getQuoteCacheHitRate();
+
+    /**
+     * Retrieves the number of holds in force.
+     *
+     * @return The count.
+     */
+    int getActiveHolds();
+
+    /**
+     * Retrieves the number of holds that ran out before being confirmed or released.
+     *
+     * @return The count.
+     */
+    long getExpiredHolds();
+
+    /**
+     * Retrieves the number of change events published to consumers.
+     *
+     * @return The count.
+     */
+    long getEventsPublished();
+
+    /**
+     * Retrieves the share of each hotel's rooms booked tonight.
+     *
+     * @return The occupancy between 0 and 1, by hotel name.
+     */
+    Map<String, Double> getOccupancy();
+
+    /**
+     * Retrieves the number of reservations added to each hotel, to spot hot hotels.
+     *
+     * @return The count, by hotel name.
+     */
+    Map<String, Long> getBookingsByHotel();
+}
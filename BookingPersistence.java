@@ -0,0 +1,427 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Keeps the hotels and reservations of a {@link BookingService} on disk.
+ *
+ * A data directory holds a snapshot of the whole service and a
+ * {@link BookingJournal} of the changes made since that snapshot. Both carry
+ * a generation number: each snapshot increments it and then starts the
+ * journal over, so a crash between the two steps leaves a journal whose
+ * changes are all in the snapshot already, and it is skipped on recovery.
+ * Snapshots are taken in the background once enough changes have been
+ * journaled; changes wait while a snapshot is being written.
+ *
+ * The directory may also hold the discount rules of the hotels, see
+ * {@link DiscountEngine}. They are configuration rather than data, so they
+ * are read on startup and never written.
+ */
+public class BookingPersistence implements AutoCloseable {
+
+    /** Number of journal records after which a snapshot is taken. */
+    public static final long DEFAULT_SNAPSHOT_THRESHOLD = 100_000;
+
+    private static final String SNAPSHOT_FILE = "hotels.snapshot";
+    private static final String JOURNAL_FILE = "hotels.journal";
+    private static final String DISCOUNT_RULES_FILE = "discounts.rules";
+    private static final int SNAPSHOT_MAGIC = 0x48534E34; // "HSN4", hotels carry their archived stays
+
+    private final Path directory;
+    private final BookingService service;
+    private final BookingJournal journal;
+    private final long snapshotThreshold;
+    private final ScheduledExecutorService scheduler;
+    private long generation;
+
+    private BookingPersistence(Path directory, BookingService service, BookingJournal journal,
+                               long generation, long snapshotThreshold) {
+        this.directory = directory;
+        this.service = service;
+        this.journal = journal;
+        this.generation = generation;
+        this.snapshotThreshold = snapshotThreshold;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "booking-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Loads the latest snapshot and journal from a data directory into an
+     * empty service, then records every further change the service makes.
+     *
+     * @param directory The data directory, created if it does not exist.
+     * @param service The service to load into; it must not have any hotels yet.
+     * @param syncCommit Whether each change waits until it is on disk before returning.
+     * @return The persistence engine, which must be closed on shutdown.
+     * @throws IOException If the data cannot be read or the journal cannot be opened.
+     */
+    public static BookingPersistence open(Path directory, BookingService service, boolean syncCommit) throws IOException {
+        return open(directory, service, syncCommit, DEFAULT_SNAPSHOT_THRESHOLD);
+    }
+
+    /**
+     * Loads the latest snapshot and journal from a data directory into an
+     * empty service, then records every further change the service makes.
+     *
+     * @param directory The data directory, created if it does not exist.
+     * @param service The service to load into; it must not have any hotels yet.
+     * @param syncCommit Whether each change waits until it is on disk before returning.
+     * @param snapshotThreshold The number of journal records after which a snapshot is taken.
+     * @return The persistence engine, which must be closed on shutdown.
+     * @throws IOException If the data or discount rules cannot be read or the journal cannot be opened.
+     */
+    public static BookingPersistence open(Path directory, BookingService service, boolean syncCommit,
+                                          long snapshotThreshold) throws IOException {
+        if (!service.getHotels().isEmpty()) {
+            throw new IllegalArgumentException("Service already has hotels");
+        }
+        Files.createDirectories(directory);
+        Path discountRules = directory.resolve(DISCOUNT_RULES_FILE);
+        if (Files.exists(discountRules)) {
+            service.loadDiscountRules(discountRules);
+        }
+        long generation = 0;
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            generation = readSnapshot(snapshot, service);
+        }
+        Replay replay = new Replay(service);
+        long validEnd = BookingJournal.read(directory.resolve(JOURNAL_FILE), generation, replay::apply);
+
+        BookingJournal journal = new BookingJournal(directory.resolve(JOURNAL_FILE), generation, validEnd, syncCommit);
+        service.setJournal(journal);
+        BookingPersistence persistence = new BookingPersistence(directory, service, journal, generation, snapshotThreshold);
+        persistence.scheduler.scheduleWithFixedDelay(persistence::snapshotIfDue, 1, 1, TimeUnit.SECONDS);
+        return persistence;
+    }
+
+    /**
+     * Writes a snapshot of the service and starts the journal over.
+     * No change can be made while the snapshot is being written.
+     *
+     * @throws IOException If the snapshot could not be written; the journal is kept in that case.
+     */
+    public synchronized void snapshot() throws IOException {
+        Lock lock = service.getCheckpointLock();
+        lock.lock();
+        try {
+            long next = generation + 1;
+            journal.flush();
+            Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+            writeSnapshot(temp, next, service.getHotels());
+            Files.move(temp, directory.resolve(SNAPSHOT_FILE),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            journal.reset(next);
+            generation = next;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops recording changes and closes the journal, after writing out every pending change.
+     *
+     * @throws IOException If the last changes could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdown();
+        Lock lock = service.getCheckpointLock();
+        lock.lock();
+        try {
+            service.setJournal(null);
+        } finally {
+            lock.unlock();
+        }
+        journal.close();
+    }
+
+    private void snapshotIfDue() {
+        if (journal.getRecordCount() < snapshotThreshold) {
+            return;
+        }
+        try {
+            snapshot();
+        } catch (IOException e) {
+            System.err.println("Snapshot failed, keeping the journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes every hotel, room and reservation to a file and forces it to disk.
+     */
+    private static void writeSnapshot(Path file, long generation, List<Hotel> hotels) throws IOException {
+        int today = HotelCalendar.today();
+        int lastDay = HotelCalendar.lastCheckOut();
+        try (FileOutputStream fileOut = new FileOutputStream(file.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(fileOut, new CRC32());
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, 1 << 16));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(generation);
+            out.writeInt(hotels.size());
+            for (Hotel hotel : hotels) {
+                writeString(out, hotel.getName());
+                out.writeLong(hotel.getBasePrice());
+                Room[] rooms = hotel.getRooms();
+                out.writeInt(rooms.length);
+                for (int day = today; day < lastDay; day++) {
+                    int modifier = hotel.getDatePriceModifier(day);
+                    if (modifier != Money.ONE) {
+                        out.writeInt(day);
+                        out.writeInt(modifier);
+                    }
+                }
+                out.writeInt(-1); // End of modifiers
+                for (Room room : rooms) {
+                    out.writeInt(room.getRoomNo());
+                    out.writeByte(room.getType().ordinal());
+                    out.writeLong(room.getBasePrice());
+                }
+
+                List<Reservation> reservations = hotel.getReservations();
+                out.writeInt(reservations.size());
+                for (Reservation reservation : reservations) {
+                    out.writeLong(reservation.getId());
+                    writeString(out, reservation.getName());
+                    out.writeInt(reservation.getCheckIn());
+                    out.writeInt(reservation.getCheckOut());
+                    out.writeInt(reservation.getRoom().getRoomNo());
+                    writeString(out, reservation.getDiscountCode());
+                    out.writeLong(reservation.getTotalPrice());
+                    out.writeBoolean(reservation.isLocked());
+                }
+
+                ReservationHistory.Stay stay = hotel.getHistory().view();
+                int stayCount = hotel.getHistory().size();
+                out.writeInt(stayCount);
+                for (int row = 0; row < stayCount; row++) {
+                    stay.moveTo(row);
+                    out.writeLong(stay.getId());
+                    writeString(out, stay.getName());
+                    out.writeInt(stay.getCheckIn());
+                    out.writeInt(stay.getCheckOut());
+                    out.writeInt(stay.getRoomNo());
+                    out.writeByte(stay.getRoomType().ordinal());
+                    writeString(out, stay.getDiscountCode());
+                    out.writeLong(stay.getTotalPrice());
+                }
+            }
+            out.flush();
+            fileOut.write(ByteBuffer.allocate(8).putLong(checked.getChecksum().getValue()).array());
+            fileOut.getFD().sync();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length > BookingJournal.MAX_STRING_BYTES) {
+            throw new IOException("String too long for the snapshot: " + utf8.length + " bytes");
+        }
+        out.writeShort(utf8.length);
+        out.write(utf8);
+    }
+
+    /**
+     * Loads a snapshot into a service. The file is read and checked in one go,
+     * then decoded straight from memory.
+     *
+     * @return The generation of the snapshot.
+     */
+    private static long readSnapshot(Path file, BookingService service) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < 8) {
+            throw new IOException("Snapshot is corrupt: " + file);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 8);
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        if (in.getLong(bytes.length - 8) != crc.getValue() || in.getInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Snapshot is corrupt: " + file);
+        }
+
+        RoomType[] types = RoomType.values();
+        long generation = in.getLong();
+        int hotelCount = in.getInt();
+        for (int h = 0; h < hotelCount; h++) {
+            String name = BookingJournal.getString(in);
+            long basePrice = in.getLong();
+            int roomCount = in.getInt();
+            Hotel hotel = service.newHotel(name, roomCount);
+            hotel.updateBasePrice(basePrice);
+            for (int day = in.getInt(); day >= 0; day = in.getInt()) {
+                hotel.updateDatePriceModifier(day, in.getInt());
+            }
+            for (int r = 0; r < roomCount; r++) {
+                int roomNo = in.getInt();
+                hotel.addRoom(types[in.get()].newRoom(roomNo, in.getLong())); // Takes the hotel's modifiers
+            }
+
+            int reservationCount = in.getInt();
+            for (int i = 0; i < reservationCount; i++) {
+                long id = in.getLong();
+                String guestName = BookingJournal.getString(in);
+                int checkIn = in.getInt();
+                int checkOut = in.getInt();
+                Room room = hotel.findRoom(in.getInt());
+                String discountCode = BookingJournal.getString(in);
+                long totalPrice = in.getLong();
+                boolean locked = in.get() != 0;
+                if (room != null) {
+                    Reservation reservation = new Reservation(guestName, checkIn, checkOut, room, discountCode, totalPrice);
+                    reservation.setId(id);
+                    reservation.setLocked(locked);
+                    hotel.addReservation(reservation);
+                }
+            }
+
+            int stayCount = in.getInt();
+            for (int i = 0; i < stayCount; i++) {
+                long id = in.getLong();
+                String guestName = BookingJournal.getString(in);
+                int checkIn = in.getInt();
+                int checkOut = in.getInt();
+                int roomNo = in.getInt();
+                RoomType type = types[in.get()];
+                String discountCode = BookingJournal.getString(in);
+                hotel.restoreStay(id, guestName, checkIn, checkOut, roomNo, type, discountCode, in.getLong());
+            }
+            service.restoreHotel(hotel);
+        }
+        return generation;
+    }
+
+    /**
+     * Applies journal records to a service, bypassing validation and the journal itself.
+     */
+    private static class Replay {
+        private final BookingService service;
+        private final Map<Reservation, Room> pendingMoves; // Read from REASSIGN_PART records, until their REASSIGN
+        private Hotel pendingHotel;
+
+        private Replay(BookingService service) {
+            this.service = service;
+            this.pendingMoves = new LinkedHashMap<>();
+        }
+
+        private void apply(ByteBuffer record) {
+            byte type = record.get();
+            if (type != BookingJournal.REASSIGN_PART && type != BookingJournal.REASSIGN) {
+                pendingMoves.clear(); // Parts whose REASSIGN was never written, as the process stopped
+            }
+            if (type == BookingJournal.CREATE_HOTEL) {
+                Hotel hotel = service.newHotel(BookingJournal.getString(record), 0);
+                hotel.updateBasePrice(record.getLong());
+                service.restoreHotel(hotel);
+                return;
+            }
+
+            Hotel hotel = service.findHotel(BookingJournal.getString(record));
+            if (hotel == null) {
+                return; // Recorded after the hotel was removed
+            }
+            switch (type) {
+                case BookingJournal.RENAME_HOTEL:
+                    service.renameHotel(hotel, BookingJournal.getString(record));
+                    break;
+                case BookingJournal.REMOVE_HOTEL:
+                    service.removeHotel(hotel);
+                    break;
+                case BookingJournal.ADD_ROOM: {
+                    int roomNo = record.getInt();
+                    Room room = RoomType.values()[record.get()].newRoom(roomNo, record.getLong());
+                    hotel.addRoom(room);
+                    break;
+                }
+                case BookingJournal.REMOVE_ROOM: {
+                    Room room = hotel.findRoom(record.getInt());
+                    if (room != null) {
+                        hotel.removeRoom(room);
+                    }
+                    break;
+                }
+                case BookingJournal.BASE_PRICE:
+                    hotel.updateBasePrice(record.getLong());
+                    break;
+                case BookingJournal.DATE_MODIFIER:
+                    hotel.updateDatePriceModifier(record.getInt(), record.getInt());
+                    break;
+                case BookingJournal.RESERVE: {
+                    long id = record.getLong();
+                    String guestName = BookingJournal.getString(record);
+                    int checkIn = record.getInt();
+                    int checkOut = record.getInt();
+                    Room room = hotel.findRoom(record.getInt());
+                    String discountCode = BookingJournal.getString(record);
+                    long totalPrice = record.getLong();
+                    boolean locked = record.get() != 0;
+                    if (room == null) {
+                        break;
+                    }
+                    Reservation reservation = new Reservation(guestName, checkIn, checkOut, room, discountCode, totalPrice);
+                    reservation.setId(id);
+                    reservation.setLocked(locked);
+                    hotel.addReservation(reservation);
+                    break;
+                }
+                case BookingJournal.CANCEL: {
+                    Reservation reservation = hotel.findReservation(record.getLong());
+                    if (reservation != null) {
+                        hotel.removeReservation(reservation);
+                    }
+                    break;
+                }
+                case BookingJournal.LOCK: {
+                    Reservation reservation = hotel.findReservation(record.getLong());
+                    boolean locked = record.get() != 0;
+                    if (reservation != null) {
+                        reservation.setLocked(locked);
+                    }
+                    break;
+                }
+                case BookingJournal.REASSIGN_PART:
+                case BookingJournal.REASSIGN: {
+                    if (pendingHotel != hotel) {
+                        pendingMoves.clear();
+                        pendingHotel = hotel;
+                    }
+                    int count = record.getInt();
+                    for (int i = 0; i < count; i++) {
+                        Reservation reservation = hotel.findReservation(record.getLong());
+                        Room room = hotel.findRoom(record.getInt());
+                        if (reservation != null && room != null) {
+                            pendingMoves.put(reservation, room);
+                        }
+                    }
+                    if (type == BookingJournal.REASSIGN) {
+                        hotel.moveReservations(pendingMoves);
+                        pendingMoves.clear();
+                    }
+                    break;
+                }
+                case BookingJournal.ARCHIVE:
+                    hotel.archiveStays(record.getInt());
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown journal record type " + type);
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * One stay asked for in a batch of bookings, see {@link BookingService#reserveBatch}.
+ * A request names either a specific room or, with room number 0, any room of
+ * a type.
+ */
+public class BookingRequest {
+
+    private final String guestName;
+    private final int checkIn;
+    private final int checkOut;
+    private final int roomNo;
+    private final RoomType roomType;
+    private final String discountCode;
+
+    /**
+     * Constructs a request.
+     *
+     * @param guestName The name of the guest.
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @param roomNo The number of the room wanted, or 0 for any room of the type.
+     * @param roomType The type of room wanted, or null for any type. With a room number, it must be the room's type if given.
+     * @param discountCode The discount code, or an empty string for none.
+     */
+    public BookingRequest(String guestName, int checkIn, int checkOut, int roomNo, RoomType roomType, String discountCode) {
+        this.guestName = guestName;
+        this.checkIn = checkIn;
+        this.checkOut = checkOut;
+        this.roomNo = roomNo;
+        this.roomType = roomType;
+        this.discountCode = discountCode == null ? "" : discountCode;
+    }
+
+    /**
+     * Retrieves the name of the guest.
+     *
+     * @return The guest name.
+     */
+    public String getGuestName() {
+        return guestName;
+    }
+
+    /**
+     * Retrieves the check-in date.
+     *
+     * @return The check-in date as an epoch day.
+     */
+    public int getCheckIn() {
+        return checkIn;
+    }
+
+    /**
+     * Retrieves the check-out date.
+     *
+     * @return The check-out date as an epoch day.
+     */
+    public int getCheckOut() {
+        return checkOut;
+    }
+
+    /**
+     * Retrieves the number of the room wanted.
+     *
+     * @return The room number, or 0 for any room.
+     */
+    public int getRoomNo() {
+        return roomNo;
+    }
+
+    /**
+     * Retrieves the type of room wanted.
+     *
+     * @return The room type, or null for any type.
+     */
+    public RoomType getRoomType() {
+        return roomType;
+    }
+
+    /**
+     * Retrieves the discount code.
+     *
+     * @return The discount code, or an empty string for none.
+     */
+    public String getDiscountCode() {
+        return discountCode;
+    }
+}
@@ -0,0 +1,700 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+
+/**
+ * HTTP/JSON front end for a {@link BookingService}, built on the JDK's embedded HTTP server.
+ * Each request runs on its own virtual thread when the JVM supports them
+ * (Java 21+), and on a cached thread pool otherwise. Responses always carry a
+ * Content-Length, so HTTP/1.1 clients keep their connections open between requests.
+ *
+ * <pre>
+ * POST   /hotels            {"name":"Hilton","standard":10,"deluxe":5,"executive":2}
+ * GET    /hotels
+ * GET    /availability      ?hotel=Hilton&amp;checkIn=2026-12-01&amp;checkOut=2026-12-03[&amp;type=DELUXE]
+ * GET    /search            ?checkIn=2026-12-01&amp;checkOut=2026-12-03[&amp;type=DELUXE][&amp;maxPrice=3000.00][&amp;limit=50]
+ *                            free rooms in every hotel, cheapest first
+ * POST   /reservations      {"hotel":"Hilton","guest":"Ann","checkIn":"2026-12-01","checkOut":"2026-12-03",
+ *                            "type":"DELUXE" or "room":101, "discountCode":"PAYDAY"}
+ * DELETE /reservations      ?hotel=Hilton&amp;id=17 or ?hotel=Hilton&amp;guest=Ann
+ * POST   /holds             {"hotel":"Hilton","checkIn":"2026-12-01","checkOut":"2026-12-03",
+ *                            "type":"DELUXE" or "room":101, "ttlSeconds":600}
+ *                            holds a room while the guest checks out; "room" is null when overbooked
+ * POST   /holds/confirm     {"hold":42,"guest":"Ann","discountCode":"PAYDAY"}
+ * DELETE /holds             ?hold=42
+ * POST   /batch             one JSON object per line, each with an "op" of
+ *                            createHotel, availability, reserve or cancel plus that operation's fields
+ * GET    /reports/occupancy ?hotel=Hilton&amp;from=2026-12-01&amp;to=2027-01-01[&amp;type=DELUXE][&amp;daily=true]
+ *                            booked room-nights, occupancy, revenue, ADR and RevPAR, optionally per night
+ * GET    /metrics/latency   latency percentiles per endpoint
+ * GET    /metrics           every hotel's counters and gauges, plus latency per endpoint, as Prometheus text
+ * </pre>
+ */
+public class BookingServer {
+
+    /** Port used when none is given. */
+    public static final int DEFAULT_PORT = 8080;
+
+    private final BookingService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, LatencyHistogram> latencies;
+    private final BookingMetrics metrics;
+
+    /**
+     * Response produced by an operation.
+     */
+    private static class Response {
+        private final int status;
+        private final String body;
+
+        private Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Constructs a server for a booking service. The server does not accept
+     * connections until {@link #start()} is called.
+     *
+     * @param service The service to expose.
+     * @param port The port to listen on, or 0 for any free port.
+     * @throws IOException If the port cannot be bound.
+     */
+    public BookingServer(BookingService service, int port) throws IOException {
+        this.service = service;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = newRequestExecutor();
+        this.latencies = new LinkedHashMap<>();
+        this.metrics = new BookingMetrics(service);
+        server.setExecutor(executor);
+        route("/hotels", this::handleHotels);
+        route("/availability", this::handleAvailability);
+        route("/search", this::handleSearch);
+        route("/reservations", this::handleReservations);
+        route("/holds", this::handleHolds);
+        route("/holds/confirm", this::handleConfirmHold);
+        route("/batch", this::handleBatch);
+        route("/reports/occupancy", this::handleOccupancy);
+        server.createContext("/metrics/latency", exchange -> send(exchange, new Response(200, latencyJson())));
+        server.createContext("/metrics", exchange -> sendText(exchange, prometheusText()));
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops the server, waiting up to a second for requests in progress.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Retrieves the metrics of the service's hotels.
+     *
+     * @return The metrics.
+     */
+    public BookingMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Retrieves the port the server is listening on.
+     *
+     * @return The port.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Runs a server on the given port until the process is stopped.
+     * When a data directory is given, hotels and reservations are loaded from
+     * it on startup and every change is written to it before it is acknowledged,
+     * and room calendars are kept off the heap in memory-mapped files there.
+     * Discount rules are read from {@code discounts.rules} there if that file exists,
+     * and every change is also appended to {@code events.bin} there, see {@link EventFileSink}.
+     * The metrics are also published over JMX as {@value BookingMetrics#OBJECT_NAME}.
+     *
+     * @param args An optional port number, followed by an optional data directory.
+     * @throws IOException If the port cannot be bound or the data directory cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        BookingService service = new BookingService();
+        if (args.length > 1) {
+            service.setCalendarDirectory(Paths.get(args[1], "calendars"));
+            BookingPersistence persistence = BookingPersistence.open(Paths.get(args[1]), service, true);
+            EventFileSink events = new EventFileSink(Paths.get(args[1], "events.bin"));
+            service.getEvents().addConsumer("file", events);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    persistence.close();
+                } catch (IOException e) {
+                    System.err.println("Could not close the journal: " + e.getMessage());
+                }
+                service.getEvents().close();
+                try {
+                    events.close();
+                } catch (IOException e) {
+                    System.err.println("Could not close the event file: " + e.getMessage());
+                }
+            }));
+        }
+        BookingServer server = new BookingServer(service, port);
+        try {
+            server.getMetrics().register();
+        } catch (JMException e) {
+            System.err.println("Could not register metrics with JMX: " + e.getMessage());
+        }
+        server.start();
+        System.out.println("Booking server listening on port " + server.getPort());
+    }
+
+    /**
+     * Creates a virtual-thread-per-task executor when the running JVM has one,
+     * otherwise a cached thread pool.
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Operation behind an endpoint.
+     */
+    private interface Endpoint {
+        Response handle(String method, Map<String, String> params) throws IOException;
+    }
+
+    /**
+     * Registers an endpoint, timing every request into its latency histogram.
+     * Bad input is answered with 400, and any other failure, such as a change
+     * that could not be written to the journal, with 500.
+     */
+    private void route(String path, Endpoint endpoint) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        latencies.put(path, histogram);
+        HttpHandler handler = exchange -> {
+            long start = System.nanoTime();
+            try {
+                Response response;
+                try {
+                    Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+                    String method = exchange.getRequestMethod();
+                    if (method.equals("POST")) {
+                        params.putAll(readBody(exchange, path.equals("/batch")));
+                    }
+                    response = endpoint.handle(method, params);
+                } catch (IllegalArgumentException e) {
+                    response = error(400, e.getMessage());
+                } catch (RuntimeException e) {
+                    response = internalError(path, e);
+                }
+                send(exchange, response);
+            } finally {
+                histogram.recordSince(start);
+            }
+        };
+        server.createContext(path, handler);
+    }
+
+    private Response handleHotels(String method, Map<String, String> params) {
+        if (method.equals("GET")) {
+            StringBuilder out = new StringBuilder("[");
+            for (Hotel hotel : service.getHotels()) {
+                if (out.length() > 1) {
+                    out.append(',');
+                }
+                out.append(hotelJson(hotel));
+            }
+            return new Response(200, out.append(']').toString());
+        }
+        if (method.equals("POST")) {
+            return createHotel(params);
+        }
+        return error(405, "Method not allowed");
+    }
+
+    private Response handleAvailability(String method, Map<String, String> params) {
+        if (!method.equals("GET")) {
+            return error(405, "Method not allowed");
+        }
+        return availability(params);
+    }
+
+    private Response handleReservations(String method, Map<String, String> params) {
+        if (method.equals("POST")) {
+            return reserve(params);
+        }
+        if (method.equals("DELETE")) {
+            return cancel(params);
+        }
+        return error(405, "Method not allowed");
+    }
+
+    private Response handleHolds(String method, Map<String, String> params) {
+        if (method.equals("POST")) {
+            return hold(params);
+        }
+        if (method.equals("DELETE")) {
+            ServiceStatus status = service.releaseHold(longParam(params, "hold"));
+            return status.isOk() ? new Response(200, "{\"released\":true}") : failure(status);
+        }
+        return error(405, "Method not allowed");
+    }
+
+    private Response handleConfirmHold(String method, Map<String, String> params) {
+        if (!method.equals("POST")) {
+            return error(405, "Method not allowed");
+        }
+        Hold hold = service.getHolds().findHold(longParam(params, "hold"));
+        if (hold == null) {
+            return failure(ServiceStatus.HOLD_NOT_FOUND);
+        }
+        ServiceResult<Reservation> result = service.confirmHold(hold.getId(), required(params, "guest"),
+                params.getOrDefault("discountCode", ""));
+        if (!result.isOk()) {
+            return failure(result.getStatus());
+        }
+        return new Response(201, reservationJson(hold.getHotel(), result.getValue()));
+    }
+
+    /**
+     * Runs every operation in the request body in order and returns their results as one JSON array.
+     */
+    private Response handleBatch(String method, Map<String, String> params) {
+        if (!method.equals("POST")) {
+            return error(405, "Method not allowed");
+        }
+        StringBuilder out = new StringBuilder("[");
+        String body = params.getOrDefault("", "");
+        for (String line : body.split("\n")) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            Response response;
+            try {
+                response = execute(Json.parseObject(line));
+            } catch (IllegalArgumentException e) {
+                response = error(400, e.getMessage());
+            } catch (RuntimeException e) {
+                response = internalError("/batch", e);
+            }
+            if (out.length() > 1) {
+                out.append(',');
+            }
+            out.append("{\"status\":").append(response.status).append(",\"body\":").append(response.body).append('}');
+        }
+        return new Response(200, out.append(']').toString());
+    }
+
+    /**
+     * Runs a single batched operation.
+     */
+    private Response execute(Map<String, String> params) {
+        String op = required(params, "op");
+        switch (op) {
+            case "createHotel":
+                return createHotel(params);
+            case "availability":
+                return availability(params);
+            case "reserve":
+                return reserve(params);
+            case "cancel":
+                return cancel(params);
+            default:
+                throw new IllegalArgumentException("Unknown op: " + op);
+        }
+    }
+
+    private Response createHotel(Map<String, String> params) {
+        ServiceResult<Hotel> result = service.createHotel(required(params, "name"),
+                intParam(params, "standard", 0), intParam(params, "deluxe", 0), intParam(params, "executive", 0));
+        if (!result.isOk()) {
+            return failure(result.getStatus());
+        }
+        return new Response(201, hotelJson(result.getValue()));
+    }
+
+    private Response availability(Map<String, String> params) {
+        Hotel hotel = service.findHotel(required(params, "hotel"));
+        if (hotel == null) {
+            return failure(ServiceStatus.HOTEL_NOT_FOUND);
+        }
+        int checkIn = dateParam(params, "checkIn");
+        int checkOut = dateParam(params, "checkOut");
+        if (!HotelCalendar.isValidStay(checkIn, checkOut)) {
+            return failure(ServiceStatus.INVALID_DATES);
+        }
+        List<Room> rooms = hotel.findFreeRooms(checkIn, checkOut, typeParam(params));
+        StringBuilder out = new StringBuilder("{\"hotel\":").append(Json.quote(hotel.getName()))
+                .append(",\"available\":").append(rooms.size()).append(",\"rooms\":[");
+        for (int i = 0; i < rooms.size(); i++) {
+            Room room = rooms.get(i);
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append("{\"room\":").append(room.getRoomNo())
+                    .append(",\"type\":").append(Json.quote(room.getType().name()))
+                    .append(",\"pricePerNight\":").append(Money.format(room.getPrice()));
+            ServiceResult<Long> price = service.quote(hotel, room.getRoomNo(), checkIn, checkOut, "");
+            if (price.isOk()) { // The room may have been removed since the search
+                out.append(",\"price\":").append(Money.format(price.getValue()));
+            }
+            out.append('}');
+        }
+        return new Response(200, out.append("]}").toString());
+    }
+
+    private Response handleSearch(String method, Map<String, String> params) {
+        if (!method.equals("GET")) {
+            return error(405, "Method not allowed");
+        }
+        long maxPrice = Long.MAX_VALUE;
+        String maxPriceParam = params.get("maxPrice");
+        if (maxPriceParam != null && !maxPriceParam.isEmpty()) {
+            try {
+                maxPrice = Money.ofPesos(Double.parseDouble(maxPriceParam));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number for maxPrice: " + maxPriceParam);
+            }
+        }
+        ServiceResult<List<RoomOffer>> result = service.searchAllHotels(dateParam(params, "checkIn"),
+                dateParam(params, "checkOut"), typeParam(params), maxPrice, intParam(params, "limit", 50));
+        if (!result.isOk()) {
+            return failure(result.getStatus());
+        }
+        StringBuilder out = new StringBuilder("[");
+        for (RoomOffer offer : result.getValue()) {
+            if (out.length() > 1) {
+                out.append(',');
+            }
+            out.append("{\"hotel\":").append(Json.quote(offer.getHotel().getName()))
+                    .append(",\"room\":").append(offer.getRoom().getRoomNo())
+                    .append(",\"type\":").append(Json.quote(offer.getRoom().getType().name()))
+                    .append(",\"price\":").append(Money.format(offer.getPrice())).append('}');
+        }
+        return new Response(200, out.append(']').toString());
+    }
+
+    private Response handleOccupancy(String method, Map<String, String> params) {
+        if (!method.equals("GET")) {
+            return error(405, "Method not allowed");
+        }
+        Hotel hotel = service.findHotel(required(params, "hotel"));
+        if (hotel == null) {
+            return failure(ServiceStatus.HOTEL_NOT_FOUND);
+        }
+        int from = dateParam(params, "from");
+        int to = dateParam(params, "to");
+        if (to <= from) {
+            return failure(ServiceStatus.INVALID_DATES);
+        }
+        RoomType type = typeParam(params);
+        StringBuilder out = new StringBuilder("{\"hotel\":").append(Json.quote(hotel.getName()))
+                .append(",\"type\":").append(type == null ? "null" : Json.quote(type.name())).append(',');
+        appendReport(out, hotel.getOccupancy().report(from, to, type));
+        if (Boolean.parseBoolean(params.get("daily"))) {
+            out.append(",\"days\":[");
+            List<OccupancyReport> days = hotel.getOccupancy().dailyReports(from, to, type);
+            for (int i = 0; i < days.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                appendReport(out.append('{'), days.get(i));
+                out.append('}');
+            }
+            out.append(']');
+        }
+        return new Response(200, out.append('}').toString());
+    }
+
+    private static void appendReport(StringBuilder out, OccupancyReport report) {
+        out.append("\"from\":").append(Json.quote(HotelCalendar.format(report.getFrom())))
+                .append(",\"to\":").append(Json.quote(HotelCalendar.format(report.getTo())))
+                .append(",\"availableNights\":").append(report.getAvailableNights())
+                .append(",\"bookedNights\":").append(report.getBookedNights())
+                .append(",\"occupancy\":").append(String.format(Locale.ROOT, "%.4f", report.getOccupancy()))
+                .append(",\"revenue\":").append(Money.format(report.getRevenue()))
+                .append(",\"adr\":").append(Money.format(report.getAverageDailyRate()))
+                .append(",\"revPar\":").append(Money.format(report.getRevPar()));
+    }
+
+    private Response reserve(Map<String, String> params) {
+        Hotel hotel = service.findHotel(required(params, "hotel"));
+        String guest = required(params, "guest");
+        int checkIn = dateParam(params, "checkIn");
+        int checkOut = dateParam(params, "checkOut");
+        String discountCode = params.getOrDefault("discountCode", "");
+        ServiceResult<Reservation> result;
+        if (params.containsKey("room")) {
+            result = service.reserveRoom(hotel, guest, checkIn, checkOut, intParam(params, "room", 0), discountCode);
+        } else {
+            result = service.reserve(hotel, guest, checkIn, checkOut, typeParam(params), discountCode);
+        }
+        if (!result.isOk()) {
+            return failure(result.getStatus());
+        }
+        return new Response(201, reservationJson(hotel, result.getValue()));
+    }
+
+    private Response hold(Map<String, String> params) {
+        Hotel hotel = service.findHotel(required(params, "hotel"));
+        int checkIn = dateParam(params, "checkIn");
+        int checkOut = dateParam(params, "checkOut");
+        long ttlMillis = TimeUnit.SECONDS.toMillis(intParam(params, "ttlSeconds",
+                (int) TimeUnit.MILLISECONDS.toSeconds(HoldManager.DEFAULT_TTL_MILLIS)));
+        ServiceResult<Hold> result;
+        if (params.containsKey("room")) {
+            result = service.holdRoom(hotel, checkIn, checkOut, intParam(params, "room", 0), ttlMillis);
+        } else {
+            result = service.hold(hotel, checkIn, checkOut, typeParam(params), ttlMillis);
+        }
+        if (!result.isOk()) {
+            return failure(result.getStatus());
+        }
+        return new Response(201, holdJson(result.getValue()));
+    }
+
+    private Response cancel(Map<String, String> params) {
+        Hotel hotel = service.findHotel(required(params, "hotel"));
+        if (hotel == null) {
+            return failure(ServiceStatus.HOTEL_NOT_FOUND);
+        }
+        Reservation reservation;
+        if (params.containsKey("id")) {
+            reservation = service.findReservation(hotel, longParam(params, "id"));
+        } else {
+            reservation = service.findReservation(hotel, required(params, "guest"));
+        }
+        if (reservation == null) {
+            return failure(ServiceStatus.RESERVATION_NOT_FOUND);
+        }
+        ServiceStatus status = service.cancelReservation(hotel, reservation);
+        if (!status.isOk()) {
+            return failure(status);
+        }
+        return new Response(200, reservationJson(hotel, reservation));
+    }
+
+    private String latencyJson() {
+        StringBuilder out = new StringBuilder("{");
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            if (out.length() > 1) {
+                out.append(',');
+            }
+            out.append(Json.quote(entry.getKey())).append(':').append(entry.getValue().toJson());
+        }
+        return out.append('}').toString();
+    }
+
+    private String prometheusText() {
+        StringBuilder out = new StringBuilder(metrics.toPrometheus());
+        BookingMetrics.header(out, "http_request_seconds", "Time taken to handle requests.", "summary");
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            BookingMetrics.summary(out, "http_request_seconds", "path=\"" + BookingMetrics.escape(entry.getKey()) + "\"",
+                    entry.getValue());
+        }
+        return out.toString();
+    }
+
+    private static String hotelJson(Hotel hotel) {
+        return "{\"name\":" + Json.quote(hotel.getName())
+                + ",\"rooms\":" + hotel.getNumRooms()
+                + ",\"basePrice\":" + Money.format(hotel.getBasePrice())
+                + ",\"reservations\":" + hotel.getNumReservations()
+                + ",\"totalEarnings\":" + Money.format(hotel.getTotalEarnings()) + "}";
+    }
+
+    private static String reservationJson(Hotel hotel, Reservation reservation) {
+        return "{\"id\":" + reservation.getId()
+                + ",\"hotel\":" + Json.quote(hotel.getName())
+                + ",\"guest\":" + Json.quote(reservation.getName())
+                + ",\"room\":" + reservation.getRoom().getRoomNo()
+                + ",\"type\":" + Json.quote(reservation.getRoom().getType().name())
+                + ",\"checkIn\":" + Json.quote(HotelCalendar.format(reservation.getCheckIn()))
+                + ",\"checkOut\":" + Json.quote(HotelCalendar.format(reservation.getCheckOut()))
+                + ",\"totalPrice\":" + Money.format(reservation.getTotalPrice()) + "}";
+    }
+
+    private static String holdJson(Hold hold) {
+        return "{\"hold\":" + hold.getId()
+                + ",\"hotel\":" + Json.quote(hold.getHotel().getName())
+                + ",\"room\":" + (hold.isOverbooked() ? "null" : String.valueOf(hold.getRoom().getRoomNo()))
+                + ",\"type\":" + Json.quote(hold.getType().name())
+                + ",\"checkIn\":" + Json.quote(HotelCalendar.format(hold.getCheckIn()))
+                + ",\"checkOut\":" + Json.quote(HotelCalendar.format(hold.getCheckOut()))
+                + ",\"expiresAt\":" + Json.quote(Instant.ofEpochMilli(hold.getExpiresAt()).toString()) + "}";
+    }
+
+    private static Response failure(ServiceStatus status) {
+        int code;
+        switch (status) {
+            case HOTEL_NOT_FOUND:
+            case ROOM_NOT_FOUND:
+            case RESERVATION_NOT_FOUND:
+            case HOLD_NOT_FOUND:
+                code = 404;
+                break;
+            case DUPLICATE_HOTEL_NAME:
+            case NO_ROOM_AVAILABLE:
+            case ROOM_ALREADY_BOOKED:
+                code = 409;
+                break;
+            default: // Bad input, such as INVALID_DATES or INVALID_LIMIT
+                code = 400;
+        }
+        return new Response(code, "{\"error\":" + Json.quote(status.name())
+                + ",\"message\":" + Json.quote(status.getMessage()) + "}");
+    }
+
+    /**
+     * Reports a failure that is not the client's fault on the standard error stream and answers it with 500.
+     */
+    private static Response internalError(String path, RuntimeException e) {
+        System.err.println("Request to " + path + " failed: " + e);
+        return error(500, "Internal server error");
+    }
+
+    private static Response error(int code, String message) {
+        return new Response(code, "{\"error\":" + Json.quote(message) + "}");
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for " + name + ": " + value);
+        }
+    }
+
+    private static long longParam(Map<String, String> params, String name) {
+        try {
+            return Long.parseLong(required(params, name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for " + name + ": " + params.get(name));
+        }
+    }
+
+    private static int dateParam(Map<String, String> params, String name) {
+        int day = HotelCalendar.parseDate(required(params, name));
+        if (day < 0) {
+            throw new IllegalArgumentException("Invalid date for " + name + ", expected YYYY-MM-DD");
+        }
+        return day;
+    }
+
+    private static RoomType typeParam(Map<String, String> params) {
+        String value = params.get("type");
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        return RoomType.valueOf(value.toUpperCase(Locale.ROOT)); // Throws IllegalArgumentException for unknown types
+    }
+
+    /**
+     * Parses a URL query string into a mutable map.
+     */
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new LinkedHashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    /**
+     * Reads a request body. A batch body is returned whole under the empty key;
+     * any other body is parsed as a flat JSON object.
+     */
+    private static Map<String, String> readBody(HttpExchange exchange, boolean raw) throws IOException {
+        StringBuilder body = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) > 0) {
+                body.append(buffer, 0, read);
+            }
+        }
+        if (raw) {
+            Map<String, String> params = new LinkedHashMap<>();
+            params.put("", body.toString());
+            return params;
+        }
+        if (body.toString().trim().isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        return Json.parseObject(body.toString());
+    }
+
+    private static void sendText(HttpExchange exchange, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        byte[] bytes = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,1090 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Programmatic entry point to the reservation system.
+ * Every operation validates its input, performs the change and reports the
+ * outcome as a {@link ServiceStatus} or {@link ServiceResult}; nothing here
+ * reads from or writes to the console, so the service can be driven by the
+ * console menus, a server or a load generator alike. All methods are safe to
+ * call from many threads.
+ *
+ * When a {@link BookingJournal} is attached, every successful change is
+ * recorded in it before the call returns. Changes hold the read side of a
+ * checkpoint lock while they apply and record themselves, so a snapshot taken
+ * under the write side sees exactly the changes in the journal so far. Names
+ * and codes too long for a record are turned away up front, and a new
+ * reservation is recorded before it can be found, so a record that cannot be
+ * written undoes the booking rather than leaving it out of the journal.
+ *
+ * Records are written in the order that replaying them needs: a reservation
+ * is recorded before anyone can find it to cancel it, a cancellation before
+ * its room's nights are freed for someone else, a room before it can be
+ * booked, and price changes while holding the hotel, so that two changes of
+ * the same price land in the journal in the order they were made. Changes
+ * take the checkpoint lock before the hotel's own lock.
+ *
+ * Quotes asked for through {@link #quote} go through a shared
+ * {@link QuoteCache}, so the same stay asked for again and again, as
+ * metasearch partners do, is priced once per price change.
+ *
+ * A guest who is still entering their details can hold a room with
+ * {@link #hold} or {@link #holdRoom} and turn the hold into a reservation
+ * with {@link #confirmHold} before it runs out, see {@link HoldManager}.
+ * Holds are not journaled: they last minutes and are gone after a restart.
+ *
+ * Every change that is journaled is also published on a
+ * {@link BookingEventBus}, in the same order, for consumers downstream.
+ */
+public class BookingService {
+
+    public static final String DISCOUNT_I_WORK_HERE = "I_WORK_HERE";
+    public static final String DISCOUNT_STAY4_GET1 = "STAY4_GET1";
+    public static final String DISCOUNT_PAYDAY = "PAYDAY";
+
+    /** Lowest base price per night a hotel may charge, in centavos. */
+    public static final long MIN_BASE_PRICE = Money.ofPesos(100);
+    /** Lowest date price modifier, in basis points. */
+    public static final int MIN_MODIFIER = 5_000;
+    /** Highest date price modifier, in basis points. */
+    public static final int MAX_MODIFIER = 15_000;
+    /** Most rooms a hotel may have. */
+    public static final int MAX_ROOMS = 100_000;
+
+    private static final Comparator<RoomOffer> OFFER_ORDER = Comparator.comparingLong(RoomOffer::getPrice)
+            .thenComparing(offer -> offer.getHotel().getName(), String.CASE_INSENSITIVE_ORDER)
+            .thenComparingInt(offer -> offer.getRoom().getRoomNo());
+
+    private final List<Hotel> hotels;
+    private final Map<String, Hotel> hotelsByName; // By lower-case name
+    private final ReentrantReadWriteLock checkpointLock;
+    private volatile BookingJournal journal; // Null when changes are not recorded
+    private volatile Path calendarDirectory; // Null when room calendars stay on the heap
+    private volatile List<String> discountRules; // Lines of the rules file, null for the standard discounts
+    private final AtomicInteger calendarFiles;
+    private final QuoteCache quotes;
+    private final HoldManager holds;
+    private final BookingEventBus events;
+
+    /**
+     * Constructs a service with no hotels.
+     */
+    public BookingService() {
+        this.hotels = new CopyOnWriteArrayList<>();
+        this.hotelsByName = new ConcurrentHashMap<>();
+        this.checkpointLock = new ReentrantReadWriteLock();
+        this.calendarFiles = new AtomicInteger();
+        this.quotes = new QuoteCache(QuoteCache.DEFAULT_CAPACITY);
+        this.holds = new HoldManager();
+        this.events = new BookingEventBus();
+    }
+
+    /**
+     * Keeps the room calendars of hotels created from now on in memory-mapped
+     * files in a directory, one file per hotel, instead of on the heap.
+     *
+     * @param directory The directory, created if it does not exist.
+     * @throws IOException If the directory cannot be created.
+     */
+    public void setCalendarDirectory(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.calendarDirectory = directory;
+    }
+
+    /**
+     * Loads the discount rules of every hotel, including hotels created later,
+     * from a rules file in the format described in {@link DiscountEngine}.
+     * Nothing changes if the file has an invalid rule.
+     *
+     * @param file The rules file.
+     * @throws IOException If the file cannot be read or has an invalid rule.
+     */
+    public synchronized void loadDiscountRules(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        DiscountEngine.parse(lines, ""); // Checks the shared rules even when there are no hotels yet
+        List<DiscountEngine> engines = new ArrayList<>();
+        for (Hotel hotel : hotels) {
+            engines.add(DiscountEngine.parse(lines, hotel.getName()));
+        }
+        for (int i = 0; i < engines.size(); i++) {
+            hotels.get(i).setDiscounts(engines.get(i));
+        }
+        this.discountRules = lines;
+    }
+
+    /**
+     * Starts recording every change in a journal, or stops recording if the journal is null.
+     *
+     * @param journal The journal to record changes in.
+     */
+    public void setJournal(BookingJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Retrieves the bus that every change is published on; add consumers to it to follow changes.
+     *
+     * @return The event bus.
+     */
+    public BookingEventBus getEvents() {
+        return events;
+    }
+
+    /**
+     * Retrieves the lock that, while held, keeps every change from starting.
+     *
+     * @return The write side of the checkpoint lock.
+     */
+    Lock getCheckpointLock() {
+        return checkpointLock.writeLock();
+    }
+
+    /**
+     * Adds a hotel loaded from disk, without recording it in the journal.
+     *
+     * @param hotel The hotel to add.
+     */
+    synchronized void restoreHotel(Hotel hotel) {
+        hotels.add(hotel);
+        hotelsByName.put(nameKey(hotel.getName()), hotel);
+    }
+
+    /**
+     * Constructs a hotel that keeps its room calendars where this service is configured to.
+     *
+     * @param name The name of the hotel.
+     * @param numRooms The number of rooms to reserve space for.
+     * @return The new hotel, not yet added to the service.
+     */
+    Hotel newHotel(String name, int numRooms) {
+        Path directory = calendarDirectory;
+        Hotel hotel;
+        if (directory == null) {
+            hotel = new Hotel(name, numRooms);
+        } else {
+            RoomCalendarFile calendars = null;
+            while (calendars == null) {
+                Path file = directory.resolve("hotel-" + calendarFiles.incrementAndGet() + ".calendars");
+                try {
+                    calendars = new RoomCalendarFile(file);
+                } catch (FileAlreadyExistsException e) {
+                    // Left by an earlier run, whose numbering started at 1 too; try the next name
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            hotel = new Hotel(name, numRooms, calendars);
+        }
+        if (discountRules != null) {
+            hotel.setDiscounts(discountsFor(name));
+        }
+        return hotel;
+    }
+
+    /**
+     * Builds the discount engine of a hotel from the loaded rules file.
+     */
+    private DiscountEngine discountsFor(String hotelName) {
+        try {
+            return DiscountEngine.parse(discountRules, hotelName);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // The rules were checked when they were loaded
+        }
+    }
+
+    /**
+     * Retrieves all hotels.
+     *
+     * @return The hotels, in order of creation.
+     */
+    public List<Hotel> getHotels() {
+        return hotels;
+    }
+
+    /**
+     * Finds a hotel by name, ignoring case.
+     *
+     * @param name The name of the hotel to find.
+     * @return The Hotel object if found, null otherwise.
+     */
+    public Hotel findHotel(String name) {
+        return name == null ? null : hotelsByName.get(nameKey(name));
+    }
+
+    /**
+     * Finds free rooms in every hotel at once, cheapest first.
+     *
+     * Hotels are searched in parallel on the common fork-join pool. A hotel
+     * is skipped without searching its rooms when
+     * {@link Hotel#mayHaveFreeRoom(int, int, RoomType)} finds, from the per-type
+     * booked-room counters of its {@link FreeRoomIndex}, every room of the type
+     * booked on some night of the stay; each other hotel contributes at most
+     * its {@code limit} cheapest rooms to the final sort.
+     *
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @param roomType The type of room wanted, or null for any type.
+     * @param maxPrice The highest price of the stay before discounts, in centavos.
+     * @param limit The largest number of offers to return, 0 or more.
+     * @return The offers, by price then hotel name then room number, or INVALID_DATES or INVALID_LIMIT.
+     */
+    public ServiceResult<List<RoomOffer>> searchAllHotels(int checkIn, int checkOut, RoomType roomType,
+                                                          long maxPrice, int limit) {
+        if (!HotelCalendar.isValidStay(checkIn, checkOut)) {
+            return ServiceResult.failure(ServiceStatus.INVALID_DATES);
+        }
+        if (limit < 0) {
+            return ServiceResult.failure(ServiceStatus.INVALID_LIMIT);
+        }
+        List<RoomOffer> offers = new ArrayList<>();
+        hotels.parallelStream()
+                .filter(hotel -> hotel.mayHaveFreeRoom(checkIn, checkOut, roomType))
+                .map(hotel -> cheapestOffers(hotel, checkIn, checkOut, roomType, maxPrice, limit))
+                .forEachOrdered(offers::addAll);
+        offers.sort(OFFER_ORDER);
+        return ServiceResult.ok(offers.size() > limit ? new ArrayList<>(offers.subList(0, limit)) : offers);
+    }
+
+    /**
+     * Finds the cheapest free rooms of a type in one hotel.
+     */
+    private static List<RoomOffer> cheapestOffers(Hotel hotel, int checkIn, int checkOut, RoomType roomType,
+                                                  long maxPrice, int limit) {
+        List<RoomOffer> offers = new ArrayList<>();
+        for (Room room : hotel.findFreeRooms(checkIn, checkOut, roomType)) {
+            long price = room.quote(checkIn, checkOut);
+            if (price <= maxPrice) {
+                offers.add(new RoomOffer(hotel, room, price));
+            }
+        }
+        offers.sort(OFFER_ORDER);
+        return offers.size() > limit ? offers.subList(0, limit) : offers;
+    }
+
+    private static String nameKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Creates a hotel with the given number of rooms of each type.
+     *
+     * @param name The name of the hotel.
+     * @param standardRooms The number of standard rooms.
+     * @param deluxeRooms The number of deluxe rooms.
+     * @param executiveRooms The number of executive rooms.
+     * @return The new hotel, or the reason it could not be created; INVALID_ROOM_COUNT
+     *         unless there are between 1 and {@link #MAX_ROOMS} rooms in all.
+     */
+    public synchronized ServiceResult<Hotel> createHotel(String name, int standardRooms, int deluxeRooms, int executiveRooms) {
+        if (name == null || name.trim().isEmpty() || !fitsJournal(name)) {
+            return ServiceResult.failure(ServiceStatus.INVALID_HOTEL_NAME);
+        }
+        if (findHotel(name) != null) {
+            return ServiceResult.failure(ServiceStatus.DUPLICATE_HOTEL_NAME);
+        }
+        long totalRooms = (long) standardRooms + deluxeRooms + executiveRooms;
+        if (standardRooms < 0 || deluxeRooms < 0 || executiveRooms < 0 || totalRooms <= 0 || totalRooms > MAX_ROOMS) {
+            return ServiceResult.failure(ServiceStatus.INVALID_ROOM_COUNT);
+        }
+
+        Hotel hotel = newHotel(name, (int) totalRooms);
+        BookingJournal journal = beginChange();
+        try {
+            if (journal != null) {
+                journal.logCreateHotel(name, hotel.getBasePrice());
+            }
+            // Added as soon as it is recorded, so that if recording a room fails the
+            // hotel is left with the rooms recorded so far, as replay will rebuild it
+            hotels.add(hotel);
+            hotelsByName.put(nameKey(name), hotel);
+            events.hotelCreated(name, hotel.getBasePrice());
+            addRooms(hotel, RoomType.STANDARD, standardRooms);
+            addRooms(hotel, RoomType.DELUXE, deluxeRooms);
+            addRooms(hotel, RoomType.EXECUTIVE, executiveRooms);
+        } finally {
+            endChange();
+        }
+        return ServiceResult.ok(hotel);
+    }
+
+    /**
+     * Renames a hotel.
+     *
+     * @param hotel The hotel to rename.
+     * @param newName The new name.
+     * @return OK, or the reason the hotel could not be renamed.
+     */
+    public synchronized ServiceStatus renameHotel(Hotel hotel, String newName) {
+        if (newName == null || newName.trim().isEmpty() || !fitsJournal(newName)) {
+            return ServiceStatus.INVALID_HOTEL_NAME;
+        }
+        if (findHotel(newName) != null) {
+            return ServiceStatus.DUPLICATE_HOTEL_NAME;
+        }
+        // Exclusive, so that no change recorded under the old name lands after the rename
+        checkpointLock.writeLock().lock();
+        try {
+            String oldName = hotel.getName();
+            if (journal != null) {
+                journal.logRenameHotel(oldName, newName);
+            }
+            hotel.setName(newName);
+            hotelsByName.remove(nameKey(oldName));
+            hotelsByName.put(nameKey(newName), hotel);
+            if (discountRules != null) {
+                hotel.setDiscounts(discountsFor(newName)); // The new name may have its own section
+            }
+            events.hotelRenamed(oldName, newName);
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+        return ServiceStatus.OK;
+    }
+
+    /**
+     * Removes a hotel, releasing its holds and deleting the file its room calendars are kept in.
+     *
+     * @param hotel The hotel to remove.
+     * @return OK, or HOTEL_NOT_FOUND.
+     * @throws UncheckedIOException If the calendar file cannot be closed or deleted; the hotel is removed regardless.
+     */
+    public synchronized ServiceStatus removeHotel(Hotel hotel) {
+        checkpointLock.writeLock().lock();
+        try {
+            if (!hotels.remove(hotel)) {
+                return ServiceStatus.HOTEL_NOT_FOUND;
+            }
+            hotelsByName.remove(nameKey(hotel.getName()));
+            quotes.invalidate(hotel);
+            holds.releaseAll(hotel);
+            if (journal != null) {
+                journal.logRemoveHotel(hotel.getName());
+            }
+            events.hotelRemoved(hotel.getName());
+            hotel.deleteCalendars();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+        return ServiceStatus.OK;
+    }
+
+    /**
+     * Adds rooms of one type to a hotel, taking the lowest free room numbers.
+     *
+     * @param hotel The hotel to add rooms to.
+     * @param type The type of the new rooms.
+     * @param count The number of rooms to add.
+     * @return The rooms that were added, or INVALID_ROOM_COUNT if the count is negative
+     *         or would take the hotel past {@link #MAX_ROOMS} rooms.
+     */
+    public ServiceResult<List<Room>> addRooms(Hotel hotel, RoomType type, int count) {
+        if (count < 0 || count > MAX_ROOMS) {
+            return ServiceResult.failure(ServiceStatus.INVALID_ROOM_COUNT);
+        }
+        List<Room> added = new ArrayList<>();
+        BookingJournal journal = beginChange();
+        try {
+            synchronized (hotel) {
+                if (hotel.getNumRooms() + count > MAX_ROOMS) {
+                    return ServiceResult.failure(ServiceStatus.INVALID_ROOM_COUNT);
+                }
+                for (int i = 0; i < count; i++) {
+                    Room room = type.newRoom(hotel.getNextAvailableRoomNumber(), hotel.getBasePrice());
+                    if (journal != null) {
+                        journal.logAddRoom(hotel.getName(), room); // Before the room can be booked
+                    }
+                    if (hotel.addRoom(room)) {
+                        added.add(room);
+                        events.roomAdded(hotel.getName(), room);
+                    }
+                }
+            }
+        } finally {
+            endChange();
+        }
+        return ServiceResult.ok(added);
+    }
+
+    /**
+     * Removes a room from a hotel if it has no bookings.
+     *
+     * @param hotel The hotel to remove the room from.
+     * @param roomNo The number of the room.
+     * @return OK, or the reason the room could not be removed.
+     */
+    public ServiceStatus removeRoom(Hotel hotel, int roomNo) {
+        BookingJournal journal = beginChange();
+        try {
+            synchronized (hotel) {
+                Room room = hotel.findRoom(roomNo);
+                if (room == null) {
+                    return ServiceStatus.ROOM_NOT_FOUND;
+                }
+                if (room.hasBookings()) {
+                    return ServiceStatus.ROOM_HAS_RESERVATIONS;
+                }
+                if (!hotel.removeRoom(room)) { // Booked since the check above
+                    return hotel.findRoom(roomNo) == null ? ServiceStatus.ROOM_NOT_FOUND
+                            : ServiceStatus.ROOM_HAS_RESERVATIONS;
+                }
+                if (journal != null) {
+                    journal.logRemoveRoom(hotel.getName(), roomNo);
+                }
+                events.roomRemoved(hotel.getName(), roomNo);
+            }
+        } finally {
+            endChange();
+        }
+        return ServiceStatus.OK;
+    }
+
+    /**
+     * Updates the base price of every room in a hotel.
+     * Only allowed while the hotel has no reservations.
+     *
+     * @param hotel The hotel to update.
+     * @param newPrice The new base price per night, in centavos.
+     * @return OK, or the reason the price could not be updated.
+     */
+    public ServiceStatus updateBasePrice(Hotel hotel, long newPrice) {
+        if (hotel.getNumReservations() != 0) {
+            return ServiceStatus.HOTEL_HAS_RESERVATIONS;
+        }
+        if (newPrice < MIN_BASE_PRICE) {
+            return ServiceStatus.INVALID_PRICE;
+        }
+        BookingJournal journal = beginChange();
+        try {
+            synchronized (hotel) {
+                hotel.updateBasePrice(newPrice);
+                if (journal != null) {
+                    journal.logBasePrice(hotel.getName(), newPrice);
+                }
+                events.priceChanged(hotel.getName(), newPrice);
+            }
+        } finally {
+            endChange();
+        }
+        return ServiceStatus.OK;
+    }
+
+    /**
+     * Updates the price modifier of a date for every room in a hotel.
+     *
+     * @param hotel The hotel to update.
+     * @param day The date as an epoch day.
+     * @param modifier The new price modifier in basis points ({@link Money#ONE} for 100%).
+     * @return OK, or the reason the modifier could not be updated.
+     */
+    public ServiceStatus updateDatePriceModifier(Hotel hotel, int day, int modifier) {
+        if (day < HotelCalendar.today() || day >= HotelCalendar.lastCheckOut()) {
+            return ServiceStatus.INVALID_DATE;
+        }
+        if (modifier < MIN_MODIFIER || modifier > MAX_MODIFIER) {
+            return ServiceStatus.INVALID_MODIFIER;
+        }
+        BookingJournal journal = beginChange();
+        try {
+            synchronized (hotel) {
+                hotel.updateDatePriceModifier(day, modifier);
+                if (journal != null) {
+                    journal.logDateModifier(hotel.getName(), day, modifier);
+                }
+                events.modifierChanged(hotel.getName(), day, modifier);
+            }
+        } finally {
+            endChange();
+        }
+        return ServiceStatus.OK;
+    }
+
+    /**
+     * Reserves any free room of the given type for a stay.
+     *
+     * @param hotel The hotel to book in.
+     * @param guestName The name of the guest.
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @param roomType The type of room wanted, or null for any type.
+     * @param discountCode The discount code, or an empty string for none.
+     * @return The reservation, or the reason no reservation was made.
+     */
+    public ServiceResult<Reservation> reserve(Hotel hotel, String guestName, int checkIn, int checkOut,
+                                              RoomType roomType, String discountCode) {
+        ServiceResult<DiscountChain> booking = validateBooking(hotel, guestName, checkIn, checkOut, discountCode);
+        if (!booking.isOk()) {
+            return ServiceResult.failure(booking.getStatus());
+        }
+        return reserveAny(hotel, guestName, checkIn, checkOut, roomType, booking.getValue());
+    }
+
+    /**
+     * Reserves a specific room for a stay.
+     *
+     * @param hotel The hotel to book in.
+     * @param guestName The name of the guest.
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @param roomNo The number of the room wanted.
+     * @param discountCode The discount code, or an empty string for none.
+     * @return The reservation, or the reason no reservation was made.
+     */
+    public ServiceResult<Reservation> reserveRoom(Hotel hotel, String guestName, int checkIn, int checkOut,
+                                                  int roomNo, String discountCode) {
+        ServiceResult<DiscountChain> booking = validateBooking(hotel, guestName, checkIn, checkOut, discountCode);
+        if (!booking.isOk()) {
+            return ServiceResult.failure(booking.getStatus());
+        }
+        Room room = hotel.findRoom(roomNo);
+        if (room == null) {
+            return ServiceResult.failure(ServiceStatus.ROOM_NOT_FOUND);
+        }
+        Reservation reservation = new Reservation(guestName, checkIn, checkOut, room, booking.getValue());
+        reservation.setLocked(true); // The guest chose the room, so the re-optimizer leaves it there
+        if (!addReservation(hotel, reservation)) {
+            return ServiceResult.failure(hotel.findRoom(roomNo) != room ? ServiceStatus.ROOM_NOT_FOUND
+                    : ServiceStatus.ROOM_ALREADY_BOOKED); // Removed just now, or taken
+        }
+        return ServiceResult.ok(reservation);
+    }
+
+    /**
+     * Books many stays in one hotel at once, for group blocks and channel manager loads.
+     *
+     * Every request is validated first. Requests for specific rooms are then
+     * sorted by room and check-in date, so that each room's calendar is walked
+     * once, in order, and each room's requests are booked together under a
+     * single hold of its lock: other callers see either none of them or all
+     * that succeeded. Only that visibility is shared; a request that overlaps
+     * an earlier one for the same room, in this batch or before, fails on its
+     * own and the others are still booked. A request that names a room of
+     * another type than it asks for fails with INVALID_REQUEST. Requests for
+     * any room of a type are then booked in check-in order.
+     *
+     * @param hotel The hotel to book in.
+     * @param requests The requests.
+     * @return The outcome of each request, in the order of the requests.
+     */
+    public List<ServiceResult<Reservation>> reserveBatch(Hotel hotel, List<BookingRequest> requests) {
+        int count = requests.size();
+        List<ServiceResult<Reservation>> results = new ArrayList<>(Collections.nCopies(count, null));
+        DiscountChain[] discounts = new DiscountChain[count];
+        List<Integer> byRoom = new ArrayList<>();
+        List<Integer> anyRoom = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BookingRequest request = requests.get(i);
+            ServiceResult<DiscountChain> booking = validateBooking(hotel, request.getGuestName(),
+                    request.getCheckIn(), request.getCheckOut(), request.getDiscountCode());
+            if (!booking.isOk()) {
+                results.set(i, ServiceResult.failure(booking.getStatus()));
+            } else {
+                discounts[i] = booking.getValue();
+                (request.getRoomNo() != 0 ? byRoom : anyRoom).add(i);
+            }
+        }
+
+        byRoom.sort(Comparator.comparingInt((Integer i) -> requests.get(i).getRoomNo())
+                .thenComparingInt(i -> requests.get(i).getCheckIn()));
+        for (int start = 0; start < byRoom.size(); ) {
+            int roomNo = requests.get(byRoom.get(start)).getRoomNo();
+            int end = start;
+            while (end < byRoom.size() && requests.get(byRoom.get(end)).getRoomNo() == roomNo) {
+                end++;
+            }
+            reserveRoomGroup(hotel, hotel.findRoom(roomNo), requests, byRoom.subList(start, end), discounts, results);
+            start = end;
+        }
+
+        anyRoom.sort(Comparator.comparingInt(i -> requests.get(i).getCheckIn()));
+        for (int i : anyRoom) {
+            BookingRequest request = requests.get(i);
+            results.set(i, reserveAny(hotel, request.getGuestName(), request.getCheckIn(), request.getCheckOut(),
+                    request.getRoomType(), discounts[i]));
+        }
+        return results;
+    }
+
+    /**
+     * Finds the first reservation made under a guest name, ignoring case.
+     *
+     * @param hotel The hotel to search.
+     * @param guestName The guest name.
+     * @return The reservation, or null if the guest has none.
+     */
+    public Reservation findReservation(Hotel hotel, String guestName) {
+        List<Reservation> found = hotel.findReservations(guestName);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * Finds a reservation by its ID.
+     *
+     * @param hotel The hotel to search.
+     * @param id The reservation ID.
+     * @return The reservation, or null if the hotel has none with that ID.
+     */
+    public Reservation findReservation(Hotel hotel, long id) {
+        return hotel.findReservation(id);
+    }
+
+    /**
+     * Cancels a reservation and frees its room.
+     *
+     * @param hotel The hotel the reservation was made in.
+     * @param reservation The reservation to cancel.
+     * @return OK, or RESERVATION_NOT_FOUND.
+     */
+    public ServiceStatus cancelReservation(Hotel hotel, Reservation reservation) {
+        BookingJournal journal = beginChange();
+        try {
+            boolean removed = hotel.removeReservation(reservation, cancelled -> {
+                if (journal != null) {
+                    journal.logCancel(hotel.getName(), cancelled);
+                }
+                events.reservationCancelled(hotel.getName(), cancelled);
+            });
+            if (!removed) {
+                return ServiceStatus.RESERVATION_NOT_FOUND;
+            }
+        } finally {
+            endChange();
+        }
+        return ServiceStatus.OK;
+    }
+
+    /**
+     * Locks a reservation to its room, or lets the re-optimizer move it.
+     *
+     * @param hotel The hotel the reservation was made in.
+     * @param reservation The reservation.
+     * @param locked True to keep the reservation in its room.
+     * @return OK, or RESERVATION_NOT_FOUND.
+     */
+    public ServiceStatus setReservationLocked(Hotel hotel, Reservation reservation, boolean locked) {
+        BookingJournal journal = beginChange();
+        try {
+            synchronized (hotel) { // So that the records of two changes land in the order they were made
+                if (hotel.findReservation(reservation.getId()) != reservation) {
+                    return ServiceStatus.RESERVATION_NOT_FOUND;
+                }
+                reservation.setLocked(locked);
+                if (journal != null) {
+                    journal.logLock(hotel.getName(), reservation);
+                }
+                events.reservationLocked(hotel.getName(), reservation);
+            }
+        } finally {
+            endChange();
+        }
+        return ServiceStatus.OK;
+    }
+
+    /**
+     * Moves a hotel's unlocked future reservations between rooms of the same
+     * type so that free nights are left in long, sellable runs, see
+     * {@link RoomOptimizer#plan(Hotel, RoomType)}. Other changes go on while
+     * the moves are planned, but wait while they are applied, as rooms are
+     * briefly freed while reservations swap. The moves of each room type are
+     * applied and recorded in the journal as one change, however many there are.
+     *
+     * @param hotel The hotel to re-optimize.
+     * @return The number of reservations moved, or HOTEL_NOT_FOUND.
+     */
+    public ServiceResult<Integer> reoptimizeRooms(Hotel hotel) {
+        if (hotel == null || !hotels.contains(hotel)) {
+            return ServiceResult.failure(ServiceStatus.HOTEL_NOT_FOUND);
+        }
+        int moved = 0;
+        for (RoomType type : RoomType.values()) {
+            // Planning only reads the hotel, so bookings carry on meanwhile; a plan
+            // overtaken by them fails as a whole when applied and is dropped
+            Map<Reservation, Room> moves = RoomOptimizer.plan(hotel, type);
+            if (moves.isEmpty()) {
+                continue;
+            }
+            checkpointLock.writeLock().lock();
+            try {
+                if (!hotels.contains(hotel) || !hotel.moveReservations(moves)) {
+                    continue;
+                }
+                if (journal != null) {
+                    journal.logReassign(hotel.getName(), moves);
+                }
+                events.reservationsMoved(hotel.getName(), moves);
+                moved += moves.size();
+            } finally {
+                checkpointLock.writeLock().unlock();
+            }
+        }
+        return ServiceResult.ok(moved);
+    }
+
+    /**
+     * Moves a hotel's reservations that have checked out into its history,
+     * see {@link Hotel#archiveStays(int)}, so that lookups, searches and
+     * snapshots only deal with current and future stays. Other changes wait
+     * meanwhile, so that a stay cancelled just as it is archived is recorded
+     * as one or the other, in the same order as it happened.
+     *
+     * @param hotel The hotel.
+     * @return The number of stays archived, or HOTEL_NOT_FOUND.
+     */
+    public ServiceResult<Integer> archivePastStays(Hotel hotel) {
+        if (hotel == null) {
+            return ServiceResult.failure(ServiceStatus.HOTEL_NOT_FOUND);
+        }
+        int today = HotelCalendar.today();
+        checkpointLock.writeLock().lock();
+        try {
+            if (!hotels.contains(hotel)) {
+                return ServiceResult.failure(ServiceStatus.HOTEL_NOT_FOUND);
+            }
+            int archived = hotel.archiveStays(today);
+            if (archived > 0) {
+                if (journal != null) {
+                    journal.logArchive(hotel.getName(), today);
+                }
+                events.staysArchived(hotel.getName(), today);
+            }
+            return ServiceResult.ok(archived);
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Prices a stay in a room, with discounts, without booking it.
+     *
+     * @param hotel The hotel the room belongs to.
+     * @param roomNo The number of the room.
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @param discountCode The discount code, or an empty string for none.
+     * @return The price of the stay in centavos, or HOTEL_NOT_FOUND, ROOM_NOT_FOUND, INVALID_DATES,
+     *         INVALID_DISCOUNT_CODE or DISCOUNT_NOT_APPLICABLE.
+     */
+    public ServiceResult<Long> quote(Hotel hotel, int roomNo, int checkIn, int checkOut, String discountCode) {
+        if (hotel == null) {
+            return ServiceResult.failure(ServiceStatus.HOTEL_NOT_FOUND);
+        }
+        Room room = hotel.findRoom(roomNo);
+        if (room == null) {
+            return ServiceResult.failure(ServiceStatus.ROOM_NOT_FOUND);
+        }
+        if (!HotelCalendar.isValidStay(checkIn, checkOut)) {
+            return ServiceResult.failure(ServiceStatus.INVALID_DATES);
+        }
+        DiscountChain discounts = hotel.getDiscounts().compile(discountCode);
+        if (discounts == null) {
+            return ServiceResult.failure(ServiceStatus.INVALID_DISCOUNT_CODE);
+        }
+        if (!discounts.appliesTo(checkIn, checkOut)) {
+            return ServiceResult.failure(ServiceStatus.DISCOUNT_NOT_APPLICABLE);
+        }
+        return ServiceResult.ok(quotes.quote(hotel, room, checkIn, checkOut, discounts));
+    }
+
+    /**
+     * Retrieves the cache that {@link #quote} prices stays through.
+     *
+     * @return The quote cache.
+     */
+    public QuoteCache getQuoteCache() {
+        return quotes;
+    }
+
+    /**
+     * Holds the free room of a type that fits a stay best while the guest
+     * finishes booking. When no room of the type is free, the hold is placed
+     * without a room if the type's overbooking limit allows, and a room must
+     * come free by the time it is confirmed.
+     *
+     * @param hotel The hotel to book in.
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @param roomType The type of room wanted, or null for any type.
+     * @param ttlMillis How long the hold lasts, in milliseconds.
+     * @return The hold, or HOTEL_NOT_FOUND, INVALID_DATES, INVALID_HOLD_TIME or NO_ROOM_AVAILABLE.
+     */
+    public ServiceResult<Hold> hold(Hotel hotel, int checkIn, int checkOut, RoomType roomType, long ttlMillis) {
+        ServiceStatus status = validateHold(hotel, checkIn, checkOut, ttlMillis);
+        if (!status.isOk()) {
+            return ServiceResult.failure(status);
+        }
+        Hold hold = holds.holdAny(hotel, roomType, checkIn, checkOut, ttlMillis);
+        if (hold == null) {
+            return ServiceResult.failure(ServiceStatus.NO_ROOM_AVAILABLE);
+        }
+        return ServiceResult.ok(hold);
+    }
+
+    /**
+     * Holds a specific room while the guest finishes booking.
+     *
+     * @param hotel The hotel to book in.
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @param roomNo The number of the room wanted.
+     * @param ttlMillis How long the hold lasts, in milliseconds.
+     * @return The hold, or HOTEL_NOT_FOUND, INVALID_DATES, INVALID_HOLD_TIME, ROOM_NOT_FOUND or ROOM_ALREADY_BOOKED.
+     */
+    public ServiceResult<Hold> holdRoom(Hotel hotel, int checkIn, int checkOut, int roomNo, long ttlMillis) {
+        ServiceStatus status = validateHold(hotel, checkIn, checkOut, ttlMillis);
+        if (!status.isOk()) {
+            return ServiceResult.failure(status);
+        }
+        Room room = hotel.findRoom(roomNo);
+        if (room == null) {
+            return ServiceResult.failure(ServiceStatus.ROOM_NOT_FOUND);
+        }
+        Hold hold = holds.holdRoom(hotel, room, checkIn, checkOut, ttlMillis);
+        if (hold == null) {
+            return ServiceResult.failure(ServiceStatus.ROOM_ALREADY_BOOKED);
+        }
+        return ServiceResult.ok(hold);
+    }
+
+    /**
+     * Turns a hold into a reservation. If the guest name or discount code is
+     * invalid, the hold stays in force so that they can be corrected.
+     *
+     * @param holdId The hold's ID.
+     * @param guestName The name of the guest.
+     * @param discountCode The discount code, or an empty string for none.
+     * @return The reservation, or HOLD_NOT_FOUND, HOTEL_NOT_FOUND, INVALID_GUEST_NAME,
+     *         INVALID_DISCOUNT_CODE, DISCOUNT_NOT_APPLICABLE or, for an overbooked hold
+     *         that finds no free room, NO_ROOM_AVAILABLE.
+     */
+    public ServiceResult<Reservation> confirmHold(long holdId, String guestName, String discountCode) {
+        Hold hold = holds.findHold(holdId);
+        if (hold == null) {
+            return ServiceResult.failure(ServiceStatus.HOLD_NOT_FOUND);
+        }
+        Hotel hotel = hold.getHotel();
+        ServiceResult<DiscountChain> booking = validateBooking(hotel, guestName, hold.getCheckIn(),
+                hold.getCheckOut(), discountCode);
+        if (!booking.isOk()) {
+            return ServiceResult.failure(booking.getStatus());
+        }
+        if (holds.confirm(holdId) == null) {
+            return ServiceResult.failure(ServiceStatus.HOLD_NOT_FOUND); // Ran out or was released meanwhile
+        }
+        if (hold.isOverbooked()) {
+            return reserveAny(hotel, guestName, hold.getCheckIn(), hold.getCheckOut(), hold.getType(),
+                    booking.getValue());
+        }
+        Reservation reservation = new Reservation(guestName, hold.getCheckIn(), hold.getCheckOut(), hold.getRoom(),
+                booking.getValue());
+        reservation.setLocked(hold.isRoomChosen()); // As with reserveRoom, a room the guest chose stays theirs
+        BookingJournal journal = beginChange();
+        try {
+            if (hotelsByName.get(nameKey(hotel.getName())) != hotel) {
+                hold.getRoom().cancelBooking(hold.getCheckIn(), hold.getCheckOut());
+                return ServiceResult.failure(ServiceStatus.HOTEL_NOT_FOUND);
+            }
+            if (!hotel.addHeldReservation(reservation, added -> recordReserve(journal, hotel, added))) {
+                return ServiceResult.failure(ServiceStatus.ROOM_ALREADY_BOOKED);
+            }
+        } finally {
+            endChange();
+        }
+        return ServiceResult.ok(reservation);
+    }
+
+    /**
+     * Ends a hold without booking, freeing what it held.
+     *
+     * @param holdId The hold's ID.
+     * @return OK, or HOLD_NOT_FOUND if the hold had already ended.
+     */
+    public ServiceStatus releaseHold(long holdId) {
+        return holds.release(holdId) ? ServiceStatus.OK : ServiceStatus.HOLD_NOT_FOUND;
+    }
+
+    /**
+     * Retrieves the manager of the service's holds, where overbooking limits are set.
+     *
+     * @return The hold manager.
+     */
+    public HoldManager getHolds() {
+        return holds;
+    }
+
+    /**
+     * Checks whether a discount code exists in a hotel and can be used for a stay.
+     *
+     * @param hotel The hotel to book in.
+     * @param discountCode The discount code, several codes joined with '+', or an empty string for none.
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @return OK, INVALID_DISCOUNT_CODE or DISCOUNT_NOT_APPLICABLE.
+     */
+    public ServiceStatus validateDiscountCode(Hotel hotel, String discountCode, int checkIn, int checkOut) {
+        return hotel.getDiscounts().validate(discountCode, checkIn, checkOut);
+    }
+
+    /**
+     * Books the free room of a type that fits a validated stay best, see
+     * {@link Hotel#findFreeRoomsBestFit(int, int, RoomType)}.
+     */
+    private ServiceResult<Reservation> reserveAny(Hotel hotel, String guestName, int checkIn, int checkOut,
+                                                  RoomType roomType, DiscountChain discounts) {
+        for (Room room : hotel.findFreeRoomsBestFit(checkIn, checkOut, roomType)) {
+            Reservation reservation = new Reservation(guestName, checkIn, checkOut, room, discounts);
+            if (addReservation(hotel, reservation)) {
+                return ServiceResult.ok(reservation);
+            }
+            // Another caller took the room after the search; try the next one
+        }
+        return ServiceResult.failure(ServiceStatus.NO_ROOM_AVAILABLE);
+    }
+
+    /**
+     * Books the validated requests of a batch that are all for one room, each
+     * reservation recorded in the journal as it is added, under the same hold
+     * of the room's lock.
+     */
+    private void reserveRoomGroup(Hotel hotel, Room room, List<BookingRequest> requests, List<Integer> group,
+                                  DiscountChain[] discounts, List<ServiceResult<Reservation>> results) {
+        if (room == null) {
+            for (int i : group) {
+                results.set(i, ServiceResult.failure(ServiceStatus.ROOM_NOT_FOUND));
+            }
+            return;
+        }
+        List<Integer> matching = new ArrayList<>(group.size());
+        List<Reservation> reservations = new ArrayList<>(group.size());
+        for (int i : group) {
+            BookingRequest request = requests.get(i);
+            if (request.getRoomType() != null && request.getRoomType() != room.getType()) {
+                results.set(i, ServiceResult.failure(ServiceStatus.INVALID_REQUEST));
+                continue;
+            }
+            Reservation reservation = new Reservation(request.getGuestName(), request.getCheckIn(),
+                    request.getCheckOut(), room, discounts[i]);
+            reservation.setLocked(true);
+            matching.add(i);
+            reservations.add(reservation);
+        }
+        BookingJournal journal = beginChange();
+        try {
+            boolean[] added = hotel.addReservations(room, reservations,
+                    reservation -> recordReserve(journal, hotel, reservation));
+            for (int j = 0; j < added.length; j++) {
+                if (added[j]) {
+                    results.set(matching.get(j), ServiceResult.ok(reservations.get(j)));
+                } else {
+                    results.set(matching.get(j), ServiceResult.failure(ServiceStatus.ROOM_ALREADY_BOOKED));
+                }
+            }
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Books a reservation's room and records the reservation in the journal.
+     */
+    private boolean addReservation(Hotel hotel, Reservation reservation) {
+        BookingJournal journal = beginChange();
+        try {
+            return hotel.addReservation(reservation, added -> recordReserve(journal, hotel, added));
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Records a new reservation in the journal and publishes it, while the
+     * hotel is adding it and before anyone else can find it.
+     */
+    private void recordReserve(BookingJournal journal, Hotel hotel, Reservation reservation) {
+        if (journal != null) {
+            journal.logReserve(hotel.getName(), reservation);
+        }
+        events.reservationCreated(hotel.getName(), reservation);
+    }
+
+    /**
+     * Checks that a name or code fits in a journal record.
+     */
+    private static boolean fitsJournal(String value) {
+        return value.length() <= BookingJournal.MAX_STRING_BYTES / 3 // No char takes more than three UTF-8 bytes
+                || value.getBytes(StandardCharsets.UTF_8).length <= BookingJournal.MAX_STRING_BYTES;
+    }
+
+    /**
+     * Marks the start of a change, holding off snapshots until {@link #endChange()}.
+     *
+     * @return The journal to record the change in, or null if changes are not recorded.
+     */
+    private BookingJournal beginChange() {
+        checkpointLock.readLock().lock();
+        return journal;
+    }
+
+    private void endChange() {
+        checkpointLock.readLock().unlock();
+    }
+
+    /**
+     * Validates a hold request apart from the room.
+     */
+    private static ServiceStatus validateHold(Hotel hotel, int checkIn, int checkOut, long ttlMillis) {
+        if (hotel == null) {
+            return ServiceStatus.HOTEL_NOT_FOUND;
+        }
+        if (!HotelCalendar.isValidStay(checkIn, checkOut)) {
+            return ServiceStatus.INVALID_DATES;
+        }
+        if (ttlMillis <= 0 || ttlMillis > HoldManager.MAX_TTL_MILLIS) {
+            return ServiceStatus.INVALID_HOLD_TIME;
+        }
+        return ServiceStatus.OK;
+    }
+
+    /**
+     * Validates the parts of a booking request that do not depend on the room
+     * and resolves the discount code, so that its rules are checked only once.
+     */
+    private ServiceResult<DiscountChain> validateBooking(Hotel hotel, String guestName, int checkIn, int checkOut,
+                                                         String discountCode) {
+        if (hotel == null) {
+            return ServiceResult.failure(ServiceStatus.HOTEL_NOT_FOUND);
+        }
+        if (guestName == null || guestName.trim().isEmpty() || !fitsJournal(guestName)) {
+            return ServiceResult.failure(ServiceStatus.INVALID_GUEST_NAME);
+        }
+        if (!HotelCalendar.isValidStay(checkIn, checkOut)) {
+            return ServiceResult.failure(ServiceStatus.INVALID_DATES);
+        }
+        if (discountCode != null && !fitsJournal(discountCode)) {
+            return ServiceResult.failure(ServiceStatus.INVALID_DISCOUNT_CODE);
+        }
+        DiscountChain discounts = hotel.getDiscounts().compile(discountCode);
+        if (discounts == null) {
+            return ServiceResult.failure(ServiceStatus.INVALID_DISCOUNT_CODE);
+        }
+        if (!discounts.appliesTo(checkIn, checkOut)) {
+            return ServiceResult.failure(ServiceStatus.DISCOUNT_NOT_APPLICABLE);
+        }
+        return ServiceResult.ok(discounts);
+    }
+}
@@ -3,13 +3,13 @@
  */
 public class DeluxeRoom extends Room {
 
-    public DeluxeRoom(int roomNo, float basePrice) {
-        super(roomNo, basePrice);
+    public DeluxeRoom(int roomNo, long basePrice) {
+        super(roomNo, basePrice, RoomType.DELUXE);
     }
 
     @Override
-    public float getPrice() {
-        return getBasePrice() * 1.20f; // Deluxe room rate is 20% more than base price
+    public long getPrice() {
+        return Money.times(getBasePrice(), 12_000); // Deluxe room rate is 20% more than base price
     }
     
 }
@@ -0,0 +1,66 @@
+/**
+ * The discount rules behind one code a guest entered, resolved ahead of time
+ * by a {@link DiscountEngine}. A code names one rule, or several stackable
+ * rules joined with '+'; the chain applies them in the order they were
+ * registered, so the price does not depend on the order they were entered in.
+ */
+public final class DiscountChain {
+
+    /** The chain for bookings without a discount code. */
+    public static final DiscountChain NONE = new DiscountChain("", new DiscountRule[0]);
+
+    private final String code;
+    private final DiscountRule[] rules;
+
+    /**
+     * Constructs a chain.
+     *
+     * @param code The code as the guest entered it.
+     * @param rules The rules, in the order to apply them.
+     */
+    DiscountChain(String code, DiscountRule[] rules) {
+        this.code = code;
+        this.rules = rules;
+    }
+
+    /**
+     * Retrieves the code the chain was resolved from.
+     *
+     * @return The code, or an empty string for none.
+     */
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * Checks whether every rule of the chain applies to a stay.
+     *
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @return True if the stay meets the conditions of every rule.
+     */
+    public boolean appliesTo(int checkIn, int checkOut) {
+        for (DiscountRule rule : rules) {
+            if (!rule.appliesTo(checkIn, checkOut)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Takes the discounts off the price of a stay the chain applies to.
+     *
+     * @param price The price before discounts, in centavos.
+     * @param room The room being booked.
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @return The discounted price, in centavos.
+     */
+    public long apply(long price, Room room, int checkIn, int checkOut) {
+        for (DiscountRule rule : rules) {
+            price = rule.apply(price, room, checkIn, checkOut);
+        }
+        return price;
+    }
+}
@@ -0,0 +1,249 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The discount rules a hotel offers, and the place where the codes guests
+ * enter are checked and priced.
+ *
+ * A code is resolved once into a {@link DiscountChain} through a hash lookup
+ * of each rule it names, and the chain is cached by code, so a booking costs
+ * a map lookup, one pass over the chain's conditions and one over its
+ * discounts. Several codes can be combined with '+' (for example
+ * {@code PAYDAY+I_WORK_HERE}) unless one of them is exclusive.
+ *
+ * Rules can be registered in code or loaded from a rules file, one rule per line:
+ * <pre>
+ * # code       discount          conditions
+ * I_WORK_HERE  percent 10
+ * STAY4_GET1   free-nights 1     min-nights=5
+ * PAYDAY       percent 7         days=15,30
+ *
+ * [Hotel Name]
+ * SUMMER       percent 12.5      from=2026-06-01 until=2026-08-31 exclusive
+ * </pre>
+ * Rules before the first {@code [section]} are offered by every hotel; rules
+ * in a section only by the hotel with that name, and they replace rules with
+ * the same code.
+ *
+ * All methods are safe to call from many threads.
+ */
+public class DiscountEngine {
+
+    private static final int MAX_CACHED_CHAINS = 1024;
+
+    private volatile LinkedHashMap<String, DiscountRule> rules; // Replaced, never changed, once published
+    private volatile ConcurrentHashMap<String, DiscountChain> chains;
+
+    /**
+     * Constructs an engine with no rules.
+     */
+    public DiscountEngine() {
+        this.rules = new LinkedHashMap<>();
+        this.chains = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Constructs an engine with the discounts every hotel offered before rules could be configured.
+     *
+     * @return A new engine with the I_WORK_HERE, STAY4_GET1 and PAYDAY codes.
+     */
+    public static DiscountEngine standard() {
+        DiscountEngine engine = new DiscountEngine();
+        engine.register(new PercentageDiscount(BookingService.DISCOUNT_I_WORK_HERE, 1_000));
+        engine.register(new FreeNightDiscount(BookingService.DISCOUNT_STAY4_GET1, 1).minNights(5));
+        engine.register(new PercentageDiscount(BookingService.DISCOUNT_PAYDAY, 700).daysOfMonth(15, 30));
+        return engine;
+    }
+
+    /**
+     * Loads the rules a hotel offers from a rules file.
+     *
+     * @param file The rules file.
+     * @param hotelName The name of the hotel, matched to section names ignoring case.
+     * @return A new engine with the shared rules and those of the hotel's section.
+     * @throws IOException If the file cannot be read or a line is not a valid rule.
+     */
+    public static DiscountEngine load(Path file, String hotelName) throws IOException {
+        return parse(Files.readAllLines(file, StandardCharsets.UTF_8), hotelName);
+    }
+
+    /**
+     * Reads the rules a hotel offers from the lines of a rules file.
+     *
+     * @param lines The lines of the file.
+     * @param hotelName The name of the hotel, matched to section names ignoring case.
+     * @return A new engine with the shared rules and those of the hotel's section.
+     * @throws IOException If a line is not a valid rule.
+     */
+    public static DiscountEngine parse(List<String> lines, String hotelName) throws IOException {
+        DiscountEngine engine = new DiscountEngine();
+        boolean inSection = true; // Rules before the first section are shared
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            int comment = line.indexOf('#');
+            line = (comment >= 0 ? line.substring(0, comment) : line).trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.startsWith("[") && line.endsWith("]")) {
+                inSection = line.substring(1, line.length() - 1).trim().equalsIgnoreCase(hotelName);
+            } else if (inSection) {
+                try {
+                    engine.register(parseRule(line.split("\\s+")));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid discount rule on line " + (i + 1) + ": " + e.getMessage());
+                }
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * Adds a rule, replacing any rule with the same code.
+     *
+     * @param rule The rule, fully configured.
+     * @throws IllegalArgumentException If the code is empty or contains '+'.
+     */
+    public synchronized void register(DiscountRule rule) {
+        String code = rule.getCode();
+        if (code.isEmpty() || code.indexOf('+') >= 0 || !code.equals(code.trim())) {
+            throw new IllegalArgumentException("Invalid discount code: " + code);
+        }
+        LinkedHashMap<String, DiscountRule> updated = new LinkedHashMap<>(rules);
+        updated.put(code, rule);
+        rules = updated;
+        chains = new ConcurrentHashMap<>(); // Chains may name the replaced rule
+    }
+
+    /**
+     * Retrieves the rules, in the order they were registered.
+     *
+     * @return A new list of the rules.
+     */
+    public List<DiscountRule> getRules() {
+        return new ArrayList<>(rules.values());
+    }
+
+    /**
+     * Resolves a discount code into the rules it names.
+     *
+     * @param code The code, several codes joined with '+', or an empty string for none.
+     * @return The chain, or null if a code is unknown, repeated, or exclusive and combined with others.
+     */
+    public DiscountChain compile(String code) {
+        if (code == null || code.trim().isEmpty()) {
+            return DiscountChain.NONE;
+        }
+        ConcurrentHashMap<String, DiscountChain> cache = chains;
+        DiscountChain chain = cache.get(code);
+        if (chain == null) {
+            chain = resolve(code.trim());
+            if (chain != null && cache.size() < MAX_CACHED_CHAINS) {
+                cache.putIfAbsent(code, chain);
+            }
+        }
+        return chain;
+    }
+
+    /**
+     * Checks whether a discount code exists and can be used for a stay.
+     *
+     * @param code The code, several codes joined with '+', or an empty string for none.
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @return OK, INVALID_DISCOUNT_CODE or DISCOUNT_NOT_APPLICABLE.
+     */
+    public ServiceStatus validate(String code, int checkIn, int checkOut) {
+        DiscountChain chain = compile(code);
+        if (chain == null) {
+            return ServiceStatus.INVALID_DISCOUNT_CODE;
+        }
+        return chain.appliesTo(checkIn, checkOut) ? ServiceStatus.OK : ServiceStatus.DISCOUNT_NOT_APPLICABLE;
+    }
+
+    private DiscountChain resolve(String code) {
+        LinkedHashMap<String, DiscountRule> current = rules;
+        String[] codes = code.split("\\+", -1);
+        List<String> named = new ArrayList<>(codes.length);
+        for (String part : codes) {
+            String name = part.trim();
+            DiscountRule rule = current.get(name);
+            if (rule == null || named.contains(name) || (codes.length > 1 && rule.isExclusive())) {
+                return null;
+            }
+            named.add(name);
+        }
+        DiscountRule[] chain = new DiscountRule[codes.length];
+        int size = 0;
+        for (DiscountRule rule : current.values()) { // Registration order
+            if (named.contains(rule.getCode())) {
+                chain[size++] = rule;
+            }
+        }
+        return new DiscountChain(code, Arrays.copyOf(chain, size));
+    }
+
+    /**
+     * Builds a rule from the fields of a line of a rules file.
+     */
+    private static DiscountRule parseRule(String[] fields) {
+        if (fields.length < 3) {
+            throw new IllegalArgumentException("expected a code, a discount and an amount");
+        }
+        DiscountRule rule;
+        try {
+            switch (fields[1]) {
+                case "percent":
+                    rule = new PercentageDiscount(fields[0], (int) Math.round(Double.parseDouble(fields[2]) * 100));
+                    break;
+                case "free-nights":
+                    rule = new FreeNightDiscount(fields[0], Integer.parseInt(fields[2]));
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown discount " + fields[1]);
+            }
+            for (int i = 3; i < fields.length; i++) {
+                String option = fields[i];
+                int equals = option.indexOf('=');
+                String value = equals >= 0 ? option.substring(equals + 1) : "";
+                switch (equals >= 0 ? option.substring(0, equals) : option) {
+                    case "min-nights":
+                        rule.minNights(Integer.parseInt(value));
+                        break;
+                    case "days":
+                        rule.daysOfMonth(Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray());
+                        break;
+                    case "from":
+                        rule.from(parseDate(value));
+                        break;
+                    case "until":
+                        rule.until(parseDate(value));
+                        break;
+                    case "exclusive":
+                        rule.exclusive();
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown condition " + option);
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("not a number: " + e.getMessage());
+        }
+        return rule;
+    }
+
+    private static int parseDate(String text) {
+        int day = HotelCalendar.parseDate(text);
+        if (day < 0) {
+            throw new IllegalArgumentException("not a date: " + text);
+        }
+        return day;
+    }
+}
@@ -0,0 +1,208 @@
+import java.time.LocalDate;
+
+/**
+ * A discount that guests can ask for with a code.
+ *
+ * Every rule has conditions that decide whether it applies to a stay: a
+ * minimum number of nights, days of the month that a night must fall on, and
+ * a window that the check-in date must lie in. Subclasses decide how much the
+ * rule takes off the price. A rule is exclusive when its code may not be
+ * combined with other codes.
+ *
+ * Conditions are set while the rule is configured, before it is registered
+ * with a {@link DiscountEngine}; after that the rule is only read, so it can
+ * be used from many threads.
+ */
+public abstract class DiscountRule {
+
+    private final String code;
+    private int minNights;
+    private int daysOfMonth; // Bit d is set when a night on day d of the month qualifies; 0 for any day
+    private int windowStart;
+    private int windowEnd;
+    private boolean exclusive;
+
+    /**
+     * Constructs a rule that applies to every stay.
+     *
+     * @param code The discount code guests enter.
+     */
+    protected DiscountRule(String code) {
+        this.code = code;
+        this.windowStart = Integer.MIN_VALUE;
+        this.windowEnd = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Retrieves the discount code guests enter.
+     *
+     * @return The code.
+     */
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * Checks whether the code may not be combined with other codes.
+     *
+     * @return True if the rule is exclusive.
+     */
+    public boolean isExclusive() {
+        return exclusive;
+    }
+
+    /**
+     * Only applies the rule to stays of at least a number of nights.
+     *
+     * @param nights The minimum number of nights.
+     * @return This rule.
+     */
+    public DiscountRule minNights(int nights) {
+        this.minNights = nights;
+        return this;
+    }
+
+    /**
+     * Only applies the rule to stays with a night on one of the given days of the month.
+     *
+     * @param days The days of the month (1-31).
+     * @return This rule.
+     * @throws IllegalArgumentException If a day is not between 1 and 31.
+     */
+    public DiscountRule daysOfMonth(int... days) {
+        for (int day : days) {
+            if (day < 1 || day > 31) {
+                throw new IllegalArgumentException("Invalid day of the month: " + day);
+            }
+            daysOfMonth |= 1 << day;
+        }
+        return this;
+    }
+
+    /**
+     * Only applies the rule to stays that check in on or after a date.
+     *
+     * @param day The first check-in date as an epoch day.
+     * @return This rule.
+     */
+    public DiscountRule from(int day) {
+        this.windowStart = day;
+        return this;
+    }
+
+    /**
+     * Only applies the rule to stays that check in on or before a date.
+     *
+     * @param day The last check-in date as an epoch day.
+     * @return This rule.
+     */
+    public DiscountRule until(int day) {
+        this.windowEnd = day;
+        return this;
+    }
+
+    /**
+     * Keeps the code from being combined with other codes.
+     *
+     * @return This rule.
+     */
+    public DiscountRule exclusive() {
+        this.exclusive = true;
+        return this;
+    }
+
+    /**
+     * Checks whether the rule applies to a stay.
+     *
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @return True if the stay meets every condition of the rule.
+     */
+    public final boolean appliesTo(int checkIn, int checkOut) {
+        if (checkOut - checkIn < minNights || checkIn < windowStart || checkIn > windowEnd) {
+            return false;
+        }
+        if (daysOfMonth == 0) {
+            return true;
+        }
+        LocalDate date = LocalDate.ofEpochDay(checkIn);
+        int end = Math.min(checkOut, checkIn + 31); // Every day of the month comes up within 31 nights
+        for (int day = checkIn; day < end; day++) {
+            if ((daysOfMonth & (1 << date.getDayOfMonth())) != 0) {
+                return true;
+            }
+            date = date.plusDays(1);
+        }
+        return false;
+    }
+
+    /**
+     * Takes the discount off a price. Called only for stays the rule applies to.
+     *
+     * @param price The price so far, in centavos.
+     * @param room The room being booked.
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @return The discounted price, in centavos.
+     */
+    public abstract long apply(long price, Room room, int checkIn, int checkOut);
+
+    /**
+     * Describes how much the rule takes off, for example "10% discount".
+     *
+     * @return The description.
+     */
+    protected abstract String describeDiscount();
+
+    /**
+     * Describes the rule for guests, including its conditions.
+     *
+     * @return The description.
+     */
+    public String describe() {
+        StringBuilder text = new StringBuilder(describeDiscount());
+        if (minNights > 1) {
+            text.append(" for stays of ").append(minNights).append(" nights or more");
+        }
+        if (daysOfMonth != 0) {
+            text.append(" if the stay includes the");
+            String separator = " ";
+            for (int day = 1; day <= 31; day++) {
+                if ((daysOfMonth & (1 << day)) != 0) {
+                    text.append(separator).append(ordinal(day));
+                    separator = " or ";
+                }
+            }
+            text.append(" of a month");
+        }
+        if (windowStart != Integer.MIN_VALUE || windowEnd != Integer.MAX_VALUE) {
+            text.append(" when checking in");
+            if (windowStart != Integer.MIN_VALUE) {
+                text.append(" from ").append(HotelCalendar.format(windowStart));
+            }
+            if (windowEnd != Integer.MAX_VALUE) {
+                text.append(" until ").append(HotelCalendar.format(windowEnd));
+            }
+        }
+        if (exclusive) {
+            text.append(" (cannot be combined)");
+        }
+        return text.toString();
+    }
+
+    private static String ordinal(int day) {
+        if (day / 10 == 1) {
+            return day + "th";
+        }
+        switch (day % 10) {
+            case 1:
+                return day + "st";
+            case 2:
+                return day + "nd";
+            case 3:
+                return day + "rd";
+            default:
+                return day + "th";
+        }
+    }
+}
@@ -1,4 +1,8 @@
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Scanner;
 
 
@@ -21,9 +25,44 @@ public class Driver {
      * Displays a menu and processes user input to perform various actions such as creating,
      * viewing, managing hotels, and simulating room bookings.
      * The application continues running until the user chooses to exit.
-     * @param args Command-line arguments (not used in this application).
+     * Started with {@code --server [port] [data directory]}, it runs the HTTP booking server instead of the menu.
+     * Started with {@code --data <directory>}, hotels and reservations are kept in that directory between runs,
+     * and discount rules are read from {@code discounts.rules} there if that file exists.
+     * Started with {@code --import <data directory> <file>}, it books the reservations in a CSV or
+     * JSON Lines file (see {@link ReservationImporter}) into that directory and prints how many succeeded.
+     * Started with {@code --load [options]}, it runs the synthetic load generator instead (see {@link LoadGenerator}).
+     * @param args Command-line arguments.
+     * @throws IOException If the server port cannot be bound or the data directory, discount rules or a load log cannot be read.
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("--server")) {
+            BookingServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--load")) {
+            LoadGenerator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 2 && args[0].equals("--import")) {
+            BookingService service = new BookingService();
+            BookingPersistence persistence = BookingPersistence.open(Paths.get(args[1]), service, false);
+            try {
+                Map<ServiceStatus, Long> totals = new ReservationImporter(service).importFile(Paths.get(args[2]), null);
+                for (Map.Entry<ServiceStatus, Long> total : totals.entrySet()) {
+                    System.out.println(total.getKey() + ": " + total.getValue());
+                }
+            } finally {
+                persistence.close(); // Writes out the last imported reservations
+            }
+            return;
+        }
+        BookingPersistence persistence = null;
+        if (args.length > 1 && args[0].equals("--data")) {
+            BookingService service = new BookingService();
+            persistence = BookingPersistence.open(Paths.get(args[1]), service, true);
+            system = new HotelManager(service);
+        }
+
         boolean running = true;
         while (running) {
             System.out.println(" ");
@@ -31,7 +70,7 @@ public class Driver {
             System.out.println(" ");
             System.out.println("[1] Create Hotel    [2] View Hotel");
             System.out.println("[3] Manage Hotel    [4] Simulate Booking");
-            System.out.println("[5] Exit");
+            System.out.println("[5] Search All Hotels    [6] Exit");
             System.out.println(" ");
             System.out.print("Select an option: ");
             int choice = scanner.nextInt();
@@ -53,6 +92,9 @@ public class Driver {
                     system.simulateBooking();
                     break;
                 case 5:
+                    system.searchAllHotels();
+                    break;
+                case 6:
                     running = false;
                     break;
                 default:
@@ -60,5 +102,8 @@ public class Driver {
                     System.out.println(" ");
             }
         }
+        if (persistence != null) {
+            persistence.close();
+        }
     }
 }
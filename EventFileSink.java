@@ -0,0 +1,287 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * {@link BookingEventHandler} that appends every event to a file, for
+ * systems downstream that pick changes up from disk.
+ *
+ * The file starts with a four-byte magic number, followed by one record per event:
+ * <pre>
+ * int length | byte type | long sequence | long timestamp | string hotel | fields...
+ * </pre>
+ * where the length counts the bytes after it and the fields depend on the
+ * type, in the order listed for {@link BookingEvent.Type}. Strings are
+ * written as a short length followed by UTF-8 bytes, room types as their
+ * ordinal, or -1 for none.
+ *
+ * Records are encoded into a buffer, which is written out at the end of each
+ * batch handed over by the bus or when it fills up, so a burst of changes
+ * costs one write. The file is not forced to disk; the {@link BookingJournal}
+ * is what keeps changes safe. Sequence numbers start again from 0 whenever
+ * the process restarts.
+ */
+public class EventFileSink implements BookingEventHandler, AutoCloseable {
+
+    private static final int MAGIC = 0x48455631; // "HEV1"
+    private static final int HEADER_SIZE = 4;
+    private static final int BUFFER_SIZE = 256 * 1024; // Fits any record, as strings are at most 64 KiB
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long records;
+
+    /**
+     * Opens an event file for appending, creating it if needed. A record cut
+     * short by a crash at the end of an existing file is dropped.
+     *
+     * @param file The event file.
+     * @throws IOException If the file cannot be opened, or exists but is not an event file.
+     */
+    public EventFileSink(Path file) throws IOException {
+        long validEnd = read(file, event -> { });
+        if (validEnd == 0 && Files.exists(file) && Files.size(file) > 0) {
+            throw new IOException("Not an event file: " + file);
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        if (validEnd == 0) {
+            channel.truncate(0);
+            buffer.putInt(MAGIC);
+            writeBuffer();
+        } else {
+            channel.truncate(validEnd);
+            channel.position(validEnd);
+        }
+    }
+
+    /**
+     * Reads every complete record of an event file.
+     *
+     * @param file The event file.
+     * @param handler Receives each event; the same event object is reused for every record.
+     * @return The position just after the last complete record, or 0 if the
+     *         file is missing or is not an event file.
+     * @throws IOException If the file cannot be read.
+     */
+    public static long read(Path file, Consumer<BookingEvent> handler) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC) {
+            return 0;
+        }
+        BookingEvent event = new BookingEvent();
+        while (in.remaining() >= 4) {
+            int length = in.getInt(in.position());
+            if (length <= 0 || length > MAX_RECORD_SIZE || length > in.remaining() - 4) {
+                break;
+            }
+            int start = in.position();
+            int end = start + 4 + length;
+            try {
+                decode(in.position(start + 4), event);
+            } catch (RuntimeException e) {
+                in.position(start);
+                break; // Cut short or corrupt
+            }
+            if (in.position() != end) {
+                in.position(start);
+                break; // Does not match its length
+            }
+            handler.accept(event);
+        }
+        return in.position();
+    }
+
+    @Override
+    public void onEvent(BookingEvent event, boolean endOfBatch) throws IOException {
+        byte[] hotel = utf8(event.getHotel());
+        byte[] text = utf8(event.getText());
+        int length = 1 + 8 + 8 + 2 + hotel.length + fieldsLength(event.getType(), text);
+        if (buffer.remaining() < 4 + length) {
+            writeBuffer();
+        }
+        buffer.putInt(length).put((byte) event.getType().ordinal())
+                .putLong(event.getSequence()).putLong(event.getTimestamp());
+        putString(hotel);
+        switch (event.getType()) {
+            case HOTEL_CREATED:
+            case PRICE_CHANGED:
+                buffer.putLong(event.getAmount());
+                break;
+            case HOTEL_RENAMED:
+                putString(text);
+                break;
+            case HOTEL_REMOVED:
+                break;
+            case ROOM_ADDED:
+                buffer.putInt(event.getRoomNo()).put(roomType(event)).putLong(event.getAmount());
+                break;
+            case ROOM_REMOVED:
+                buffer.putInt(event.getRoomNo());
+                break;
+            case MODIFIER_CHANGED:
+                buffer.putInt(event.getDay()).putInt(event.getModifier());
+                break;
+            case STAYS_ARCHIVED:
+                buffer.putInt(event.getDay());
+                break;
+            case RESERVATION_CREATED:
+            case RESERVATION_CANCELLED:
+            case RESERVATION_MOVED:
+            case RESERVATION_LOCKED:
+            case RESERVATION_UNLOCKED:
+                buffer.putLong(event.getReservationId()).putInt(event.getRoomNo()).put(roomType(event))
+                        .putInt(event.getCheckIn()).putInt(event.getCheckOut());
+                if (carriesGuest(event.getType())) {
+                    buffer.putLong(event.getAmount());
+                    putString(text);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown event type " + event.getType());
+        }
+        records++;
+        if (endOfBatch) {
+            writeBuffer();
+        }
+    }
+
+    /**
+     * Retrieves the number of events written since the file was opened.
+     *
+     * @return The count.
+     */
+    public long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Writes out any buffered records and closes the file. Close the bus
+     * first, so that no event arrives afterwards.
+     *
+     * @throws IOException If the last records could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            writeBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static int fieldsLength(BookingEvent.Type type, byte[] text) {
+        switch (type) {
+            case HOTEL_CREATED:
+            case PRICE_CHANGED:
+                return 8;
+            case HOTEL_RENAMED:
+                return 2 + text.length;
+            case ROOM_ADDED:
+                return 4 + 1 + 8;
+            case ROOM_REMOVED:
+                return 4;
+            case MODIFIER_CHANGED:
+                return 4 + 4;
+            case STAYS_ARCHIVED:
+                return 4;
+            case RESERVATION_CREATED:
+            case RESERVATION_CANCELLED:
+                return 8 + 4 + 1 + 4 + 4 + 8 + 2 + text.length;
+            case RESERVATION_MOVED:
+            case RESERVATION_LOCKED:
+            case RESERVATION_UNLOCKED:
+                return 8 + 4 + 1 + 4 + 4;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Fills an event in from the record at the buffer's position.
+     */
+    private static void decode(ByteBuffer in, BookingEvent event) {
+        BookingEvent.Type type = BookingEvent.typeOf(in.get());
+        event.reset(type, in.getLong(), in.getLong(), BookingJournal.getString(in));
+        switch (type) {
+            case HOTEL_CREATED:
+            case PRICE_CHANGED:
+                event.setAmount(in.getLong());
+                break;
+            case HOTEL_RENAMED:
+                event.setText(BookingJournal.getString(in));
+                break;
+            case ROOM_ADDED:
+                event.setRoom(in.getInt(), BookingEvent.roomTypeOf(in.get()));
+                event.setAmount(in.getLong());
+                break;
+            case ROOM_REMOVED:
+                event.setRoom(in.getInt(), null);
+                break;
+            case MODIFIER_CHANGED:
+                event.setModifier(in.getInt(), in.getInt());
+                break;
+            case STAYS_ARCHIVED:
+                event.setDay(in.getInt());
+                break;
+            case RESERVATION_CREATED:
+            case RESERVATION_CANCELLED:
+            case RESERVATION_MOVED:
+            case RESERVATION_LOCKED:
+            case RESERVATION_UNLOCKED:
+                long id = in.getLong();
+                event.setRoom(in.getInt(), BookingEvent.roomTypeOf(in.get()));
+                event.setStay(id, in.getInt(), in.getInt());
+                if (carriesGuest(type)) {
+                    event.setAmount(in.getLong());
+                    event.setText(BookingJournal.getString(in));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Tells whether events of a type carry the stay's price and guest name.
+     */
+    private static boolean carriesGuest(BookingEvent.Type type) {
+        return type == BookingEvent.Type.RESERVATION_CREATED || type == BookingEvent.Type.RESERVATION_CANCELLED;
+    }
+
+    private void putString(byte[] utf8) {
+        buffer.putShort((short) utf8.length).put(utf8);
+    }
+
+    private static byte roomType(BookingEvent event) {
+        return (byte) (event.getRoomType() == null ? -1 : event.getRoomType().ordinal());
+    }
+
+    private static byte[] utf8(String value) {
+        if (value == null) {
+            return new byte[0];
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("String too long for the event file");
+        }
+        return bytes;
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
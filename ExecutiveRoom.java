@@ -3,12 +3,12 @@
  */
 public class ExecutiveRoom extends Room {
 
-    public ExecutiveRoom(int roomNo, float basePrice) {
-        super(roomNo, basePrice);
+    public ExecutiveRoom(int roomNo, long basePrice) {
+        super(roomNo, basePrice, RoomType.EXECUTIVE);
     }
 
     @Override
-    public float getPrice() {
-        return getBasePrice() * 1.35f; // Executive room rate is 35% more than base price
+    public long getPrice() {
+        return Money.times(getBasePrice(), 13_500); // Executive room rate is 35% more than base price
     }
 }
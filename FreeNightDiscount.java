@@ -0,0 +1,34 @@
+/**
+ * A discount that makes the first nights of a stay free. A free night takes
+ * the room's price per night off, before any date price modifier.
+ */
+public class FreeNightDiscount extends DiscountRule {
+
+    private final int nights;
+
+    /**
+     * Constructs a free-night discount.
+     *
+     * @param code The discount code guests enter.
+     * @param nights The number of free nights.
+     * @throws IllegalArgumentException If the number of nights is not positive.
+     */
+    public FreeNightDiscount(String code, int nights) {
+        super(code);
+        if (nights <= 0) {
+            throw new IllegalArgumentException("Invalid number of free nights: " + nights);
+        }
+        this.nights = nights;
+    }
+
+    @Override
+    public long apply(long price, Room room, int checkIn, int checkOut) {
+        long free = room.getPrice() * Math.min(nights, checkOut - checkIn);
+        return Math.max(price - free, 0);
+    }
+
+    @Override
+    protected String describeDiscount() {
+        return nights == 1 ? "Free first night" : "First " + nights + " nights free";
+    }
+}
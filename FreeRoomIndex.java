@@ -0,0 +1,356 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Per-day index of booked room slots for a hotel.
+ * For every day in the booking horizon the index keeps a bitset with one bit
+ * per room slot (see {@link RoomStore}), set when that room is booked on that day.
+ * Rooms update it as they are booked and cancelled, so finding the rooms that
+ * are free for a whole stay is an OR over the nights of the stay followed by
+ * an AND-NOT against the mask of rooms of the requested type, a word at a time.
+ * Days are kept in a ring of day slots; a day's bitset is only allocated once
+ * a room is booked on it and is reused when the horizon rolls past it.
+ *
+ * Next to each day's bitset the index counts the rooms of each type booked
+ * that day, changed only when a bit actually flips. Together with the number
+ * of rooms of each type, the smallest number of free rooms over the nights
+ * of a stay is one array read per night, and a stay whose type is sold out
+ * on any night is turned away without looking at the bitsets.
+ *
+ * Bookings from different threads set and clear their bits with atomic
+ * read-modify-write operations and only share the read side of a lock.
+ * The write side is taken when rooms are added or removed, which may grow
+ * every bitset. Searches take no lock and see each word as of the moment it is read.
+ */
+public class FreeRoomIndex {
+
+    private static final int DAY_SLOTS = 512; // More than the booking horizon
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private volatile long[] allRooms; // Bit set for every room slot in use
+    private volatile long[][] typeRooms; // Same, split by room type
+    private volatile byte[] slotTypes; // Room type ordinal of each slot in use
+    private final AtomicIntegerArray roomCounts; // Rooms by room type ordinal, then all rooms
+    private final AtomicReferenceArray<DayBits> days; // Booked room slots for each day slot, null until first booking
+    private final ReentrantReadWriteLock structure;
+
+    /**
+     * Booked room slots for one day.
+     */
+    private static class DayBits {
+        private final int day;
+        private final long[] words;
+        private final AtomicIntegerArray booked; // Rooms booked by room type ordinal, then all rooms
+
+        private DayBits(int day, long[] words, AtomicIntegerArray booked) {
+            this.day = day;
+            this.words = words;
+            this.booked = booked;
+        }
+    }
+
+    /**
+     * Constructs an empty index.
+     */
+    public FreeRoomIndex() {
+        this.allRooms = new long[1];
+        this.typeRooms = new long[RoomType.values().length][1];
+        this.slotTypes = new byte[64];
+        this.roomCounts = new AtomicIntegerArray(RoomType.values().length + 1);
+        this.days = new AtomicReferenceArray<>(DAY_SLOTS);
+        this.structure = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Registers a room slot so that it shows up in searches.
+     *
+     * @param slot The room's slot.
+     * @param type The room's type.
+     */
+    public void addRoom(int slot, RoomType type) {
+        structure.writeLock().lock();
+        try {
+            int word = slot >>> 6;
+            if (word >= allRooms.length) {
+                int words = Math.max(allRooms.length * 2, word + 1);
+                long[][] grownTypes = new long[typeRooms.length][];
+                for (int t = 0; t < grownTypes.length; t++) {
+                    grownTypes[t] = Arrays.copyOf(typeRooms[t], words);
+                }
+                for (int d = 0; d < DAY_SLOTS; d++) {
+                    DayBits bits = days.get(d);
+                    if (bits != null) {
+                        days.set(d, new DayBits(bits.day, Arrays.copyOf(bits.words, words), bits.booked));
+                    }
+                }
+                typeRooms = grownTypes;
+                slotTypes = Arrays.copyOf(slotTypes, words << 6);
+                allRooms = Arrays.copyOf(allRooms, words);
+            }
+            slotTypes[slot] = (byte) type.ordinal();
+            WORDS.getAndBitwiseOr(typeRooms[type.ordinal()], word, 1L << slot);
+            WORDS.getAndBitwiseOr(allRooms, word, 1L << slot);
+            roomCounts.incrementAndGet(type.ordinal());
+            roomCounts.incrementAndGet(roomCounts.length() - 1);
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Unregisters a room slot and forgets any bookings recorded for it.
+     *
+     * @param slot The room's slot.
+     */
+    public void removeRoom(int slot) {
+        structure.writeLock().lock();
+        try {
+            int word = slot >>> 6;
+            long bit = 1L << slot;
+            if (((long) WORDS.getAndBitwiseAnd(allRooms, word, ~bit) & bit) == 0) {
+                return; // Not registered
+            }
+            for (long[] rooms : typeRooms) {
+                WORDS.getAndBitwiseAnd(rooms, word, ~bit);
+            }
+            int type = slotTypes[slot];
+            roomCounts.decrementAndGet(type);
+            roomCounts.decrementAndGet(roomCounts.length() - 1);
+            for (int d = 0; d < DAY_SLOTS; d++) {
+                DayBits bits = days.get(d);
+                if (bits != null && ((long) WORDS.getAndBitwiseAnd(bits.words, word, ~bit) & bit) != 0) {
+                    bits.booked.decrementAndGet(type);
+                    bits.booked.decrementAndGet(bits.booked.length() - 1);
+                }
+            }
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Records that a room is booked for every night from check-in up to check-out.
+     *
+     * @param slot The room's slot.
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     */
+    public void markBooked(int slot, int checkIn, int checkOut) {
+        int word = slot >>> 6;
+        long bit = 1L << slot;
+        structure.readLock().lock();
+        try {
+            int type = slotTypes[slot];
+            for (int day = checkIn; day < checkOut; day++) {
+                DayBits bits = dayForWrite(day);
+                if (((long) WORDS.getAndBitwiseOr(bits.words, word, bit) & bit) == 0) {
+                    bits.booked.incrementAndGet(type);
+                    bits.booked.incrementAndGet(bits.booked.length() - 1);
+                }
+            }
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records that a room is free for every night from check-in up to check-out.
+     *
+     * @param slot The room's slot.
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     */
+    public void markFree(int slot, int checkIn, int checkOut) {
+        int word = slot >>> 6;
+        long bit = 1L << slot;
+        structure.readLock().lock();
+        try {
+            int type = slotTypes[slot];
+            for (int day = checkIn; day < checkOut; day++) {
+                DayBits bits = days.get(Math.floorMod(day, DAY_SLOTS));
+                if (bits != null && bits.day == day
+                        && ((long) WORDS.getAndBitwiseAnd(bits.words, word, ~bit) & bit) != 0) {
+                    bits.booked.decrementAndGet(type);
+                    bits.booked.decrementAndGet(bits.booked.length() - 1);
+                }
+            }
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the rooms of a type booked on a day.
+     *
+     * @param day The day as an epoch day.
+     * @param type The room type, or null for every type.
+     * @return The number of booked rooms.
+     */
+    public int bookedRooms(int day, RoomType type) {
+        DayBits bits = days.get(Math.floorMod(day, DAY_SLOTS));
+        if (bits == null || bits.day != day) {
+            return 0;
+        }
+        return bits.booked.get(type == null ? bits.booked.length() - 1 : type.ordinal());
+    }
+
+    /**
+     * Counts the rooms of a type in the index.
+     *
+     * @param type The room type, or null for every type.
+     * @return The number of rooms.
+     */
+    public int rooms(RoomType type) {
+        return roomCounts.get(type == null ? roomCounts.length() - 1 : type.ordinal());
+    }
+
+    /**
+     * Finds the fewest rooms of a type free on any night of a stay, from the
+     * per-day counters alone. No room can be free for the whole stay when
+     * this is 0; otherwise it is an upper bound on the rooms that are, since
+     * different rooms may be free on different nights.
+     *
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @param type The room type, or null for every type.
+     * @return The smallest number of free rooms on a night of the stay.
+     */
+    public int minFreeRooms(int checkIn, int checkOut, RoomType type) {
+        int at = type == null ? roomCounts.length() - 1 : type.ordinal();
+        int rooms = roomCounts.get(at);
+        int min = rooms;
+        for (int day = checkIn; day < checkOut && min > 0; day++) {
+            DayBits bits = days.get(Math.floorMod(day, DAY_SLOTS));
+            if (bits != null && bits.day == day) {
+                min = Math.min(min, rooms - bits.booked.get(at));
+            }
+        }
+        return Math.max(min, 0);
+    }
+
+    /**
+     * Computes the room slots that are free for every night of a stay.
+     *
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @param type The room type to look for, or null for any type.
+     * @return A bitset with one bit set for every free room slot.
+     */
+    public long[] freeRooms(int checkIn, int checkOut, RoomType type) {
+        long[] rooms = type == null ? allRooms : typeRooms[type.ordinal()];
+        long[] booked = new long[rooms.length];
+        for (int day = checkIn; day < checkOut; day++) {
+            long[] bookedOnDay = dayForRead(day);
+            if (bookedOnDay != null) {
+                int words = Math.min(booked.length, bookedOnDay.length);
+                for (int w = 0; w < words; w++) {
+                    booked[w] |= bookedOnDay[w];
+                }
+            }
+        }
+        for (int w = 0; w < booked.length; w++) {
+            booked[w] = rooms[w] & ~booked[w];
+        }
+        return booked;
+    }
+
+    /**
+     * Counts the rooms that are free for every night of a stay.
+     *
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @param type The room type to look for, or null for any type.
+     * @return The number of free rooms.
+     */
+    public int countFreeRooms(int checkIn, int checkOut, RoomType type) {
+        int count = 0;
+        for (long word : freeRooms(checkIn, checkOut, type)) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Measures, for every room in a set, how many nights in a row it is free
+     * starting from a day and walking one way, up to a limit. All rooms are
+     * walked together a word at a time, and the walk stops early once every
+     * room has met a booked night.
+     *
+     * @param rooms A bitset of the room slots to measure, as returned by {@link #freeRooms}.
+     * @param from The first day to look at, as an epoch day.
+     * @param step 1 to walk forwards in time, -1 to walk backwards.
+     * @param limit The most nights to count.
+     * @return The number of free nights, indexed by room slot; 0 for slots not in the set.
+     */
+    public int[] freeRuns(long[] rooms, int from, int step, int limit) {
+        int[] runs = new int[rooms.length << 6];
+        long[] open = rooms.clone();
+        int day = from;
+        for (int night = 0; night < limit; night++, day += step) {
+            long[] booked = dayForRead(day);
+            boolean anyOpen = false;
+            for (int w = 0; w < open.length; w++) {
+                long ended = booked != null && w < booked.length ? open[w] & booked[w] : 0;
+                open[w] &= ~ended;
+                while (ended != 0) {
+                    runs[(w << 6) + Long.numberOfTrailingZeros(ended)] = night;
+                    ended &= ended - 1;
+                }
+                anyOpen |= open[w] != 0;
+            }
+            if (!anyOpen) {
+                return runs;
+            }
+        }
+        for (int w = 0; w < open.length; w++) {
+            for (long word = open[w]; word != 0; word &= word - 1) {
+                runs[(w << 6) + Long.numberOfTrailingZeros(word)] = limit;
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Retrieves the room slots booked on a day.
+     *
+     * @param day The day as an epoch day.
+     * @return The index's own bitset for the day, which must not be changed, or null if no room is booked on it.
+     */
+    long[] bookedSlots(int day) {
+        return dayForRead(day);
+    }
+
+    /**
+     * Finds the bitset for a day, or null if no room has been booked on it.
+     */
+    private long[] dayForRead(int day) {
+        DayBits bits = days.get(Math.floorMod(day, DAY_SLOTS));
+        return bits != null && bits.day == day ? bits.words : null;
+    }
+
+    /**
+     * Finds the bitset for a day, allocating it or taking over a day that has
+     * rolled out of the horizon. Must be called while holding the read lock.
+     */
+    private DayBits dayForWrite(int day) {
+        int daySlot = Math.floorMod(day, DAY_SLOTS);
+        while (true) {
+            DayBits bits = days.get(daySlot);
+            if (bits != null && bits.day == day) {
+                return bits;
+            }
+            if (bits != null && bits.day > day) {
+                throw new IllegalArgumentException("Day is outside the index horizon: " + day);
+            }
+            DayBits fresh = new DayBits(day, new long[allRooms.length],
+                    new AtomicIntegerArray(RoomType.values().length + 1));
+            if (days.compareAndSet(daySlot, bits, fresh)) {
+                return fresh;
+            }
+        }
+    }
+}
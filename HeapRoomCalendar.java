@@ -0,0 +1,142 @@
+import java.util.Arrays;
+
+/**
+ * Room calendar kept on the Java heap.
+ * Pages are only allocated once something is written to them, so a room that
+ * is never booked or repriced costs a single small array.
+ */
+public class HeapRoomCalendar extends RoomCalendar {
+
+    private final Page[] pages;
+
+    /**
+     * One page of the calendar.
+     */
+    private static class Page {
+        private int pageNo;
+        private int bookedBits; // Bit i is set when day (pageNo * 32 + i) is booked
+        private int[] modifiers; // Null until a modifier is set on this page
+
+        private Page(int pageNo) {
+            this.pageNo = pageNo;
+        }
+    }
+
+    /**
+     * Constructs an empty calendar where every day is available at the default modifier.
+     */
+    public HeapRoomCalendar() {
+        this.pages = new Page[PAGE_SLOTS];
+    }
+
+    @Override
+    public boolean isAvailable(int day) {
+        Page page = peek(day >> PAGE_SHIFT);
+        return page == null || (page.bookedBits & (1 << (day & (PAGE_DAYS - 1)))) == 0;
+    }
+
+    @Override
+    public boolean isFree(int checkIn, int checkOut) {
+        for (int day = checkIn; day < checkOut; day = nextPageStart(day)) {
+            Page page = peek(day >> PAGE_SHIFT);
+            if (page != null && (page.bookedBits & pageMask(day, checkOut)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void book(int checkIn, int checkOut) {
+        for (int day = checkIn; day < checkOut; day = nextPageStart(day)) {
+            page(day >> PAGE_SHIFT).bookedBits |= pageMask(day, checkOut);
+        }
+    }
+
+    @Override
+    public void cancel(int checkIn, int checkOut) {
+        for (int day = checkIn; day < checkOut; day = nextPageStart(day)) {
+            Page page = peek(day >> PAGE_SHIFT);
+            if (page != null) {
+                page.bookedBits &= ~pageMask(day, checkOut);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasBookings() {
+        for (Page page : pages) {
+            if (page != null && page.bookedBits != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Page page : pages) {
+            if (page != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int getModifier(int day) {
+        Page page = peek(day >> PAGE_SHIFT);
+        if (page == null || page.modifiers == null) {
+            return Money.ONE;
+        }
+        return page.modifiers[day & (PAGE_DAYS - 1)];
+    }
+
+    @Override
+    public void setModifier(int day, int modifier) {
+        if (modifier == Money.ONE && getModifier(day) == Money.ONE) {
+            return; // Nothing to store, so do not allocate a page for the default
+        }
+        Page page = page(day >> PAGE_SHIFT);
+        if (page.modifiers == null) {
+            page.modifiers = new int[PAGE_DAYS];
+            Arrays.fill(page.modifiers, Money.ONE);
+        }
+        page.modifiers[day & (PAGE_DAYS - 1)] = modifier;
+    }
+
+    /**
+     * Finds the page with the given number without allocating it.
+     *
+     * @param pageNo The page number (epoch day / 32).
+     * @return The page, or null if nothing has been written to it.
+     */
+    private Page peek(int pageNo) {
+        Page page = pages[pageNo & (PAGE_SLOTS - 1)];
+        return page != null && page.pageNo == pageNo ? page : null;
+    }
+
+    /**
+     * Finds the page with the given number, allocating it or recycling an
+     * older page in the same slot if needed.
+     *
+     * @param pageNo The page number (epoch day / 32).
+     * @return The page.
+     */
+    private Page page(int pageNo) {
+        int slot = pageNo & (PAGE_SLOTS - 1);
+        Page page = pages[slot];
+        if (page == null) {
+            page = new Page(pageNo);
+            pages[slot] = page;
+        } else if (page.pageNo != pageNo) {
+            if (page.pageNo > pageNo) {
+                throw new IllegalArgumentException("Day is outside the calendar horizon: " + (pageNo << PAGE_SHIFT));
+            }
+            page.pageNo = pageNo; // The old page has rolled out of the horizon
+            page.bookedBits = 0;
+            page.modifiers = null;
+        }
+        return page;
+    }
+}
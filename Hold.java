@@ -0,0 +1,172 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Inventory set aside for a stay while a guest finishes booking it, see {@link HoldManager}.
+ *
+ * A hold either has a room, whose nights it keeps booked until it ends, or
+ * is overbooked: no room of its type was free, and it counts against the
+ * type's overbooking limit instead. A hold ends exactly once, by being
+ * confirmed into a reservation, released, or expiring; whichever comes first
+ * wins and the others find it already ended.
+ */
+public class Hold {
+
+    /**
+     * Where a hold stands.
+     */
+    public enum State {
+        HELD, CONFIRMED, RELEASED, EXPIRED
+    }
+
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(Hold.class, "state", State.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long id;
+    private final Hotel hotel;
+    private final RoomType type;
+    private final Room room; // Null when overbooked
+    private final int checkIn;
+    private final int checkOut;
+    private final boolean roomChosen;
+    private final long expiresAt; // Epoch milliseconds
+    private volatile State state;
+
+    // Timer wheel links, guarded by the manager's wheel lock
+    long deadline; // Tick the hold expires on
+    Hold prev;
+    Hold next;
+    boolean scheduled;
+
+    /**
+     * Constructs a hold that is in force.
+     *
+     * @param id The hold's ID.
+     * @param hotel The hotel the stay is in.
+     * @param type The room type held.
+     * @param room The room held, or null if the hold is overbooked.
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @param roomChosen True if the guest asked for this room.
+     * @param expiresAt When the hold expires, in epoch milliseconds.
+     */
+    Hold(long id, Hotel hotel, RoomType type, Room room, int checkIn, int checkOut, boolean roomChosen,
+         long expiresAt) {
+        this.id = id;
+        this.hotel = hotel;
+        this.type = type;
+        this.room = room;
+        this.checkIn = checkIn;
+        this.checkOut = checkOut;
+        this.roomChosen = roomChosen;
+        this.expiresAt = expiresAt;
+        this.state = State.HELD;
+    }
+
+    /**
+     * Retrieves the hold's ID.
+     *
+     * @return The ID.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Retrieves the hotel the stay is in.
+     *
+     * @return The hotel.
+     */
+    public Hotel getHotel() {
+        return hotel;
+    }
+
+    /**
+     * Retrieves the room type held.
+     *
+     * @return The room type.
+     */
+    public RoomType getType() {
+        return type;
+    }
+
+    /**
+     * Retrieves the room held.
+     *
+     * @return The room, or null if the hold is overbooked.
+     */
+    public Room getRoom() {
+        return room;
+    }
+
+    /**
+     * Checks whether the hold has no room and counts against its type's overbooking limit.
+     *
+     * @return True if the hold is overbooked.
+     */
+    public boolean isOverbooked() {
+        return room == null;
+    }
+
+    /**
+     * Checks whether the guest asked for the room held, rather than having one assigned.
+     *
+     * @return True if the room was chosen by the guest.
+     */
+    public boolean isRoomChosen() {
+        return roomChosen;
+    }
+
+    /**
+     * Retrieves the check-in date.
+     *
+     * @return The check-in date as an epoch day.
+     */
+    public int getCheckIn() {
+        return checkIn;
+    }
+
+    /**
+     * Retrieves the check-out date.
+     *
+     * @return The check-out date as an epoch day.
+     */
+    public int getCheckOut() {
+        return checkOut;
+    }
+
+    /**
+     * Retrieves when the hold expires if it is not confirmed or released first.
+     *
+     * @return The time in epoch milliseconds.
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Retrieves where the hold stands.
+     *
+     * @return The state.
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Ends the hold if it is still in force.
+     *
+     * @param end The state it ends in.
+     * @return True if this call ended it, false if it had already ended.
+     */
+    boolean end(State end) {
+        return STATE.compareAndSet(this, State.HELD, end);
+    }
+}
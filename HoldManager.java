@@ -0,0 +1,421 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Places holds on inventory for a time, and ends them when they are
+ * confirmed, released or run out, see {@link Hold}.
+ *
+ * A hold on a room books the room's nights like a reservation would, so no
+ * one else can take them; a reservation made from the hold takes the nights
+ * over without booking them again. When no room of the wanted type is free,
+ * a hold may still be placed without a room as long as no night of the stay
+ * already has as many such overbooked holds as the type's overbooking limit.
+ * An overbooked hold must find a free room when it is confirmed.
+ *
+ * Expiry runs on a hashed timer wheel: a ring of buckets, one per tick, each
+ * an intrusive doubly linked list of the holds that expire on a tick landing
+ * in that bucket. Placing and ending a hold link and unlink it in O(1), and a
+ * single daemon thread, started with the first hold, walks one bucket per
+ * tick and expires the holds whose tick has come. Holds due further off than
+ * one turn of the wheel stay in their bucket until the turn they are due on.
+ */
+public class HoldManager implements AutoCloseable {
+
+    /** Time a hold lasts when none is given, in milliseconds. */
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    /** Longest time a hold may last, in milliseconds. */
+    public static final long MAX_TTL_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    /** Length of a tick of the wheel used by default, in milliseconds. */
+    public static final long DEFAULT_TICK_MILLIS = 100;
+
+    private static final int WHEEL_SIZE = 4096; // Buckets; a power of two so a tick maps to its bucket with a mask
+    private static final int DAY_SLOTS = 512; // Covers the booking horizon, like FreeRoomIndex
+
+    private final long tickNanos;
+    private final long origin; // System.nanoTime() at tick 0
+    private final Hold[] wheel; // First hold of each bucket
+    private final Object wheelLock;
+    private long currentTick; // Last tick expired, guarded by wheelLock
+    private final Map<Long, Hold> holds;
+    private final AtomicLong lastHoldId;
+    private final AtomicIntegerArray overbookingLimits; // By room type ordinal
+    private final Map<Hotel, int[]> overbooked; // Overbooked holds by room type and night, guarded by the array
+    private final LongAdder placed;
+    private final LongAdder expired;
+    private Thread ticker; // Guarded by wheelLock
+    private boolean closed; // Guarded by wheelLock
+
+    /**
+     * Constructs a manager with no holds and no overbooking, whose wheel ticks every {@value #DEFAULT_TICK_MILLIS} ms.
+     */
+    public HoldManager() {
+        this(DEFAULT_TICK_MILLIS);
+    }
+
+    /**
+     * Constructs a manager with no holds and no overbooking.
+     *
+     * @param tickMillis The length of a tick of the wheel; holds expire up to a tick late.
+     * @throws IllegalArgumentException If the tick is not positive.
+     */
+    public HoldManager(long tickMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Invalid tick: " + tickMillis);
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.origin = System.nanoTime();
+        this.wheel = new Hold[WHEEL_SIZE];
+        this.wheelLock = new Object();
+        this.holds = new ConcurrentHashMap<>();
+        this.lastHoldId = new AtomicLong();
+        this.overbookingLimits = new AtomicIntegerArray(RoomType.values().length);
+        this.overbooked = new ConcurrentHashMap<>();
+        this.placed = new LongAdder();
+        this.expired = new LongAdder();
+    }
+
+    /**
+     * Sets how many holds without a room a room type may have on any one night.
+     *
+     * @param type The room type.
+     * @param limit The most overbooked holds per night, 0 for no overbooking.
+     * @throws IllegalArgumentException If the limit is negative.
+     */
+    public void setOverbookingLimit(RoomType type, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Invalid overbooking limit: " + limit);
+        }
+        overbookingLimits.set(type.ordinal(), limit);
+    }
+
+    /**
+     * Retrieves how many holds without a room a room type may have on any one night.
+     *
+     * @param type The room type.
+     * @return The most overbooked holds per night.
+     */
+    public int getOverbookingLimit(RoomType type) {
+        return overbookingLimits.get(type.ordinal());
+    }
+
+    /**
+     * Holds a specific room for a stay.
+     *
+     * @param hotel The hotel the room belongs to.
+     * @param room The room.
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @param ttlMillis How long the hold lasts, in milliseconds.
+     * @return The hold, or null if the room is booked on a night of the stay.
+     */
+    public Hold holdRoom(Hotel hotel, Room room, int checkIn, int checkOut, long ttlMillis) {
+        if (!room.tryBook(checkIn, checkOut)) {
+            return null;
+        }
+        return place(hotel, room.getType(), room, checkIn, checkOut, true, ttlMillis);
+    }
+
+    /**
+     * Holds the free room of a type that fits a stay best, see
+     * {@link Hotel#findFreeRoomsBestFit(int, int, RoomType)}, or, when none is
+     * free, places an overbooked hold if the type's limit allows.
+     *
+     * @param hotel The hotel.
+     * @param type The room type wanted, or null for any type; holds of any type are never overbooked.
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @param ttlMillis How long the hold lasts, in milliseconds.
+     * @return The hold, or null if no room is free and the stay cannot be overbooked.
+     */
+    public Hold holdAny(Hotel hotel, RoomType type, int checkIn, int checkOut, long ttlMillis) {
+        for (Room room : hotel.findFreeRoomsBestFit(checkIn, checkOut, type)) {
+            if (room.tryBook(checkIn, checkOut)) {
+                return place(hotel, room.getType(), room, checkIn, checkOut, false, ttlMillis);
+            }
+            // Another caller took the room after the search; try the next one
+        }
+        if (type == null || !overbook(hotel, type, checkIn, checkOut)) {
+            return null;
+        }
+        return place(hotel, type, null, checkIn, checkOut, false, ttlMillis);
+    }
+
+    /**
+     * Finds a hold that is still in force.
+     *
+     * @param holdId The hold's ID.
+     * @return The hold, or null if it has ended or never existed.
+     */
+    public Hold findHold(long holdId) {
+        return holds.get(holdId);
+    }
+
+    /**
+     * Ends a hold so that a reservation can be made from it. A room held
+     * stays booked for the reservation to take over, see
+     * {@link Hotel#addHeldReservation(Reservation, java.util.function.Consumer)}; it is
+     * up to the caller to free it with {@link Room#cancelBooking(int, int)} if no
+     * reservation is made.
+     *
+     * @param holdId The hold's ID.
+     * @return The hold, or null if it has ended or never existed.
+     */
+    public Hold confirm(long holdId) {
+        Hold hold = holds.get(holdId);
+        if (hold == null || !hold.end(Hold.State.CONFIRMED)) {
+            return null;
+        }
+        unschedule(hold);
+        holds.remove(holdId);
+        if (hold.isOverbooked()) {
+            unoverbook(hold);
+        }
+        return hold;
+    }
+
+    /**
+     * Ends a hold and gives back what it held.
+     *
+     * @param holdId The hold's ID.
+     * @return True if the hold was released, false if it had ended or never existed.
+     */
+    public boolean release(long holdId) {
+        Hold hold = holds.get(holdId);
+        if (hold == null || !hold.end(Hold.State.RELEASED)) {
+            return false;
+        }
+        unschedule(hold);
+        holds.remove(holdId);
+        giveBack(hold);
+        return true;
+    }
+
+    /**
+     * Releases every hold in a hotel, such as when the hotel is removed.
+     *
+     * @param hotel The hotel.
+     */
+    public void releaseAll(Hotel hotel) {
+        for (Hold hold : holds.values()) {
+            if (hold.getHotel() == hotel) {
+                release(hold.getId());
+            }
+        }
+        overbooked.remove(hotel);
+    }
+
+    /**
+     * Counts the holds in force.
+     *
+     * @return The number of holds.
+     */
+    public int getActiveHolds() {
+        return holds.size();
+    }
+
+    /**
+     * Retrieves the number of holds placed.
+     *
+     * @return The count.
+     */
+    public long getPlacedHolds() {
+        return placed.sum();
+    }
+
+    /**
+     * Retrieves the number of holds that expired before being confirmed or released.
+     *
+     * @return The count.
+     */
+    public long getExpiredHolds() {
+        return expired.sum();
+    }
+
+    /**
+     * Stops the expiry thread. Holds in force stay in force until released or confirmed.
+     */
+    @Override
+    public void close() {
+        Thread stopped;
+        synchronized (wheelLock) {
+            closed = true;
+            stopped = ticker;
+            ticker = null;
+        }
+        if (stopped != null) {
+            stopped.interrupt();
+        }
+    }
+
+    /**
+     * Registers a hold whose inventory has been taken and puts it on the wheel.
+     */
+    private Hold place(Hotel hotel, RoomType type, Room room, int checkIn, int checkOut, boolean roomChosen,
+                       long ttlMillis) {
+        long ttl = Math.max(0, Math.min(ttlMillis, MAX_TTL_MILLIS));
+        Hold hold = new Hold(lastHoldId.incrementAndGet(), hotel, type, room, checkIn, checkOut, roomChosen,
+                System.currentTimeMillis() + ttl);
+        holds.put(hold.getId(), hold);
+        placed.increment();
+        long due = System.nanoTime() - origin + TimeUnit.MILLISECONDS.toNanos(ttl);
+        synchronized (wheelLock) {
+            hold.deadline = Math.max(currentTick + 1, (due + tickNanos - 1) / tickNanos);
+            int bucket = (int) (hold.deadline & (WHEEL_SIZE - 1));
+            hold.prev = null;
+            hold.next = wheel[bucket];
+            if (hold.next != null) {
+                hold.next.prev = hold;
+            }
+            wheel[bucket] = hold;
+            hold.scheduled = true;
+            if (ticker == null && !closed) {
+                ticker = new Thread(this::tick, "hold-expiry");
+                ticker.setDaemon(true);
+                ticker.start();
+            }
+        }
+        return hold;
+    }
+
+    /**
+     * Takes a hold off the wheel if it is still on it.
+     */
+    private void unschedule(Hold hold) {
+        synchronized (wheelLock) {
+            unlink(hold);
+        }
+    }
+
+    private void unlink(Hold hold) {
+        if (!hold.scheduled) {
+            return;
+        }
+        if (hold.prev != null) {
+            hold.prev.next = hold.next;
+        } else {
+            wheel[(int) (hold.deadline & (WHEEL_SIZE - 1))] = hold.next;
+        }
+        if (hold.next != null) {
+            hold.next.prev = hold.prev;
+        }
+        hold.prev = null;
+        hold.next = null;
+        hold.scheduled = false;
+    }
+
+    /**
+     * Runs the wheel until the manager is closed, expiring holds as their ticks come.
+     */
+    private void tick() {
+        while (true) {
+            long next;
+            synchronized (wheelLock) {
+                if (closed) {
+                    return;
+                }
+                next = origin + (currentTick + 1) * tickNanos;
+            }
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    return; // Closed
+                }
+            }
+            expireDue(System.nanoTime());
+        }
+    }
+
+    /**
+     * Expires every hold due by a time, walking the buckets of the ticks
+     * since the last walk; a wheel that fell a whole turn behind is walked once.
+     *
+     * @param now The time as given by {@link System#nanoTime()}.
+     * @return The number of holds expired.
+     */
+    int expireDue(long now) {
+        List<Hold> due = new ArrayList<>();
+        synchronized (wheelLock) {
+            long target = (now - origin) / tickNanos;
+            long steps = Math.min(target - currentTick, WHEEL_SIZE);
+            for (long t = currentTick + 1; t <= currentTick + steps; t++) {
+                Hold hold = wheel[(int) (t & (WHEEL_SIZE - 1))];
+                while (hold != null) {
+                    Hold next = hold.next;
+                    if (hold.deadline <= target) {
+                        unlink(hold);
+                        due.add(hold);
+                    }
+                    hold = next;
+                }
+            }
+            currentTick = Math.max(currentTick, target);
+        }
+        int count = 0;
+        for (Hold hold : due) { // Off the wheel lock, as freeing rooms takes their locks
+            if (hold.end(Hold.State.EXPIRED)) {
+                holds.remove(hold.getId());
+                giveBack(hold);
+                expired.increment();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Frees the room of an ended hold, or its place under the overbooking limit.
+     */
+    private void giveBack(Hold hold) {
+        if (hold.isOverbooked()) {
+            unoverbook(hold);
+        } else {
+            hold.getRoom().cancelBooking(hold.getCheckIn(), hold.getCheckOut());
+        }
+    }
+
+    /**
+     * Counts an overbooked hold on every night of a stay, unless a night is already at the type's limit.
+     */
+    private boolean overbook(Hotel hotel, RoomType type, int checkIn, int checkOut) {
+        int limit = overbookingLimits.get(type.ordinal());
+        if (limit == 0) {
+            return false;
+        }
+        int[] counts = overbooked.computeIfAbsent(hotel, key -> new int[RoomType.values().length * DAY_SLOTS]);
+        int base = type.ordinal() * DAY_SLOTS;
+        synchronized (counts) {
+            for (int day = checkIn; day < checkOut; day++) {
+                if (counts[base + Math.floorMod(day, DAY_SLOTS)] >= limit) {
+                    return false;
+                }
+            }
+            for (int day = checkIn; day < checkOut; day++) {
+                counts[base + Math.floorMod(day, DAY_SLOTS)]++;
+            }
+        }
+        return true;
+    }
+
+    private void unoverbook(Hold hold) {
+        int[] counts = overbooked.get(hold.getHotel());
+        if (counts == null) {
+            return; // Hotel removed
+        }
+        int base = hold.getType().ordinal() * DAY_SLOTS;
+        synchronized (counts) {
+            for (int day = hold.getCheckIn(); day < hold.getCheckOut(); day++) {
+                counts[base + Math.floorMod(day, DAY_SLOTS)]--;
+            }
+        }
+    }
+}
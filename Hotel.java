@@ -1,41 +1,105 @@
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 /**
  * Represents a Hotel with rooms and reservations.
+ * Reservations can be added and removed from many threads at once: each room
+ * is booked atomically under its own lock, reservations are indexed by ID
+ * and by guest name in a {@link ReservationIndex}, and earnings are accumulated in a striped adder and,
+ * per night and room type, in an {@link OccupancyLedger}. Adding and removing
+ * rooms is serialized on the hotel and holds the write side of a structure
+ * lock, whose read side lookups and searches hold while they read the rooms.
+ * Room calendars live on the heap unless the hotel is given a
+ * {@link RoomCalendarFile}, in which case each room's calendar is moved into
+ * the file's record for its slot when the room is added.
  */
 public class Hotel {
 
     private String name;
-    private Room[] rooms;
-    private int numRooms;
-    private ArrayList<Reservation> reservations;
-    private float totalEarnings;
-    private float basePrice;
+    private RoomStore rooms;
+    private final ReentrantReadWriteLock structure; // Guards rooms
+    private FreeRoomIndex freeRooms;
+    private PriceIndex prices;
+    private ReservationIndex reservations;
+    private final ReservationHistory history;
+    private AtomicLong lastReservationId;
+    private LongAdder totalEarnings; // In centavos
+    private volatile long basePrice; // In centavos
+    private RoomCalendarFile calendars; // Null when calendars stay on the heap
+    private volatile DiscountEngine discounts;
+    private final HotelMetrics metrics;
+    private final OccupancyLedger occupancy;
     
     
 
     /**
-     * Constructs a new Hotel with a specified name and initial number of rooms.
+     * Constructs a new Hotel with a specified name and no rooms.
      *
      * @param name The name of the hotel.
-     * @param numRooms The initial number of rooms the hotel can accommodate.
+     * @param numRooms The number of rooms to reserve space for; the hotel grows past it as needed.
      */
     public Hotel(String name, int numRooms) {
         this.name = name;
-        this.rooms = new Room[50]; // Assuming maximum capacity of 50 rooms
-        this.numRooms = numRooms;
-        this.reservations = new ArrayList<>();
-        this.totalEarnings = 0;
-        this.basePrice = 1229.0f; // Default base price per night
+        this.rooms = new RoomStore(numRooms);
+        this.structure = new ReentrantReadWriteLock();
+        this.freeRooms = new FreeRoomIndex();
+        this.prices = new PriceIndex();
+        this.reservations = new ReservationIndex();
+        this.history = new ReservationHistory();
+        this.lastReservationId = new AtomicLong();
+        this.totalEarnings = new LongAdder();
+        this.basePrice = Money.ofPesos(1229); // Default base price per night
+        this.discounts = DiscountEngine.standard();
+        this.metrics = new HotelMetrics();
+        this.occupancy = new OccupancyLedger();
         
     }
+
+    /**
+     * Constructs a new Hotel with a specified name and no rooms, whose room
+     * calendars are kept in a memory-mapped file.
+     *
+     * @param name The name of the hotel.
+     * @param numRooms The number of rooms to reserve space for; the hotel grows past it as needed.
+     * @param calendars The file to keep room calendars in.
+     */
+    public Hotel(String name, int numRooms, RoomCalendarFile calendars) {
+        this(name, numRooms);
+        this.calendars = calendars;
+    }
     
-    public void updateDatePriceModifier(int day, float modifier) {
-        for (int i = 0; i < numRooms; i++) {
-            rooms[i].setDatePriceModifier(day, modifier);
+    /**
+     * Updates the price modifier of a given day for all rooms in the hotel.
+     * Rooms added later get the modifier too.
+     *
+     * @param day The day as an epoch day.
+     * @param modifier The price modifier in basis points ({@link Money#ONE} for 100%).
+     */
+    public synchronized void updateDatePriceModifier(int day, int modifier) {
+        prices.setModifier(day, modifier);
+        for (Room room : rooms) {
+            room.setDatePriceModifier(day, modifier);
         }
     }
+
+    /**
+     * Gets the price modifier of a given day for the rooms in the hotel.
+     *
+     * @param day The day as an epoch day.
+     * @return The price modifier in basis points, {@link Money#ONE} if none was set.
+     */
+    public int getDatePriceModifier(int day) {
+        return prices.getModifier(day);
+    }
     
 
     /**
@@ -59,19 +123,43 @@ public class Hotel {
     /**
      * Retrieves the total earnings of the hotel from reservations.
      *
-     * @return The total earnings of the hotel.
+     * @return The total earnings of the hotel, in centavos.
+     */
+    public long getTotalEarnings() {
+        return totalEarnings.sum();
+    }
+
+    /**
+     * Retrieves the discount rules the hotel offers.
+     *
+     * @return The discount engine of the hotel.
+     */
+    public DiscountEngine getDiscounts() {
+        return discounts;
+    }
+
+    /**
+     * Replaces the discount rules the hotel offers. Reservations already made keep their prices.
+     *
+     * @param discounts The new discount engine.
      */
-    public float getTotalEarnings() {
-        return totalEarnings;
+    public void setDiscounts(DiscountEngine discounts) {
+        this.discounts = discounts;
     }
 
     /**
      * Retrieves an array of all rooms in the hotel.
      *
-     * @return An array containing all the rooms in the hotel.
+     * @return A new array containing all the rooms in the hotel, in floor order.
      */
     public Room[] getRooms() {
-        return rooms;
+        Lock read = structure.readLock();
+        read.lock();
+        try {
+            return rooms.toArray();
+        } finally {
+            read.unlock();
+        }
     }
 
     /**
@@ -80,51 +168,111 @@ public class Hotel {
      * @return The number of rooms in the hotel.
      */
     public int getNumRooms() {
-        return numRooms;
+        Lock read = structure.readLock();
+        read.lock();
+        try {
+            return rooms.size();
+        } finally {
+            read.unlock();
+        }
     }
 
     /**
-     * Adds a new room to the hotel if the maximum capacity has not been reached.
+     * Retrieves the number of floors in the hotel, counting up to the highest floor with a room.
+     *
+     * @return The number of floors in the hotel.
+     */
+    public int getNumFloors() {
+        Lock read = structure.readLock();
+        read.lock();
+        try {
+            return (rooms.slotLimit() + RoomStore.ROOMS_PER_FLOOR - 1) / RoomStore.ROOMS_PER_FLOOR;
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Adds a new room to the hotel if its room number is valid and not yet in use.
      *
      * @param room The room to be added to the hotel.
+     * @return True if the room was added, false if its number is invalid or already in use.
      */
-    public void addRoom(Room room) {
-        if (numRooms < 50) {
-            rooms[numRooms] = room;
-            numRooms++;
-        } else {
-            System.out.println("Cannot add more rooms. Maximum capacity reached.");
+    public synchronized boolean addRoom(Room room) {
+        Lock write = structure.writeLock();
+        write.lock();
+        try {
+            if (!rooms.add(room)) {
+                return false;
+            }
+
+            int slot = RoomStore.slotOf(room.getRoomNo());
+            if (calendars != null) {
+                room.moveCalendar(calendars.calendar(slot));
+            }
+            freeRooms.addRoom(slot, room.getType());
+            occupancy.addRooms(room.getType(), 1);
+            room.attach(freeRooms, prices, metrics, slot);
+            room.applyModifiers(prices); // Same modifiers as the rest of the hotel
+            int today = HotelCalendar.today();
+            if (room.hasBookings()) {
+                // Carry over nights booked before the room joined the hotel
+                for (int day = today; day < today + HotelCalendar.HORIZON_DAYS; day++) {
+                    if (!room.isAvailable(day)) {
+                        freeRooms.markBooked(slot, day, day + 1);
+                    }
+                }
+            }
+            return true;
+        } finally {
+            write.unlock();
         }
     }
 
     /**
-     * Removes a room from the hotel.
+     * Removes a room from the hotel if it has no bookings. Reservations book
+     * a room only while it is in the hotel, see {@link #addReservation(Reservation)},
+     * so none can land on the room once it is checked to be free.
      *
      * @param room The room to be removed from the hotel.
+     * @return True if the room was removed, false if it was not found in the hotel or has bookings.
      */
-    public void removeRoom(Room room) {
-        // Find the index of the room to remove
-        int indexToRemove = -1;
-        for (int i = 0; i < numRooms; i++) {
-            if (rooms[i].getRoomNo() == room.getRoomNo()) {
-                indexToRemove = i;
-                break;
+    public synchronized boolean removeRoom(Room room) {
+        Lock write = structure.writeLock();
+        write.lock();
+        try {
+            Room removed = rooms.get(room.getRoomNo());
+            if (removed == null || removed.hasBookings()) {
+                return false;
             }
-        }
+            rooms.remove(removed.getRoomNo());
 
-        if (indexToRemove == -1) {
-            System.out.println("Room not found in hotel.");
-            return;
+            freeRooms.removeRoom(RoomStore.slotOf(removed.getRoomNo()));
+            occupancy.addRooms(removed.getType(), -1);
+            removed.attach(null, null, null, 0);
+            if (calendars != null) {
+                removed.moveCalendar(new HeapRoomCalendar()); // Its record may go to another room
+            }
+            return true;
+        } finally {
+            write.unlock();
         }
+    }
 
-        // Shift elements in the array to remove the room
-        for (int i = indexToRemove; i < numRooms - 1; i++) {
-            rooms[i] = rooms[i + 1];
+    /**
+     * Closes and deletes the file the hotel's room calendars are kept in, once
+     * the hotel has been removed. Its rooms keep reading their calendars, as a
+     * mapping outlives its file (see {@link RoomCalendarFile#close()}); rooms
+     * added afterwards keep theirs on the heap.
+     *
+     * @throws IOException If the file cannot be closed or deleted.
+     */
+    public synchronized void deleteCalendars() throws IOException {
+        if (calendars != null) {
+            RoomCalendarFile file = calendars;
+            calendars = null;
+            file.delete();
         }
-
-        // Set the last element to null and decrement numRooms
-        rooms[numRooms - 1] = null;
-        numRooms--;
     }
 
     /**
@@ -134,100 +282,561 @@ public class Hotel {
      * @return The Room object if found, or null if not found.
      */
     public Room findRoom(int roomNo) {
-        for (Room room : rooms) {
-            if (room != null && room.getRoomNo() == roomNo) {
-                return room;
+        Lock read = structure.readLock();
+        read.lock();
+        try {
+            return rooms.get(roomNo);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Finds the rooms that are free for every night of a stay.
+     *
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @param type The room type to look for, or null for any type.
+     * @return The free rooms, in floor order.
+     */
+    public ArrayList<Room> findFreeRooms(int checkIn, int checkOut, RoomType type) {
+        long start = System.nanoTime();
+        if (freeRooms.minFreeRooms(checkIn, checkOut, type) == 0) {
+            metrics.recordSearch(0, start); // Sold out on some night, no room needs a look
+            return new ArrayList<>();
+        }
+        ArrayList<Room> result = new ArrayList<>();
+        long[] free;
+        Lock read = structure.readLock();
+        read.lock();
+        try {
+            free = freeRooms.freeRooms(checkIn, checkOut, type); // No room can leave its slot meanwhile
+            for (int w = 0; w < free.length; w++) {
+                long word = free[w];
+                while (word != 0) {
+                    result.add(rooms.getAt((w << 6) + Long.numberOfTrailingZeros(word)));
+                    word &= word - 1;
+                }
             }
+        } finally {
+            read.unlock();
+        }
+        metrics.recordSearch(free.length << 6, start);
+        return result;
+    }
+
+    /**
+     * Finds the rooms that are free for every night of a stay, best fit first:
+     * rooms whose free nights around the stay would be left in sellable runs
+     * come before rooms the stay would leave orphan nights in, and among
+     * those, the tighter the fit the earlier; see {@link RoomOptimizer#fitCost(int, int)}.
+     * The free runs of all candidate rooms are measured together on the
+     * free-room index, a word of 64 rooms at a time.
+     *
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @param type The room type to look for, or null for any type.
+     * @return The free rooms, best fit first and in floor order among equal fits.
+     */
+    public ArrayList<Room> findFreeRoomsBestFit(int checkIn, int checkOut, RoomType type) {
+        long start = System.nanoTime();
+        if (freeRooms.minFreeRooms(checkIn, checkOut, type) == 0) {
+            metrics.recordSearch(0, start);
+            return new ArrayList<>();
+        }
+        Lock read = structure.readLock();
+        read.lock();
+        try {
+            return rankFreeRooms(checkIn, checkOut, type, start);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Ranks the free rooms of a stay for {@link #findFreeRoomsBestFit}, holding the structure read lock.
+     */
+    private ArrayList<Room> rankFreeRooms(int checkIn, int checkOut, RoomType type, long start) {
+        long[] free = freeRooms.freeRooms(checkIn, checkOut, type);
+        int lookBack = Math.max(Math.min(RoomOptimizer.MAX_GAP, checkIn - HotelCalendar.today()), 0);
+        int[] before = freeRooms.freeRuns(free, checkIn - 1, -1, lookBack);
+        int[] after = freeRooms.freeRuns(free, checkOut, 1, RoomOptimizer.MAX_GAP);
+        int count = 0;
+        for (long word : free) {
+            count += Long.bitCount(word);
+        }
+        long[] ranked = new long[count]; // Cost in the high half, slot in the low half
+        int n = 0;
+        for (int w = 0; w < free.length; w++) {
+            for (long word = free[w]; word != 0; word &= word - 1) {
+                int slot = (w << 6) + Long.numberOfTrailingZeros(word);
+                ranked[n++] = ((long) RoomOptimizer.fitCost(before[slot], after[slot]) << 32) | slot;
+            }
+        }
+        Arrays.sort(ranked);
+        ArrayList<Room> result = new ArrayList<>(count);
+        for (long entry : ranked) {
+            result.add(rooms.getAt((int) entry));
+        }
+        metrics.recordSearch(free.length << 6, start);
+        return result;
+    }
+
+    /**
+     * Counts the rooms that are free for every night of a stay.
+     *
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @param type The room type to look for, or null for any type.
+     * @return The number of free rooms.
+     */
+    public int countFreeRooms(int checkIn, int checkOut, RoomType type) {
+        long start = System.nanoTime();
+        if (freeRooms.minFreeRooms(checkIn, checkOut, type) == 0) {
+            metrics.recordSearch(0, start);
+            return 0;
+        }
+        long[] free = freeRooms.freeRooms(checkIn, checkOut, type);
+        int count = 0;
+        for (long word : free) {
+            count += Long.bitCount(word);
         }
-        return null;
+        metrics.recordSearch(free.length << 6, start);
+        return count;
+    }
+
+    /**
+     * Retrieves the room slots booked on a night, for {@link RoomOptimizer}.
+     *
+     * @param day The night as an epoch day.
+     * @return The free-room index's own bitset, which must not be changed, or null if no room is booked.
+     */
+    long[] bookedSlots(int day) {
+        return freeRooms.bookedSlots(day);
+    }
+
+    /**
+     * Retrieves the hotel's counters and timers.
+     *
+     * @return The metrics.
+     */
+    public HotelMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Retrieves the running per-day totals of booked room-nights and revenue.
+     *
+     * @return The occupancy ledger.
+     */
+    public OccupancyLedger getOccupancy() {
+        return occupancy;
+    }
+
+    /**
+     * Checks cheaply whether a stay could find a free room, without searching
+     * the rooms: false if the per-day, per-type counters of the free-room
+     * index show every room of the type booked on some night of the stay.
+     * True does not promise that a single room is free for every night.
+     *
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @param type The room type to look for, or null for any type.
+     * @return False if no room of the type can be free for the whole stay.
+     */
+    public boolean mayHaveFreeRoom(int checkIn, int checkOut, RoomType type) {
+        return freeRooms.minFreeRooms(checkIn, checkOut, type) > 0;
+    }
+
+    /**
+     * Counts the rooms of a type booked on a night, from the free-room index's counters.
+     *
+     * @param day The night as an epoch day.
+     * @param type The room type, or null for every type.
+     * @return The number of booked rooms.
+     */
+    public int countBookedRooms(int day, RoomType type) {
+        return freeRooms.bookedRooms(day, type);
     }
 
     /**
      * Retrieves the base price per night for rooms in the hotel.
      *
-     * @return The base price per night.
+     * @return The base price per night, in centavos.
      */
-    public float getBasePrice() {
+    public long getBasePrice() {
         return this.basePrice;
     }
 
+    /**
+     * Retrieves the hotel's price version, which is different after any
+     * change to a base price or a date price modifier; see {@link QuoteCache}.
+     *
+     * @return The version.
+     */
+    public long getPriceVersion() {
+        return prices.getVersion();
+    }
+
     /**
      * Updates the base price per night for all rooms in the hotel.
+     * Like adding and removing rooms, this is serialized on the hotel, so
+     * every room ends up with the same price.
      *
-     * @param newPrice The new base price per night.
+     * @param newPrice The new base price per night, in centavos.
      */
-    public void updateBasePrice(float newPrice) {
+    public synchronized void updateBasePrice(long newPrice) {
         this.basePrice = newPrice;
-        for (int i = 0; i < numRooms; i++) {
-            rooms[i].setPrice(newPrice);
+        for (Room room : rooms) {
+            room.setPrice(newPrice);
         }
     }
 
     /**
      * Retrieves a list of reservations made in the hotel.
      *
-     * @return An ArrayList containing all reservations made in the hotel.
+     * @return A snapshot of all reservations made in the hotel, oldest first.
      */
     public ArrayList<Reservation> getReservations() {
-        return reservations;
+        return reservations.toList();
+    }
+
+    /**
+     * Counts the reservations made in the hotel.
+     *
+     * @return The number of reservations.
+     */
+    public int getNumReservations() {
+        return reservations.size();
+    }
+
+    /**
+     * Finds a reservation by its ID.
+     *
+     * @param id The reservation ID.
+     * @return The reservation, or null if the hotel has no reservation with that ID.
+     */
+    public Reservation findReservation(long id) {
+        return reservations.get(id);
+    }
+
+    /**
+     * Finds the reservations made under a guest name, ignoring case.
+     *
+     * @param guestName The guest name.
+     * @return The guest's reservations, oldest first; empty if the guest has none.
+     */
+    public List<Reservation> findReservations(String guestName) {
+        return reservations.findByGuest(guestName);
+    }
+
+    /**
+     * Books a room and records the reservation in one step.
+     * Safe to call from many threads at once; at most one of several
+     * overlapping reservations for the same room succeeds.
+     *
+     * @param guestName The name of the guest.
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @param roomNo The number of the room to book.
+     * @param discountCode The discount code, or an empty string for none; a code that does not apply is ignored.
+     * @return The reservation, or null if the room does not exist or is already booked.
+     */
+    public Reservation reserve(String guestName, int checkIn, int checkOut, int roomNo, String discountCode) {
+        Room room = findRoom(roomNo);
+        if (room == null) {
+            return null;
+        }
+        DiscountChain chain = discounts.compile(discountCode);
+        if (chain == null || !chain.appliesTo(checkIn, checkOut)) {
+            chain = DiscountChain.NONE;
+        }
+        Reservation reservation = new Reservation(guestName, checkIn, checkOut, room, chain);
+        return addReservation(reservation) ? reservation : null;
     }
 
     /**
-     * Adds a reservation to the hotel and updates total earnings.
+     * Books the reservation's room and adds the reservation to the hotel, updating total earnings.
+     * A reservation without an ID is given the next free one.
      *
      * @param reservation The reservation to be added.
+     * @return True if the reservation was added, false if its room is already booked for those dates.
      */
-    public void addReservation(Reservation reservation) {
-        reservations.add(reservation);
-        totalEarnings += reservation.getTotalPrice();
+    public boolean addReservation(Reservation reservation) {
+        return addReservation(reservation, null);
     }
 
     /**
-     * Removes a reservation from the hotel and updates total earnings.
+     * Books the reservation's room and adds the reservation to the hotel, like
+     * {@link #addReservation(Reservation)}, handing it to a recorder first.
      *
-     * @param reservation The reservation to be removed.
+     * @param reservation The reservation to be added.
+     * @param recorder Called once the room is booked and the reservation has its ID, before the
+     *                 reservation can be found; if it throws, the room is freed and the exception passed on.
+     * @return True if the reservation was added, false if its room is already booked for those dates
+     *         or is no longer in the hotel.
      */
-    public void removeReservation(Reservation reservation) {
-        if (reservations.remove(reservation)) {
-            totalEarnings -= reservation.getTotalPrice();
-            reservation.getRoom().cancelBooking(reservation.getCheckIn(), reservation.getCheckOut());
+    public boolean addReservation(Reservation reservation, Consumer<Reservation> recorder) {
+        long start = System.nanoTime();
+        boolean added;
+        Lock read = structure.readLock();
+        read.lock();
+        try { // The room cannot be removed between the check and the booking
+            Room room = reservation.getRoom();
+            added = rooms.get(room.getRoomNo()) == room
+                    && room.tryBook(reservation.getCheckIn(), reservation.getCheckOut());
+        } finally {
+            read.unlock();
+        }
+        added = added && register(reservation, recorder);
+        metrics.recordBooking(added, start);
+        return added;
+    }
+
+    /**
+     * Adds a reservation whose room's nights are already booked for it, such
+     * as by a {@link Hold}, without booking them again.
+     *
+     * @param reservation The reservation to be added.
+     * @param recorder Called before the reservation can be found, or null; see
+     *                 {@link #addReservation(Reservation, Consumer)}.
+     * @return True if the reservation was added, false if it was already in the
+     *         hotel or its room was removed before it was held, in which case
+     *         its room's nights are freed.
+     */
+    public boolean addHeldReservation(Reservation reservation, Consumer<Reservation> recorder) {
+        long start = System.nanoTime();
+        Room room = reservation.getRoom();
+        boolean added;
+        if (findRoom(room.getRoomNo()) != room) { // Held nights keep the room in the hotel from then on
+            room.cancelBooking(reservation.getCheckIn(), reservation.getCheckOut());
+            added = false;
         } else {
-            System.out.println("Reservation not found.");
+            added = register(reservation, recorder);
         }
+        metrics.recordBooking(added, start);
+        return added;
     }
 
     /**
-     * Finds the next available room number in the hotel.
+     * Books several reservations for the same room at once and adds those
+     * whose nights were free, see {@link Room#tryBookAll(int[], int[])}.
+     * Sorting the reservations by check-in keeps the walk over the room's
+     * calendar moving forward.
      *
-     * @return The next available room number, or -1 if maximum capacity is reached.
+     * @param room The room every reservation is for.
+     * @param reservations The reservations to be added.
+     * @param recorder Called for each reservation before it can be found, or null; see
+     *                 {@link #addReservation(Reservation, Consumer)}. If it throws, the
+     *                 reservations not yet added are not booked either.
+     * @return For each reservation, true if it was added; all false if the room is no longer in the hotel.
      */
-    public int getNextAvailableRoomNumber() {
-        if (numRooms >= 50) {
-            return -1; // Return -1 if hotel has reached maximum room capacity
+    public boolean[] addReservations(Room room, List<Reservation> reservations, Consumer<Reservation> recorder) {
+        int[] checkIns = new int[reservations.size()];
+        int[] checkOuts = new int[reservations.size()];
+        for (int i = 0; i < checkIns.length; i++) {
+            checkIns[i] = reservations.get(i).getCheckIn();
+            checkOuts[i] = reservations.get(i).getCheckOut();
+        }
+        boolean[] added;
+        Lock read = structure.readLock();
+        read.lock();
+        try {
+            added = rooms.get(room.getRoomNo()) == room
+                    ? room.tryBookAll(checkIns, checkOuts) : new boolean[checkIns.length];
+        } finally {
+            read.unlock();
+        }
+        int i = 0;
+        try {
+            for (; i < added.length; i++) {
+                if (added[i]) {
+                    added[i] = register(reservations.get(i), recorder);
+                }
+            }
+        } catch (RuntimeException e) {
+            for (int j = i + 1; j < added.length; j++) {
+                if (added[j]) {
+                    room.cancelBooking(checkIns[j], checkOuts[j]);
+                }
+            }
+            throw e;
         }
+        return added;
+    }
 
-        boolean[] roomExists = new boolean[51]; // Index from 1 to 50 for rooms 101 to 510
+    /**
+     * Adds a reservation whose room has just been booked, giving it an ID if it
+     * has none and handing it to the recorder, if any, before it can be found.
+     */
+    private boolean register(Reservation reservation, Consumer<Reservation> recorder) {
+        if (reservation.getId() == 0) {
+            reservation.setId(lastReservationId.incrementAndGet());
+        } else {
+            lastReservationId.accumulateAndGet(reservation.getId(), Math::max); // Loaded from disk
+        }
+        if (recorder != null) {
+            try {
+                recorder.accept(reservation);
+            } catch (RuntimeException e) {
+                reservation.getRoom().cancelBooking(reservation.getCheckIn(), reservation.getCheckOut());
+                throw e;
+            }
+        }
+        if (!reservations.add(reservation)) {
+            reservation.getRoom().cancelBooking(reservation.getCheckIn(), reservation.getCheckOut());
+            return false; // Loaded twice
+        }
+        totalEarnings.add(reservation.getTotalPrice());
+        occupancy.add(reservation);
+        return true;
+    }
 
-        // Mark existing room numbers
-        for (int i = 0; i < numRooms; i++) {
-            int roomNo = rooms[i].getRoomNo();
-            int floor = roomNo / 100;
-            int roomIndex = roomNo % 100;
-            roomExists[(floor - 1) * 10 + roomIndex] = true;
+    /**
+     * Removes a reservation from the hotel, frees its room and updates total earnings.
+     *
+     * @param reservation The reservation to be removed.
+     * @return True if the reservation was removed, false if it was not found.
+     */
+    public boolean removeReservation(Reservation reservation) {
+        return removeReservation(reservation, null);
+    }
+
+    /**
+     * Removes a reservation from the hotel, like {@link #removeReservation(Reservation)},
+     * handing it to a recorder first.
+     *
+     * @param reservation The reservation to be removed.
+     * @param recorder Called once the reservation can no longer be found, before its room is
+     *                 freed; if it throws, the reservation is put back and the exception passed on.
+     * @return True if the reservation was removed, false if it was not found.
+     */
+    public boolean removeReservation(Reservation reservation, Consumer<Reservation> recorder) {
+        long start = System.nanoTime();
+        if (!reservations.remove(reservation)) {
+            return false;
+        }
+        if (recorder != null) {
+            try {
+                recorder.accept(reservation);
+            } catch (RuntimeException e) {
+                reservations.add(reservation);
+                throw e;
+            }
         }
+        totalEarnings.add(-reservation.getTotalPrice());
+        occupancy.remove(reservation);
+        reservation.getRoom().cancelBooking(reservation.getCheckIn(), reservation.getCheckOut());
+        metrics.recordCancellation(start);
+        return true;
+    }
 
-        // Find the first missing room number
-        for (int i = 1; i < roomExists.length; i++) {
-            if (!roomExists[i]) {
-                int floor = (i - 1) / 10 + 1;
-                int roomIndex = (i - 1) % 10 + 1;
-                return floor * 100 + roomIndex;
+    /**
+     * Moves the reservations that checked out on or before a date from the
+     * hotel's live reservations into its history, see {@link ReservationHistory}.
+     * Their nights are freed in the room calendars, as past nights are never
+     * booked again, but they still count towards total earnings and occupancy.
+     *
+     * @param before The date as an epoch day; stays checking out later are left alone.
+     * @return The number of stays archived.
+     */
+    public synchronized int archiveStays(int before) {
+        int archived = 0;
+        for (Reservation reservation : reservations.toList()) {
+            if (reservation.getCheckOut() <= before && reservations.remove(reservation)) {
+                history.add(reservation);
+                reservation.getRoom().cancelBooking(reservation.getCheckIn(), reservation.getCheckOut());
+                archived++;
             }
         }
+        return archived;
+    }
 
-        // If no missing room number, calculate the next room number
-        int floor = numRooms / 10 + 1; // Calculate floor (1-based index)
-        int roomIndex = numRooms % 10 + 1; // Calculate room index within the floor (1-based index)
-        return floor * 100 + roomIndex;
+    /**
+     * Adds a stay loaded from disk straight to the hotel's history, counting
+     * it towards total earnings and occupancy.
+     *
+     * @param id The ID the stay had as a reservation.
+     * @param guestName The name of the guest.
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @param roomNo The number of the room stayed in.
+     * @param type The type of the room stayed in.
+     * @param discountCode The discount codes applied, or an empty string for none.
+     * @param totalPrice The price paid, in centavos.
+     */
+    public void restoreStay(long id, String guestName, int checkIn, int checkOut, int roomNo, RoomType type,
+                            String discountCode, long totalPrice) {
+        history.add(id, guestName, checkIn, checkOut, roomNo, type, discountCode, totalPrice);
+        lastReservationId.accumulateAndGet(id, Math::max); // Archived IDs are never handed out again
+        totalEarnings.add(totalPrice);
+        occupancy.add(type, checkIn, checkOut, totalPrice);
+    }
+
+    /**
+     * Retrieves the stays archived from the hotel's reservations.
+     *
+     * @return The history.
+     */
+    public ReservationHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Moves reservations to other rooms, as planned by {@link RoomOptimizer#plan(Hotel, RoomType)}.
+     * Every old room is freed before any new room is booked, so reservations
+     * can swap rooms. If a new room turns out to be taken, every reservation
+     * is put back in its old room and nothing moves. Callers must keep other
+     * bookings of the rooms out while this runs, as the old rooms are briefly free.
+     *
+     * @param moves The reservations to move and the room each moves to.
+     * @return True if every reservation was moved, false if none was.
+     */
+    public synchronized boolean moveReservations(Map<Reservation, Room> moves) {
+        for (Map.Entry<Reservation, Room> move : moves.entrySet()) {
+            Reservation reservation = move.getKey();
+            Room room = move.getValue();
+            if (findReservation(reservation.getId()) != reservation || findRoom(room.getRoomNo()) != room
+                    || room.getType() != reservation.getRoom().getType()) {
+                return false;
+            }
+        }
+        for (Reservation reservation : moves.keySet()) {
+            reservation.getRoom().cancelBooking(reservation.getCheckIn(), reservation.getCheckOut());
+        }
+        List<Reservation> booked = new ArrayList<>(moves.size());
+        for (Map.Entry<Reservation, Room> move : moves.entrySet()) {
+            Reservation reservation = move.getKey();
+            if (!move.getValue().tryBook(reservation.getCheckIn(), reservation.getCheckOut())) {
+                for (Reservation undo : booked) {
+                    moves.get(undo).cancelBooking(undo.getCheckIn(), undo.getCheckOut());
+                }
+                for (Reservation undo : moves.keySet()) {
+                    undo.getRoom().bookRoom(undo.getCheckIn(), undo.getCheckOut());
+                }
+                return false;
+            }
+            booked.add(reservation);
+        }
+        for (Map.Entry<Reservation, Room> move : moves.entrySet()) {
+            move.getKey().reassign(move.getValue());
+        }
+        return true;
+    }
+
+    /**
+     * Finds the next available room number in the hotel.
+     * Numbers freed by removed rooms are handed out again before new ones, lowest first.
+     *
+     * @return The next available room number.
+     */
+    public int getNextAvailableRoomNumber() {
+        Lock read = structure.readLock();
+        read.lock();
+        try {
+            return rooms.nextFreeRoomNumber();
+        } finally {
+            read.unlock();
+        }
     }
 }
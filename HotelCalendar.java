@@ -0,0 +1,104 @@
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Date helpers shared by rooms, reservations and the console menus.
+ * Every date in the system is an epoch day (days since 1970-01-01), and
+ * bookings are accepted on a rolling horizon that starts today.
+ */
+public final class HotelCalendar {
+
+    /** Number of days ahead of today that can be booked. */
+    public static final int HORIZON_DAYS = 366;
+
+    private HotelCalendar() {
+    }
+
+    /**
+     * Retrieves today's date.
+     *
+     * @return Today as an epoch day.
+     */
+    public static int today() {
+        return (int) LocalDate.now().toEpochDay();
+    }
+
+    /**
+     * Retrieves the latest check-out date that can currently be booked.
+     *
+     * @return The last bookable check-out as an epoch day.
+     */
+    public static int lastCheckOut() {
+        return today() + HORIZON_DAYS;
+    }
+
+    /**
+     * Checks if a stay falls within the bookable horizon.
+     *
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @return True if check-in is not in the past, check-out is after check-in
+     *         and check-out does not go past the horizon.
+     */
+    public static boolean isValidStay(int checkIn, int checkOut) {
+        return checkIn >= today() && checkIn < checkOut && checkOut <= lastCheckOut();
+    }
+
+    /**
+     * Parses an ISO date (YYYY-MM-DD).
+     *
+     * @param text The text to parse.
+     * @return The date as an epoch day, or -1 if the text is not a valid date.
+     */
+    public static int parseDate(String text) {
+        try {
+            return (int) LocalDate.parse(text.trim()).toEpochDay();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parses an ISO month (YYYY-MM).
+     *
+     * @param text The text to parse.
+     * @return The month, or null if the text is not a valid month.
+     */
+    public static YearMonth parseMonth(String text) {
+        try {
+            return YearMonth.parse(text.trim());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Formats an epoch day as an ISO date (YYYY-MM-DD).
+     *
+     * @param epochDay The date to format.
+     * @return The formatted date.
+     */
+    public static String format(int epochDay) {
+        return LocalDate.ofEpochDay(epochDay).toString();
+    }
+
+    /**
+     * Checks if any night of a stay falls on the given day of the month.
+     *
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @param dayOfMonth The day of the month to look for (1-31).
+     * @return True if a night from check-in up to check-out lands on that day of the month.
+     */
+    public static boolean includesDayOfMonth(int checkIn, int checkOut, int dayOfMonth) {
+        LocalDate date = LocalDate.ofEpochDay(checkIn);
+        for (int day = checkIn; day < checkOut; day++) {
+            if (date.getDayOfMonth() == dayOfMonth) {
+                return true;
+            }
+            date = date.plusDays(1);
+        }
+        return false;
+    }
+}
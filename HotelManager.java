@@ -1,24 +1,33 @@
 
 
+import java.util.List;
 import java.util.Scanner;
-import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.time.YearMonth;
 
 /**
  * The HotelManager class manages operations related to hotels, rooms, and reservations.
  * It provides functionalities for creating, viewing, and managing hotels, as well as simulating bookings.
+ * The menus only read input and print results; every operation is carried out by a {@link BookingService}.
  */
 public class HotelManager {
-    private ArrayList<Hotel> hotels; // List to store hotels
+    private BookingService service; // Performs all operations on hotels, rooms and reservations
     private static Scanner scanner = new Scanner(System.in); // Scanner object for user input\
-    private static final String DISCOUNT_I_WORK_HERE = "I_WORK_HERE";
-    private static final String DISCOUNT_STAY4_GET1 = "STAY4_GET1";
-    private static final String DISCOUNT_PAYDAY = "PAYDAY";
 
     /**
-     * Constructor to initialize an empty list of hotels.
+     * Constructor to initialize a manager with an empty list of hotels.
      */
     public HotelManager() {
-        this.hotels = new ArrayList<>();
+        this(new BookingService());
+    }
+
+    /**
+     * Constructor to initialize a manager on top of an existing booking service.
+     *
+     * @param service The service holding the hotels.
+     */
+    public HotelManager(BookingService service) {
+        this.service = service;
     }
 
     /**
@@ -27,12 +36,7 @@ public class HotelManager {
      * @return The Hotel object if found, null otherwise.
      */
     public Hotel findHotel(String name) {
-        for (Hotel hotel : hotels) {
-            if (hotel.getName().equalsIgnoreCase(name)) {
-                return hotel;
-            }
-        }
-        return null;
+        return service.findHotel(name);
     }
 
     /**
@@ -49,24 +53,28 @@ public class HotelManager {
            return;
        }
 
-       int totalRooms = 0;
+       long totalRooms = 0;
        int standardRooms = 0;
        int deluxeRooms = 0;
        int executiveRooms = 0;
 
-       while (totalRooms <= 0 || totalRooms > 50) {
-           System.out.print("Enter number of standard rooms (1-50): ");
+       while (totalRooms <= 0) {
+           System.out.print("Enter number of standard rooms (1 or more): ");
            standardRooms = scanner.nextInt();
 
-           System.out.print("Enter number of deluxe rooms (0-50): ");
+           System.out.print("Enter number of deluxe rooms (0 or more): ");
            deluxeRooms = scanner.nextInt();
 
-           System.out.print("Enter number of executive rooms (0-50): ");
+           System.out.print("Enter number of executive rooms (0 or more): ");
            executiveRooms = scanner.nextInt();
 
-           totalRooms = standardRooms + deluxeRooms + executiveRooms;
-           if (totalRooms > 50) {
-               System.out.println("Total number of rooms exceeds the maximum limit of 50. Please try again.");
+           totalRooms = (long) standardRooms + deluxeRooms + executiveRooms;
+           if (standardRooms < 0 || deluxeRooms < 0 || executiveRooms < 0) {
+               System.out.println("Invalid number of rooms. Room counts cannot be negative.");
+               totalRooms = 0;
+           } else if (totalRooms > BookingService.MAX_ROOMS) {
+               System.out.println("Invalid number of rooms. A hotel has at most " + BookingService.MAX_ROOMS + " rooms.");
+               totalRooms = 0;
            } else if (totalRooms <= 0) {
                System.out.println("Invalid number of rooms. Please enter a positive total number of rooms.");
            }
@@ -74,21 +82,13 @@ public class HotelManager {
 
        scanner.nextLine();  // Consume newline
 
-       Hotel hotel = new Hotel(name, 0);
-       for (int i = 0; i < standardRooms; i++) {
-           int roomNo = hotel.getNextAvailableRoomNumber();
-           hotel.addRoom(new StandardRoom(roomNo, hotel.getBasePrice()));
-       }
-       for (int i = 0; i < deluxeRooms; i++) {
-           int roomNo = hotel.getNextAvailableRoomNumber();
-           hotel.addRoom(new DeluxeRoom(roomNo, hotel.getBasePrice()));
-       }
-       for (int i = 0; i < executiveRooms; i++) {
-           int roomNo = hotel.getNextAvailableRoomNumber();
-           hotel.addRoom(new ExecutiveRoom(roomNo, hotel.getBasePrice()));
+       ServiceResult<Hotel> result = service.createHotel(name, standardRooms, deluxeRooms, executiveRooms);
+       if (!result.isOk()) {
+           System.out.println(result.getStatus().getMessage());
+           return;
        }
 
-       hotels.add(hotel);
+       Hotel hotel = result.getValue();
        System.out.println("Hotel created successfully with " + hotel.getNumRooms() + " rooms.");
        System.out.println("============================================");
    }
@@ -100,10 +100,10 @@ public class HotelManager {
      */
     public void viewHotel() {
         System.out.println("===== AVAILABLE HOTELS =====");
-        for (Hotel hotel : hotels) {
+        for (Hotel hotel : service.getHotels()) {
             System.out.println("Hotel Name: " + hotel.getName());
             System.out.println("Total Rooms: " + hotel.getNumRooms());
-            System.out.println("Base Price per Night: Php" + hotel.getBasePrice());
+            System.out.println("Base Price per Night: Php" + Money.format(hotel.getBasePrice()));
             System.out.println("--------------------------------------------");
         }
         System.out.println("");
@@ -132,7 +132,8 @@ public class HotelManager {
                 case 1:
                     System.out.println("Hotel Name: " + hotel.getName());
                     System.out.println("Total Rooms: " + hotel.getNumRooms());
-                    System.out.println("Total Earnings: Php" + hotel.getTotalEarnings());
+                    System.out.println("Total Earnings: Php" + Money.format(hotel.getTotalEarnings()));
+                    System.out.println("Archived Stays: " + hotel.getHistory().size());
                     break;
 
                 case 2:
@@ -171,28 +172,26 @@ public class HotelManager {
     }
 
     /**
-    * Displays the number of available and booked rooms for a specified date range in the given hotel.
+    * Displays the number of available and booked rooms for a specified date range in the given hotel,
+    * with the occupancy and revenue of the nights in the range.
     * Prompts the user to enter check-in and check-out dates and checks the availability of rooms.
     *
     * @param hotel The hotel for which to view available and booked rooms.
     */
    public void viewAvailableAndBookedRooms(Hotel hotel) {
-       System.out.print("Enter day of the month for check-in (1-31): ");
-       int checkIn = scanner.nextInt();
-       scanner.nextLine();  // Consume newline
-
-       System.out.print("Enter day of the month for check-out (1-31): ");
-       int checkOut = scanner.nextInt();
-       scanner.nextLine();  // Consume newline
+       int checkIn = readDate("Enter check-in date (YYYY-MM-DD): ");
+       int checkOut = readDate("Enter check-out date (YYYY-MM-DD): ");
 
        // Validate the check-in and check-out dates
-       if (checkIn < 1 || checkIn > 30) {
-           System.out.println("Invalid check-in date. Check-in must be between 1 and 30.");
+       if (checkIn < HotelCalendar.today() || checkIn >= HotelCalendar.lastCheckOut()) {
+           System.out.println("Invalid check-in date. Check-in must be between " + HotelCalendar.format(HotelCalendar.today())
+                   + " and " + HotelCalendar.format(HotelCalendar.lastCheckOut() - 1) + ".");
            return;
        }
 
-       if (checkOut < 2 || checkOut > 31) {
-           System.out.println("Invalid check-out date. Check-out must be between 2 and 31.");
+       if (checkOut <= HotelCalendar.today() || checkOut > HotelCalendar.lastCheckOut()) {
+           System.out.println("Invalid check-out date. Check-out must be between " + HotelCalendar.format(HotelCalendar.today() + 1)
+                   + " and " + HotelCalendar.format(HotelCalendar.lastCheckOut()) + ".");
            return;
        }
 
@@ -203,19 +202,18 @@ public class HotelManager {
 
        System.out.println("");
 
-       int available = 0;
-       int booked = 0;
-
-       for (int i = 0; i < hotel.getNumRooms(); i++) {
-           if (isRoomAvailable(hotel.getRooms()[i], checkIn, checkOut)) {
-               available++;
-           } else {
-               booked++;
-           }
-       }
+       int available = hotel.countFreeRooms(checkIn, checkOut, null);
+       int booked = hotel.getNumRooms() - available;
 
        System.out.println("Available Rooms: " + available);
        System.out.println("Booked Rooms: " + booked);
+
+       OccupancyReport report = hotel.getOccupancy().report(checkIn, checkOut, null);
+       System.out.println("Booked Room-Nights: " + report.getBookedNights() + " of " + report.getAvailableNights()
+               + String.format(" (%.1f%% occupancy)", report.getOccupancy() * 100));
+       System.out.println("Revenue: " + Money.format(report.getRevenue()));
+       System.out.println("Average Daily Rate: " + Money.format(report.getAverageDailyRate()));
+       System.out.println("RevPAR: " + Money.format(report.getRevPar()));
    }
 
 
@@ -225,31 +223,12 @@ public class HotelManager {
      * @param hotel The Hotel object to display room information for.
      */
     public void viewRoomInformation(Hotel hotel) {
-        // Create an array to store all available room numbers in the hotel
-        int[] availableRoomNumbers = new int[hotel.getNumRooms()];
-        for (int i = 0; i < hotel.getNumRooms(); i++) {
-            availableRoomNumbers[i] = hotel.getRooms()[i].getRoomNo();
-        }
-
         displayRooms(hotel);
 
         System.out.println();
         System.out.print("Enter room number: ");
         int roomNo = scanner.nextInt();
-
-        // Check if the entered room number exists in availableRoomNumbers array
-        boolean roomExists = false;
-        for (int i = 0; i < availableRoomNumbers.length; i++) {
-            if (availableRoomNumbers[i] == roomNo) {
-                roomExists = true;
-                break;
-            }
-        }
-
-        if (!roomExists) {
-            System.out.println("Room not found.");
-            return;
-        }
+        scanner.nextLine(); // Consume newline
 
         // Find the room object in the hotel
         Room room = hotel.findRoom(roomNo);
@@ -257,16 +236,24 @@ public class HotelManager {
             System.out.println("Room not found.");
             return;
         }
+
+        System.out.print("Enter month to view (YYYY-MM): ");
+        YearMonth month = HotelCalendar.parseMonth(scanner.nextLine());
+        if (month == null) {
+            System.out.println("Invalid month.");
+            return;
+        }
         
         System.out.println();
 
         // Display room information
         System.out.println("Room Number: " + room.getRoomNo());
         System.out.println("Room Type: " + getRoomType(room));
-        System.out.println("Price per Night: " + room.getPrice());
-        System.out.println("Availability:");
-        for (int day = 1; day <= 31; day++) { // Assuming 31 days in the month
-            System.out.println("Day " + day + ": " + (room.isAvailable(day) ? "Available" : "Booked"));
+        System.out.println("Price per Night: " + Money.format(room.getPrice()));
+        System.out.println("Availability for " + month + ":");
+        int firstDay = (int) month.atDay(1).toEpochDay();
+        for (int day = firstDay; day < firstDay + month.lengthOfMonth(); day++) {
+            System.out.println(HotelCalendar.format(day) + ": " + (room.isAvailable(day) ? "Available" : "Booked"));
         }
     }
 
@@ -294,22 +281,17 @@ public class HotelManager {
         }
 
         // Search for the reservation
-        boolean found = false;
-        for (Reservation reservation : hotel.getReservations()) {
-            if (reservation.getName().equalsIgnoreCase(guestName)) {
-                System.out.println("Guest Name: " + reservation.getName());
-                System.out.println("Room Number: " + reservation.getRoom().getRoomNo());
-                System.out.println("Check-in: Day " + reservation.getCheckIn());
-                System.out.println("Check-out: Day " + reservation.getCheckOut());
-                System.out.println("Total Price: Php" + reservation.getTotalPrice());
-                System.out.println("Breakdown of Price: " + (reservation.getCheckOut() - reservation.getCheckIn()) +
-                        " nights * Php" + reservation.getRoom().getPrice() + "(" + getRoomType(reservation.getRoom()) + " Price per Night) = Php" + reservation.getTotalPrice());
-                found = true;
-                break;
-            }
-        }
-
-        if (!found) {
+        Reservation reservation = service.findReservation(hotel, guestName);
+        if (reservation != null) {
+            System.out.println("Reservation ID: " + reservation.getId());
+            System.out.println("Guest Name: " + reservation.getName());
+            System.out.println("Room Number: " + reservation.getRoom().getRoomNo());
+            System.out.println("Check-in: " + HotelCalendar.format(reservation.getCheckIn()));
+            System.out.println("Check-out: " + HotelCalendar.format(reservation.getCheckOut()));
+            System.out.println("Total Price: Php" + Money.format(reservation.getTotalPrice()));
+            System.out.println("Breakdown of Price: " + (reservation.getCheckOut() - reservation.getCheckIn()) +
+                    " nights * Php" + Money.format(reservation.getRoom().getPrice()) + "(" + getRoomType(reservation.getRoom()) + " Price per Night) = Php" + Money.format(reservation.getTotalPrice()));
+        } else {
             System.out.println("No reservations found for guest: " + guestName);
         }
         System.out.println("");
@@ -323,10 +305,10 @@ public class HotelManager {
     */
     public void manageHotel() {
         System.out.println("===== AVAILABLE HOTELS =====");
-        for (Hotel hotel : hotels) {
+        for (Hotel hotel : service.getHotels()) {
             System.out.println("Hotel Name: " + hotel.getName());
             System.out.println("Total Rooms: " + hotel.getNumRooms());
-            System.out.println("Base Price per Night: Php" + hotel.getBasePrice());
+            System.out.println("Base Price per Night: Php" + Money.format(hotel.getBasePrice()));
             System.out.println("--------------------------------------------");
         }
         System.out.println("");
@@ -345,7 +327,8 @@ public class HotelManager {
             System.out.printf("[1] Change Name  [4] Update Base Price\n");
             System.out.printf("[2] Add Rooms    [5] Update Date Price Modifier\n");
             System.out.printf("[3] Remove Rooms [6] Remove Reservation\n");
-            System.out.printf("[7] Remove Hotel [8] Back\n");
+            System.out.printf("[7] Remove Hotel [8] Reassign Rooms\n");
+            System.out.printf("[9] Archive Past Stays [10] Back\n");
             System.out.print("Select an option: ");
             int choice = scanner.nextInt();
             scanner.nextLine();
@@ -373,13 +356,19 @@ public class HotelManager {
                     removeHotel(hotel);
                     break;
                 case 8:
+                    reassignRooms(hotel);
+                    break;
+                case 9:
+                    archivePastStays(hotel);
+                    break;
+                case 10:
                     break; // This will exit the switch statement
                 default:
                     System.out.println("Invalid option. Please try again.");
             }
 
             // Move this condition outside the switch to avoid running an extra loop iteration
-            if (choice == 8 || choice == 7) {
+            if (choice == 10 || choice == 7) {
                 break; // This will exit the do-while loop
             }
         } while (true);
@@ -399,13 +388,12 @@ public class HotelManager {
         System.out.print("Enter new hotel name: ");
         String newName = scanner.nextLine();
 
-        Hotel existingHotel = findHotel(newName);
-        if (existingHotel != null) {
-            System.out.println("Hotel with this name already exists.");
+        ServiceStatus status = service.renameHotel(hotel, newName);
+        if (!status.isOk()) {
+            System.out.println(status.getMessage());
             return;
         }
 
-        hotel.setName(newName);
         System.out.println("Hotel name changed successfully.");
     }
 
@@ -413,42 +401,34 @@ public class HotelManager {
     /**
     * Adds rooms to the specified hotel.
     * Prompts the user to enter the type of rooms they want to add and how many rooms.
-    * Checks if the hotel has reached its maximum room capacity (50 rooms). If the requested number of
-    * rooms exceeds the available capacity, it adds as many rooms as possible and
-    * informs the user accordingly.
+    * New rooms take the lowest free room numbers, filling gaps left by removed rooms first.
     *
     * @param hotel The hotel object to which rooms are to be added.
     */
    public void addRoom(Hotel hotel) {
        Scanner scanner = new Scanner(System.in);
-       int maxRoomsToAdd = 50 - hotel.getNumRooms(); // Calculate remaining room capacity
-
-       if (maxRoomsToAdd <= 0) {
-           System.out.println("Cannot add more rooms. Hotel already has maximum rooms.");
-           return;
-       }
 
        System.out.println("Enter type of room to add (1: Standard, 2: Deluxe, 3: Executive): ");
        int roomType = scanner.nextInt();
        scanner.nextLine(); // Consume newline
 
-       Room room = null;
+       RoomType type = null;
        switch (roomType) {
            case 1:
-               room = new StandardRoom(hotel.getNextAvailableRoomNumber(), hotel.getBasePrice());
+               type = RoomType.STANDARD;
                break;
            case 2:
-               room = new DeluxeRoom(hotel.getNextAvailableRoomNumber(), hotel.getBasePrice());
+               type = RoomType.DELUXE;
                break;
            case 3:
-               room = new ExecutiveRoom(hotel.getNextAvailableRoomNumber(), hotel.getBasePrice());
+               type = RoomType.EXECUTIVE;
                break;
            default:
                System.out.println("Invalid room type selected. Operation canceled.");
                return;
        }
 
-       System.out.print("Enter number of rooms to add (max " + maxRoomsToAdd + "): ");
+       System.out.print("Enter number of rooms to add: ");
        int numRoomsToAdd = scanner.nextInt();
        scanner.nextLine(); // Consume newline
 
@@ -457,29 +437,14 @@ public class HotelManager {
            return;
        }
 
-       if (numRoomsToAdd > maxRoomsToAdd) {
-           System.out.println("Cannot add more than " + maxRoomsToAdd + " rooms. Adding " + maxRoomsToAdd + " rooms.");
-           numRoomsToAdd = maxRoomsToAdd;
+       ServiceResult<List<Room>> result = service.addRooms(hotel, type, numRoomsToAdd);
+       if (!result.isOk()) {
+           System.out.println(result.getStatus().getMessage() + " A hotel has at most "
+                   + BookingService.MAX_ROOMS + " rooms.");
+           return;
        }
-
-       for (int i = 0; i < numRoomsToAdd; i++) {
-           int nextRoomNumber = hotel.getNextAvailableRoomNumber();
-           if (nextRoomNumber == -1) {
-               System.out.println("Cannot add more rooms. Hotel already has maximum rooms.");
-               break; // Exit loop if no more rooms can be added
-           }
-
-           Room newRoom = null;
-           if (room instanceof StandardRoom) {
-               newRoom = new StandardRoom(nextRoomNumber, hotel.getBasePrice());
-           } else if (room instanceof DeluxeRoom) {
-               newRoom = new DeluxeRoom(nextRoomNumber, hotel.getBasePrice());
-           } else if (room instanceof ExecutiveRoom) {
-               newRoom = new ExecutiveRoom(nextRoomNumber, hotel.getBasePrice());
-           }
-
-           hotel.addRoom(newRoom);
-           System.out.println("Room " + nextRoomNumber + " (" + newRoom.getClass().getSimpleName() + ") added successfully.");
+       for (Room newRoom : result.getValue()) {
+           System.out.println("Room " + newRoom.getRoomNo() + " (" + getRoomType(newRoom) + ") added successfully.");
        }
    }
 
@@ -495,12 +460,6 @@ public class HotelManager {
     * @param hotel The hotel object from which a room is to be removed.
     */
    public void removeRoom(Hotel hotel) {
-       // Create an array to store all available room numbers in the hotel
-       int[] availableRoomNumbers = new int[hotel.getNumRooms()];
-       for (int i = 0; i < hotel.getNumRooms(); i++) {
-           availableRoomNumbers[i] = hotel.getRooms()[i].getRoomNo();
-       }
-
        // Display all rooms
         displayRooms(hotel);
 
@@ -508,35 +467,13 @@ public class HotelManager {
        System.out.print("Enter room number: ");
        int roomNo = scanner.nextInt();
 
-       // Check if the entered room number exists in availableRoomNumbers array
-       boolean roomExists = false;
-       for (int i = 0; i < availableRoomNumbers.length; i++) {
-           if (availableRoomNumbers[i] == roomNo) {
-               roomExists = true;
-               break;
-           }
-       }
-
-       if (!roomExists) {
-           System.out.println("Room not found.");
-           return;
-       }
-
-       // Find the room object in the hotel
-       Room room = hotel.findRoom(roomNo);
-       if (room == null) {
-           System.out.println("Room not found.");
-           return;
-       }
-
-       // Check if the room has reservations
-       if (!isRoomAvailable(room, 1, 31)) {
-           System.out.println("Room has a reservation and cannot be removed!");
+       // Remove the room unless it is missing or has reservations
+       ServiceStatus status = service.removeRoom(hotel, roomNo);
+       if (!status.isOk()) {
+           System.out.println(status.getMessage());
            return;
        }
 
-       // Remove the room from the hotel
-       hotel.removeRoom(room);
        System.out.println("Room removed successfully.");
    }
 
@@ -548,26 +485,28 @@ public class HotelManager {
      * @param hotel The hotel object whose base price is to be updated.
      */
     public void updateRoomBasePrice(Hotel hotel) {
-        if (hotel.getReservations().size() != 0) {
-            System.out.println("Cannot update Base Price as there are still existing reservations");
+        if (hotel.getNumReservations() != 0) {
+            System.out.println(ServiceStatus.HOTEL_HAS_RESERVATIONS.getMessage());
             return;
         }
 
         System.out.print("Enter new base price (Php 100+): ");
-        float newPrice = scanner.nextFloat();
+        long newPrice = Money.ofPesos(scanner.nextDouble());
         scanner.nextLine();  // Consume newline
 
-        do{
-            if(newPrice < 100){
-                System.out.println("The Price is too low! Base Prices should be Php100 minimum");
-                System.out.print("Enter new base price: ");
-                newPrice = scanner.nextFloat();
-                scanner.nextLine();  // Consume newline
-            }
-
-        }while (newPrice < 100);
+        ServiceStatus status = service.updateBasePrice(hotel, newPrice);
+        while (status == ServiceStatus.INVALID_PRICE) {
+            System.out.println(status.getMessage());
+            System.out.print("Enter new base price: ");
+            newPrice = Money.ofPesos(scanner.nextDouble());
+            scanner.nextLine();  // Consume newline
+            status = service.updateBasePrice(hotel, newPrice);
+        }
 
-        hotel.updateBasePrice(newPrice);
+        if (!status.isOk()) {
+            System.out.println(status.getMessage());
+            return;
+        }
         System.out.println("Room base price updated successfully.");
     }
     
@@ -578,32 +517,35 @@ public class HotelManager {
      */
     public void datePriceModifier(Hotel hotel) {
         int day;
-        float modifier;
+        int modifier;
 
-        // Loop for day input validation
+        // Loop for date input validation
         do {
-            System.out.print("Enter the day of the month to update (1-31): ");
-            day = scanner.nextInt();
-            scanner.nextLine(); // Consume newline
+            day = readDate("Enter the date to update (YYYY-MM-DD): ");
 
-            if (day < 1 || day > 31) {
-                System.out.println("Invalid day. Please enter a day between 1 and 31.");
+            if (day < HotelCalendar.today() || day >= HotelCalendar.lastCheckOut()) {
+                System.out.println("Invalid date. Please enter a date between " + HotelCalendar.format(HotelCalendar.today())
+                        + " and " + HotelCalendar.format(HotelCalendar.lastCheckOut() - 1) + ".");
             }
-        } while (day < 1 || day > 31);
+        } while (day < HotelCalendar.today() || day >= HotelCalendar.lastCheckOut());
 
         // Loop for modifier input validation
         do {
             System.out.print("Enter the new price modifier (e.g., 1.1 for 110%, 0.9 for 90%): ");
-            modifier = scanner.nextFloat();
+            modifier = Money.rate(scanner.nextDouble());
             scanner.nextLine(); // Consume newline
 
-            if (modifier < 0.5 || modifier > 1.5) {
-                System.out.println("Invalid modifier. Please enter a value between 0.5 and 1.5.");
+            if (modifier < BookingService.MIN_MODIFIER || modifier > BookingService.MAX_MODIFIER) {
+                System.out.println(ServiceStatus.INVALID_MODIFIER.getMessage());
             }
-        } while (modifier < 0.5 || modifier > 1.5);
+        } while (modifier < BookingService.MIN_MODIFIER || modifier > BookingService.MAX_MODIFIER);
 
-        hotel.updateDatePriceModifier(day, modifier);
-        System.out.println("Date price modifier updated for day " + day + ".");
+        ServiceStatus status = service.updateDatePriceModifier(hotel, day, modifier);
+        if (!status.isOk()) {
+            System.out.println(status.getMessage());
+            return;
+        }
+        System.out.println("Date price modifier updated for " + HotelCalendar.format(day) + ".");
     }
 
 
@@ -623,50 +565,126 @@ public class HotelManager {
         System.out.print("Enter guest name for the reservation to be removed: ");
         String guestName = scanner.nextLine();
 
-        Reservation reservationToRemove = null;
-        for (Reservation reservation : hotel.getReservations()) {
-            if (reservation.getName().equalsIgnoreCase(guestName)) {
-                reservationToRemove = reservation;
-                break;
-            }
-        }
+        Reservation reservationToRemove = service.findReservation(hotel, guestName);
 
         if (reservationToRemove == null) {
             System.out.println("Reservation not found for guest: " + guestName);
         } else {
-            hotel.removeReservation(reservationToRemove);
-            System.out.println("Reservation removed successfully.");
+            ServiceStatus status = service.cancelReservation(hotel, reservationToRemove);
+            if (status.isOk()) {
+                System.out.println("Reservation removed successfully.");
+            } else {
+                System.out.println(status.getMessage());
+            }
+        }
+    }
+
+    /**
+    * Moves the hotel's future reservations that were not made for a chosen room
+    * between rooms of the same type, so that free nights are left in long runs.
+    * Prints how many reservations were moved.
+    *
+    * @param hotel The hotel whose reservations are to be reassigned.
+    */
+    public void reassignRooms(Hotel hotel) {
+        ServiceResult<Integer> result = service.reoptimizeRooms(hotel);
+        if (!result.isOk()) {
+            System.out.println(result.getStatus().getMessage());
+        } else if (result.getValue() == 0) {
+            System.out.println("Rooms are already assigned as well as they can be.");
+        } else {
+            System.out.println(result.getValue() + " reservation(s) moved to other rooms.");
+        }
+    }
+
+    /**
+    * Moves the hotel's reservations that have already checked out into its history.
+    * Prints how many stays were archived.
+    *
+    * @param hotel The hotel whose past stays are to be archived.
+    */
+    public void archivePastStays(Hotel hotel) {
+        ServiceResult<Integer> result = service.archivePastStays(hotel);
+        if (!result.isOk()) {
+            System.out.println(result.getStatus().getMessage());
+        } else {
+            System.out.println(result.getValue() + " past stay(s) archived.");
         }
     }
 
     
     /**
     * Removes the specified hotel from the list of hotels.
-    * Removes the hotel object from the 'hotels' list and prints a success message indicating the hotel removal.
+    * Removes the hotel object from the service and prints a message indicating the outcome.
     * 
     * @param hotel The hotel object to be removed from the list.
     */
     public void removeHotel(Hotel hotel) {
-        hotels.remove(hotel);
-        System.out.println("Hotel removed successfully.");
+        ServiceStatus status = service.removeHotel(hotel);
+        System.out.println(status.isOk() ? "Hotel removed successfully." : status.getMessage());
     }
 
     
+    /**
+    * Searches every hotel for free rooms for a stay and displays them, cheapest first.
+    * Prompts the user to enter check-in and check-out dates, a room type and the most they will pay.
+    */
+   public void searchAllHotels() {
+       int checkIn = readDate("Enter check-in date (YYYY-MM-DD): ");
+       int checkOut = readDate("Enter check-out date (YYYY-MM-DD): ");
+       if (!HotelCalendar.isValidStay(checkIn, checkOut)) {
+           System.out.println("Invalid check-in or check-out dates.");
+           return;
+       }
+
+       System.out.print("Enter room type (Standard, Deluxe, Executive, or blank for any): ");
+       String typeName = scanner.nextLine().trim();
+       RoomType type = null;
+       for (RoomType candidate : RoomType.values()) {
+           if (candidate.getDisplayName().equalsIgnoreCase(typeName)) {
+               type = candidate;
+           }
+       }
+       if (type == null && !typeName.isEmpty()) {
+           System.out.println("Invalid room type.");
+           return;
+       }
+
+       System.out.print("Enter maximum price for the stay (0 for no limit): ");
+       long maxPrice = Money.ofPesos(scanner.nextDouble());
+       scanner.nextLine(); // Consume newline
+       if (maxPrice <= 0) {
+           maxPrice = Long.MAX_VALUE;
+       }
+
+       List<RoomOffer> offers = service.searchAllHotels(checkIn, checkOut, type, maxPrice, 20).getValue();
+       if (offers.isEmpty()) {
+           System.out.println("No rooms available for the selected dates.");
+           return;
+       }
+       System.out.println("");
+       for (RoomOffer offer : offers) {
+           System.out.println(offer.getHotel().getName() + " - Room " + offer.getRoom().getRoomNo()
+                   + " (" + getRoomType(offer.getRoom()) + "): Php" + Money.format(offer.getPrice()));
+       }
+   }
+
     /**
     * Simulates the process of booking a room in a hotel based on user input.
     * Displays available hotels with their details and prompts the user to select a hotel.
     * Then, prompts for check-in and check-out dates, validates them, and displays available rooms.
-    * Allows the user to choose a room and enter guest details to make a reservation.
+    * Allows the user to choose a room, which is held while the guest details are entered,
+    * and then turns the hold into a reservation.
     * 
     * If no rooms are available for the selected dates or if invalid input is provided,
     * appropriate error messages are displayed, and the process exits.
     */
    public void simulateBooking() {
        System.out.println("===== AVAILABLE HOTELS =====");
-       for (Hotel hotel : hotels) {
+       for (Hotel hotel : service.getHotels()) {
            System.out.println("Hotel Name: " + hotel.getName());
            System.out.println("Total Rooms: " + hotel.getNumRooms());
-           System.out.println("Base Price per Night: Php" + hotel.getBasePrice());
+           System.out.println("Base Price per Night: Php" + Money.format(hotel.getBasePrice()));
            System.out.println("--------------------------------------------");
        }
        System.out.println("");
@@ -678,58 +696,32 @@ public class HotelManager {
            return;
        }
 
-       System.out.print("Enter check-in day (1-30): ");
-       int checkIn = scanner.nextInt();
-       scanner.nextLine();  // Consume newline
+       int checkIn = readDate("Enter check-in date (YYYY-MM-DD): ");
+       int checkOut = readDate("Enter check-out date (YYYY-MM-DD): ");
 
-       System.out.print("Enter check-out day (" + (checkIn + 1) + "-31): ");
-       int checkOut = scanner.nextInt();
-       scanner.nextLine();  // Consume newline
-
-       if (checkIn < 1 || checkIn >= checkOut || checkOut > 31) {
+       if (!HotelCalendar.isValidStay(checkIn, checkOut)) {
            System.out.println("Invalid check-in or check-out dates.");
            return;
        }
 
-       Room[] availableRooms = new Room[hotel.getNumRooms()];
-       int j = 0;
-       for (int i = 0; i < hotel.getNumRooms(); i++) {
-           Room room = hotel.getRooms()[i];
-           if (isRoomAvailable(room, checkIn, checkOut)) {
-               availableRooms[j] = room;
-               j++;
-           }
-       }
+       Room[] availableRooms = hotel.findFreeRooms(checkIn, checkOut, null).toArray(new Room[0]);
+       int j = availableRooms.length;
 
        if (j == 0) {
            System.out.println("No rooms available for the selected dates.");
            return;
        } else {
            System.out.println("Available Rooms:");
-           int numberOfFloors = (hotel.getNumRooms() + 9) / 10;
-           for (int floor = 1; floor <= numberOfFloors; floor++) {
-               System.out.print("Floor " + floor + ": ");
-               boolean floorHasRooms = false;
-               for (int i = 0; i < j; i++) {
-                   if (availableRooms[i].getRoomNo() / 100 == floor) {
-                       Room room = availableRooms[i];
-                       String roomType = getRoomType(room);
-                       System.out.print("Room " + room.getRoomNo() + " (" + roomType + ") ");
-                       floorHasRooms = true;
-                   }
-               }
-               if (!floorHasRooms) {
-                   System.out.print("No available rooms");
-               }
-               System.out.println(); // Move to the next line for the next floor
-           }
+           printRoomsByFloor(availableRooms, j, hotel.getNumFloors(), "No available rooms");
 
-           Room selectedRoom = null;
+           Room selectedRoom = null; // Stays null when a room is to be assigned
+           boolean assignRoom = false;
            do {
                System.out.println(" ");
-               System.out.print("Enter any room number of the available rooms: ");
+               System.out.print("Enter any room number of the available rooms (0 to have one assigned): ");
                int roomNo = scanner.nextInt();
                scanner.nextLine(); // Consume newline
+               assignRoom = roomNo == 0;
                for (int i = 0; i < j; i++) {
                    if (roomNo == availableRooms[i].getRoomNo()) {
                        selectedRoom = availableRooms[i];
@@ -737,118 +729,81 @@ public class HotelManager {
                    }
                }
 
-               if (selectedRoom == null) {
+               if (selectedRoom == null && !assignRoom) {
                    System.out.println("Invalid input! Please enter the ROOM NUMBER of any of the available rooms: ");
                }
-           } while (selectedRoom == null);
+           } while (selectedRoom == null && !assignRoom);
+
+           ServiceResult<Hold> held = assignRoom
+                   ? service.hold(hotel, checkIn, checkOut, null, HoldManager.DEFAULT_TTL_MILLIS)
+                   : service.holdRoom(hotel, checkIn, checkOut, selectedRoom.getRoomNo(), HoldManager.DEFAULT_TTL_MILLIS);
+           if (!held.isOk()) {
+               System.out.println(held.getStatus().getMessage());
+               return;
+           }
+           Hold hold = held.getValue();
+           System.out.println("Room " + hold.getRoom().getRoomNo() + " is held for you for "
+                   + TimeUnit.MILLISECONDS.toMinutes(HoldManager.DEFAULT_TTL_MILLIS) + " minutes.");
 
            System.out.print("Enter guest name: ");
            String guestName = scanner.nextLine();
 
            // Display available discount codes and prompt for selection
            String discountCode = "";
+           ServiceStatus discountStatus;
            do {
                discountCode = "";
                System.out.println("Available discount codes:");
-               System.out.println("1. " + DISCOUNT_I_WORK_HERE + " - 10% discount");
-               System.out.println("2. " + DISCOUNT_STAY4_GET1 + " - Free first day for reservations of 5 days or more");
-               System.out.println("3. " + DISCOUNT_PAYDAY + " - 7% discount if the reservation includes day 15 or 30");
-               System.out.print("Enter discount code (or press Enter to skip): ");
+               int number = 1;
+               for (DiscountRule rule : hotel.getDiscounts().getRules()) {
+                   System.out.println(number++ + ". " + rule.getCode() + " - " + rule.describe());
+               }
+               System.out.print("Enter discount code, or codes joined with + (or press Enter to skip): ");
                discountCode = scanner.nextLine().trim();
 
-               if (!discountCode.isEmpty()) {
-                   if (!isValidDiscountCode(discountCode)) {
-                       System.out.println("Invalid discount code. Please try again.");
-                   } else if (!isApplicableDiscountCode(discountCode, checkIn, checkOut)) {
-                       System.out.println("This discount code is not applicable to your check-in and check-out dates. Please try again.");
-                   }
+               discountStatus = service.validateDiscountCode(hotel, discountCode, checkIn, checkOut);
+               if (!discountStatus.isOk()) {
+                   System.out.println(discountStatus.getMessage() + " Please try again.");
                }
                        
                System.out.println();
-           } while (!isValidDiscountCode(discountCode) || !isApplicableDiscountCode(discountCode, checkIn, checkOut));
+           } while (!discountStatus.isOk());
 
-           Reservation reservation = new Reservation(guestName, checkIn, checkOut, selectedRoom, discountCode);
-           hotel.addReservation(reservation);
-           selectedRoom.bookRoom(checkIn, checkOut);
+           ServiceResult<Reservation> result = service.confirmHold(hold.getId(), guestName, discountCode);
+           if (!result.isOk()) {
+               service.releaseHold(hold.getId()); // Does nothing if the hold already ran out
+               System.out.println(result.getStatus().getMessage());
+               return;
+           }
+           Reservation reservation = result.getValue();
            System.out.println("Reservation successful.");
-           System.out.println("Total Price: Php" + reservation.getTotalPrice());
+           if (assignRoom) {
+               System.out.println("Assigned Room: " + reservation.getRoom().getRoomNo());
+           }
+           System.out.println("Total Price: Php" + Money.format(reservation.getTotalPrice()));
            System.out.println("");
        }
    }
 
     /**
-     * Checks if a room is available during specified dates.
-     * @param room The room to check availability for.
-     * @param checkIn The day of check-in.
-     * @param checkOut The day of check-out.
-     * @return True if the room is available, false otherwise.
-     */
-    private boolean isRoomAvailable(Room room, int checkIn, int checkOut) {
-        for (int day = checkIn; day < checkOut; day++) {
-            if (!room.isAvailable(day)) {
-                return false;
-            }
-        }
-        return true;
-    }
-    
-    /**
-     * Checks if a discount code is valid.
-     * 
-     * @param discountCode The discount code to check.
-     * @return True if the discount code is valid, false otherwise.
-     */
-    private boolean isValidDiscountCode(String discountCode) {
-        return DISCOUNT_I_WORK_HERE.equals(discountCode) ||
-               DISCOUNT_STAY4_GET1.equals(discountCode) ||
-               DISCOUNT_PAYDAY.equals(discountCode) || discountCode.isEmpty();
-    }
-    
-    
-    /**
-     * Checks if a discount code is applicable based on the check-in and check-out dates.
+     * Prompts for a date and reads it as an epoch day.
      *
-     * @param discountCode The discount code to be checked.
-     * @param checkIn      The check-in date.
-     * @param checkOut     The check-out date.
-     * @return True if the discount code is applicable, false otherwise.
+     * @param prompt The prompt to display.
+     * @return The entered date as an epoch day, or -1 if it is not a valid YYYY-MM-DD date.
      */
-    public boolean isApplicableDiscountCode(String discountCode, int checkIn, int checkOut) {
-        switch (discountCode) {
-            case "I_WORK_HERE":
-                return true; // Always applicable
-
-            case "STAY4_GET1":
-                return (checkOut - checkIn) >= 5; // Applicable for stays of 5 days or more
-
-            case "PAYDAY":
-                if ((checkIn <= 15 && checkOut > 15) || (checkIn <= 30 && checkOut > 30)) {
-                        return true; // Applicable if stay includes day 15 or 30
-                    }
-                
-               return false;
-
-            default:
-                return true; // Unknown discount code
-        }
+    private int readDate(String prompt) {
+        System.out.print(prompt);
+        return HotelCalendar.parseDate(scanner.nextLine());
     }
-    
+
     /**
-    * Gets the type of the room based on its class.
+    * Gets the display name of the room's type.
     * 
     * @param room The room object.
     * @return A string representing the type of the room.
     */
    private String getRoomType(Room room) {
-       if (room instanceof StandardRoom) {
-           return "Standard";
-       } else if (room instanceof DeluxeRoom) {
-           return "Deluxe";
-       } else if (room instanceof ExecutiveRoom) {
-           return "Executive";
-       } else {
-           return "Unknown";
-       }
+       return room.getType().getDisplayName();
    }
    
    /**
@@ -857,23 +812,36 @@ public class HotelManager {
     * @param hotel The hotel object whose rooms are to be displayed.
     */
    public void displayRooms(Hotel hotel) {
-       int numberOfFloors = (hotel.getNumRooms() + 9) / 10;
+       Room[] rooms = hotel.getRooms();
 
        System.out.println("===== ALL ROOMS =====");
+       printRoomsByFloor(rooms, rooms.length, hotel.getNumFloors(), "No rooms on this floor");
+   }
+
+   /**
+    * Prints rooms grouped by floor, one line per floor.
+    * The rooms must be in floor order, as returned by {@link Hotel#getRooms()}.
+    *
+    * @param rooms The rooms to print, in floor order.
+    * @param count The number of rooms in the array to print.
+    * @param numberOfFloors The number of floors to print.
+    * @param emptyFloorMessage The message printed for a floor without rooms.
+    */
+   private void printRoomsByFloor(Room[] rooms, int count, int numberOfFloors, String emptyFloorMessage) {
+       int i = 0;
        for (int floor = 1; floor <= numberOfFloors; floor++) {
            System.out.print("Floor " + floor + ": ");
            boolean floorHasRooms = false;
-           for (int i = 0; i < hotel.getNumRooms(); i++) {
-               Room room = hotel.getRooms()[i];
-               if (room.getRoomNo() / 100 == floor) {
-                   System.out.print("Room " + room.getRoomNo() + " (" + getRoomType(room) + ") ");
-                   floorHasRooms = true;
-               }
+           while (i < count && rooms[i].getRoomNo() / 100 == floor) {
+               Room room = rooms[i];
+               System.out.print("Room " + room.getRoomNo() + " (" + getRoomType(room) + ") ");
+               floorHasRooms = true;
+               i++;
            }
            if (!floorHasRooms) {
-               System.out.print("No rooms on this floor");
+               System.out.print(emptyFloorMessage);
            }
            System.out.println(); // Move to the next line for the next floor
        }
    }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,180 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timers for one hotel's hot paths: searches, quotes, bookings,
+ * booking conflicts, cancellations and availability checks.
+ * Everything is recorded with striped adders and {@link LatencyHistogram}s,
+ * so recording takes no lock and allocates nothing, and threads booking
+ * different rooms do not contend on a shared counter. Gauges such as
+ * occupancy are not kept here but computed from the hotel when read, see
+ * {@link BookingMetrics}.
+ */
+public class HotelMetrics {
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder roomsScanned = new LongAdder();
+    private final LongAdder quotes = new LongAdder();
+    private final LongAdder bookings = new LongAdder();
+    private final LongAdder bookingConflicts = new LongAdder();
+    private final LongAdder cancellations = new LongAdder();
+    private final LongAdder availabilityChecks = new LongAdder();
+    private final LongAdder nightsBooked = new LongAdder();
+    private final LatencyHistogram searchLatency = new LatencyHistogram();
+    private final LatencyHistogram bookingLatency = new LatencyHistogram();
+    private final LatencyHistogram cancellationLatency = new LatencyHistogram();
+
+    /**
+     * Records a search for free rooms.
+     *
+     * @param roomSlots The number of room slots the search looked at.
+     * @param startNanos When the search started, from {@link System#nanoTime()}.
+     */
+    void recordSearch(int roomSlots, long startNanos) {
+        searchLatency.recordSince(startNanos);
+        searches.increment();
+        roomsScanned.add(roomSlots);
+    }
+
+    /**
+     * Records a quote for a stay.
+     */
+    void recordQuote() {
+        quotes.increment();
+    }
+
+    /**
+     * Records an attempt to add a reservation.
+     *
+     * @param booked True if the reservation was added, false if its room was taken.
+     * @param startNanos When the attempt started, from {@link System#nanoTime()}.
+     */
+    void recordBooking(boolean booked, long startNanos) {
+        bookingLatency.recordSince(startNanos);
+        (booked ? bookings : bookingConflicts).increment();
+    }
+
+    /**
+     * Records the removal of a reservation.
+     *
+     * @param startNanos When the removal started, from {@link System#nanoTime()}.
+     */
+    void recordCancellation(long startNanos) {
+        cancellationLatency.recordSince(startNanos);
+        cancellations.increment();
+    }
+
+    /**
+     * Records a check of whether a room is free.
+     */
+    void recordAvailabilityCheck() {
+        availabilityChecks.increment();
+    }
+
+    /**
+     * Records nights of a room being booked.
+     *
+     * @param nights The number of nights.
+     */
+    void recordNights(int nights) {
+        nightsBooked.add(nights);
+    }
+
+    /**
+     * Retrieves the number of searches for free rooms.
+     *
+     * @return The count.
+     */
+    public long getSearches() {
+        return searches.sum();
+    }
+
+    /**
+     * Retrieves the number of room slots looked at by all searches.
+     *
+     * @return The count.
+     */
+    public long getRoomsScanned() {
+        return roomsScanned.sum();
+    }
+
+    /**
+     * Retrieves the number of quotes for stays.
+     *
+     * @return The count.
+     */
+    public long getQuotes() {
+        return quotes.sum();
+    }
+
+    /**
+     * Retrieves the number of reservations added.
+     *
+     * @return The count.
+     */
+    public long getBookings() {
+        return bookings.sum();
+    }
+
+    /**
+     * Retrieves the number of reservations turned away because their room was already booked.
+     *
+     * @return The count.
+     */
+    public long getBookingConflicts() {
+        return bookingConflicts.sum();
+    }
+
+    /**
+     * Retrieves the number of reservations removed.
+     *
+     * @return The count.
+     */
+    public long getCancellations() {
+        return cancellations.sum();
+    }
+
+    /**
+     * Retrieves the number of checks of whether a room is free for a stay.
+     *
+     * @return The count.
+     */
+    public long getAvailabilityChecks() {
+        return availabilityChecks.sum();
+    }
+
+    /**
+     * Retrieves the number of room-nights booked, counting nights booked again after a cancellation.
+     *
+     * @return The count.
+     */
+    public long getNightsBooked() {
+        return nightsBooked.sum();
+    }
+
+    /**
+     * Retrieves the time taken by searches.
+     *
+     * @return The latency histogram.
+     */
+    public LatencyHistogram getSearchLatency() {
+        return searchLatency;
+    }
+
+    /**
+     * Retrieves the time taken to add reservations, successful or not.
+     *
+     * @return The latency histogram.
+     */
+    public LatencyHistogram getBookingLatency() {
+        return bookingLatency;
+    }
+
+    /**
+     * Retrieves the time taken to remove reservations.
+     *
+     * @return The latency histogram.
+     */
+    public LatencyHistogram getCancellationLatency() {
+        return cancellationLatency;
+    }
+}
@@ -0,0 +1,208 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal JSON support for the booking server and importers.
+ * Requests are flat objects whose values are strings, numbers, booleans or
+ * null, so only that subset is parsed; every value is returned as a string.
+ */
+public final class Json {
+
+    private static final Pattern NUMBER = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?");
+
+    private Json() {
+    }
+
+    /**
+     * Parses a flat JSON object.
+     *
+     * @param text The JSON text.
+     * @return The fields of the object, in document order. Null values are omitted.
+     * @throws IllegalArgumentException If the text is not a flat JSON object, alone but for whitespace.
+     */
+    public static Map<String, String> parseObject(String text) {
+        Parser parser = new Parser(text);
+        Map<String, String> fields = new LinkedHashMap<>();
+        parser.skipWhitespace();
+        parser.expect('{');
+        parser.skipWhitespace();
+        if (parser.peek() == '}') {
+            parser.pos++;
+            parser.expectEnd();
+            return fields;
+        }
+        while (true) {
+            parser.skipWhitespace();
+            String key = parser.readString();
+            parser.skipWhitespace();
+            parser.expect(':');
+            parser.skipWhitespace();
+            String value = parser.readValue();
+            if (value != null) {
+                fields.put(key, value);
+            }
+            parser.skipWhitespace();
+            char next = parser.next();
+            if (next == '}') {
+                parser.expectEnd();
+                return fields;
+            }
+            if (next != ',') {
+                throw new IllegalArgumentException("Expected ',' or '}' at position " + (parser.pos - 1));
+            }
+        }
+    }
+
+    /**
+     * Quotes and escapes a string for use as a JSON value.
+     *
+     * @param value The string.
+     * @return The JSON string literal, or the literal null if the value is null.
+     */
+    public static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder out = new StringBuilder(value.length() + 2);
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (ch < 0x20) {
+                        out.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        out.append(ch);
+                    }
+            }
+        }
+        return out.append('"').toString();
+    }
+
+    /**
+     * Cursor over the text being parsed.
+     */
+    private static class Parser {
+        private final String text;
+        private int pos;
+
+        private Parser(String text) {
+            this.text = text;
+        }
+
+        private char peek() {
+            if (pos >= text.length()) {
+                throw new IllegalArgumentException("Unexpected end of JSON");
+            }
+            return text.charAt(pos);
+        }
+
+        private char next() {
+            char ch = peek();
+            pos++;
+            return ch;
+        }
+
+        private void expect(char expected) {
+            if (next() != expected) {
+                throw new IllegalArgumentException("Expected '" + expected + "' at position " + (pos - 1));
+            }
+        }
+
+        private void expectEnd() {
+            skipWhitespace();
+            if (pos < text.length()) {
+                throw new IllegalArgumentException("Unexpected content after JSON object at position " + pos);
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private String readValue() {
+            char ch = peek();
+            if (ch == '"') {
+                return readString();
+            }
+            int start = pos;
+            while (pos < text.length() && ",}] \t\r\n".indexOf(text.charAt(pos)) < 0) {
+                pos++;
+            }
+            String literal = text.substring(start, pos);
+            if (ch == '{' || ch == '[') {
+                throw new IllegalArgumentException("Unsupported JSON value at position " + start);
+            }
+            if (!literal.equals("true") && !literal.equals("false") && !literal.equals("null")
+                    && !NUMBER.matcher(literal).matches()) {
+                throw new IllegalArgumentException("Invalid JSON value at position " + start);
+            }
+            return literal.equals("null") ? null : literal;
+        }
+
+        private String readString() {
+            expect('"');
+            StringBuilder out = new StringBuilder();
+            while (true) {
+                char ch = next();
+                if (ch == '"') {
+                    return out.toString();
+                }
+                if (ch != '\\') {
+                    out.append(ch);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case 'n':
+                        out.append('\n');
+                        break;
+                    case 'r':
+                        out.append('\r');
+                        break;
+                    case 't':
+                        out.append('\t');
+                        break;
+                    case 'b':
+                        out.append('\b');
+                        break;
+                    case 'f':
+                        out.append('\f');
+                        break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw new IllegalArgumentException("Unexpected end of JSON");
+                        }
+                        out.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    case '"':
+                    case '\\':
+                    case '/':
+                        out.append(escaped);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Invalid escape at position " + (pos - 2));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,550 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a synthetic mix of searches, quotes, bookings and cancellations
+ * against a {@link BookingService} from several threads, and reports the
+ * throughput and latency percentiles of each kind of operation.
+ *
+ * Traffic is either closed-loop, where each thread starts its next operation
+ * as soon as the last one finishes, or open-loop at a target rate, where
+ * operations are started on a fixed schedule whether or not the system keeps
+ * up. In open-loop runs latency is measured from when an operation was due
+ * rather than when it started, so a stall shows up in the percentiles of
+ * everything queued behind it instead of being hidden.
+ *
+ * Every operation can be recorded to a log and the log replayed later,
+ * with the same threads, arguments and (in open-loop runs) timing, so that
+ * two builds can be compared on exactly the same traffic.
+ *
+ * <pre>
+ * Options:
+ *   --hotels 2                hotels to create
+ *   --rooms 300,150,50        standard, deluxe and executive rooms per hotel
+ *   --fill 0.3                share of room-nights booked before the run
+ *   --horizon 90              days ahead that stays are drawn from
+ *   --threads 4               threads sending operations
+ *   --duration 30             seconds to run, after the warm-up
+ *   --warmup 5                seconds to run before measuring, or with --replay,
+ *                             seconds of the log to send before measuring
+ *   --rate 0                  operations per second over all threads, 0 for closed-loop
+ *   --mix search=50,quote=25,book=15,cancel=10
+ *                             relative weight of each operation
+ *   --seed 1                  seed for the random traffic
+ *   --record log.txt          write every operation to a log
+ *   --replay log.txt          send the operations in a log instead of random ones
+ *   --paced                   with --replay, send each operation when it was due in the log
+ * </pre>
+ *
+ * A log has one operation per line, each thread's operations in the order sent:
+ * <pre>
+ * thread startNanos kind hotel checkInOffset nights argument
+ * </pre>
+ * where startNanos is when the operation was due after the start of the run,
+ * checkInOffset is days after today, and the argument is the room type
+ * ordinal for search and book (-1 for any type), the room number for quote,
+ * and a selector for which of the thread's own reservations to cancel.
+ */
+public class LoadGenerator {
+
+    /**
+     * The kinds of operation sent.
+     */
+    private enum Kind { SEARCH, QUOTE, BOOK, CANCEL }
+
+    /**
+     * One operation, as sent or as read from a log.
+     */
+    private static class Operation {
+        private final int thread;
+        private final long startNanos;
+        private final Kind kind;
+        private final int hotel;
+        private final int checkInOffset;
+        private final int nights;
+        private final int argument;
+
+        private Operation(int thread, long startNanos, Kind kind, int hotel, int checkInOffset, int nights, int argument) {
+            this.thread = thread;
+            this.startNanos = startNanos;
+            this.kind = kind;
+            this.hotel = hotel;
+            this.checkInOffset = checkInOffset;
+            this.nights = nights;
+            this.argument = argument;
+        }
+
+        private String format() {
+            return thread + " " + startNanos + " " + kind.name().toLowerCase(Locale.ROOT) + " " + hotel + " "
+                    + checkInOffset + " " + nights + " " + argument;
+        }
+
+        private static Operation parse(String line) {
+            String[] fields = line.trim().split("\\s+");
+            if (fields.length != 7) {
+                throw new IllegalArgumentException("Invalid operation: " + line);
+            }
+            return new Operation(Integer.parseInt(fields[0]), Long.parseLong(fields[1]),
+                    Kind.valueOf(fields[2].toUpperCase(Locale.ROOT)), Integer.parseInt(fields[3]),
+                    Integer.parseInt(fields[4]), Integer.parseInt(fields[5]), Integer.parseInt(fields[6]));
+        }
+    }
+
+    private final BookingService service;
+    private final List<Hotel> hotels;
+    private final int today;
+    private final Map<Kind, LatencyHistogram> latencies;
+    private final LatencyHistogram allLatencies;
+    private final Map<ServiceStatus, LongAdder> bookingOutcomes;
+    private final LongAccumulator firstMeasured; // When the earliest measured operation began
+
+    /**
+     * Constructs a generator that sends operations to the given hotels.
+     *
+     * @param service The service the hotels belong to.
+     * @param hotels The hotels, in the order logs refer to them by.
+     */
+    public LoadGenerator(BookingService service, List<Hotel> hotels) {
+        this.service = service;
+        this.hotels = hotels;
+        this.today = HotelCalendar.today();
+        this.latencies = new EnumMap<>(Kind.class);
+        for (Kind kind : Kind.values()) {
+            latencies.put(kind, new LatencyHistogram());
+        }
+        this.allLatencies = new LatencyHistogram();
+        this.bookingOutcomes = new EnumMap<>(ServiceStatus.class);
+        for (ServiceStatus status : ServiceStatus.values()) {
+            bookingOutcomes.put(status, new LongAdder());
+        }
+        this.firstMeasured = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    }
+
+    /**
+     * Books a share of each room's nights in a horizon, in stays of one to four nights.
+     *
+     * @param fill The share of room-nights to book, between 0 and 1.
+     * @param horizon The number of days ahead to book in.
+     * @param seed The seed for the stays.
+     */
+    public void fill(double fill, int horizon, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int end = Math.min(today + horizon, HotelCalendar.lastCheckOut());
+        long guest = 0;
+        for (Hotel hotel : hotels) {
+            List<BookingRequest> requests = new ArrayList<>();
+            for (Room room : hotel.getRooms()) {
+                for (int day = today; day < end; ) {
+                    int nights = Math.min(1 + random.nextInt(4), end - day);
+                    if (random.nextDouble() < fill) {
+                        requests.add(new BookingRequest("Guest " + guest++, day, day + nights, room.getRoomNo(), null, ""));
+                    }
+                    day += nights;
+                }
+            }
+            service.reserveBatch(hotel, requests);
+        }
+    }
+
+    /**
+     * Generates random operations from several threads for a time and sends them.
+     *
+     * @param threads The number of threads.
+     * @param warmupNanos How long to send operations before measuring.
+     * @param durationNanos How long to measure after the warm-up.
+     * @param rate The operations per second over all threads, or 0 for closed-loop.
+     * @param weights The relative weight of each kind of operation, indexed by ordinal.
+     * @param horizon The number of days ahead that stays are drawn from.
+     * @param seed The seed for the random traffic.
+     * @param record The log to write the operations sent to, or null.
+     * @return The measured time in nanoseconds.
+     * @throws IOException If the log cannot be written.
+     * @throws InterruptedException If interrupted while waiting for the threads.
+     */
+    private long run(int threads, long warmupNanos, long durationNanos, double rate, int[] weights, int horizon,
+                    long seed, Path record) throws IOException, InterruptedException {
+        int totalWeight = 0;
+        for (int weight : weights) {
+            totalWeight += weight;
+        }
+        int maxCheckIn = Math.max(Math.min(horizon, HotelCalendar.lastCheckOut() - today) - 1, 1);
+        long interval = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) * threads / rate) : 0;
+        long runNanos = warmupNanos + durationNanos;
+        Thread[] workers = new Thread[threads];
+        // Each thread writes its own part of the log as it goes, joined up at the end
+        BufferedWriter[] logs = new BufferedWriter[threads];
+        IOException[] logFailures = new IOException[threads];
+        long measured;
+        try {
+            for (int t = 0; t < threads && record != null; t++) {
+                logs[t] = Files.newBufferedWriter(logPart(record, t), StandardCharsets.UTF_8);
+            }
+            long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                int total = totalWeight;
+                workers[t] = new Thread(() -> {
+                    SplittableRandom random = new SplittableRandom(seed * 31 + thread);
+                    BufferedWriter log = logs[thread];
+                    List<Reservation> booked = new ArrayList<>();
+                    List<Hotel> bookedIn = new ArrayList<>();
+                    LockSupport.parkNanos(start - System.nanoTime()); // Start all threads together
+                    long due = 0;
+                    while (due < runNanos) {
+                        int pick = random.nextInt(total);
+                        int k = 0;
+                        while (pick >= weights[k]) {
+                            pick -= weights[k++];
+                        }
+                        Kind kind = Kind.values()[k];
+                        int hotel = random.nextInt(hotels.size());
+                        int nights = 1 + random.nextInt(Math.min(7, maxCheckIn));
+                        int checkInOffset = random.nextInt(Math.max(maxCheckIn - nights, 1));
+                        int argument;
+                        if (kind == Kind.QUOTE) {
+                            Room[] rooms = hotels.get(hotel).getRooms();
+                            argument = rooms.length == 0 ? 0 : rooms[random.nextInt(rooms.length)].getRoomNo();
+                        } else if (kind == Kind.CANCEL) {
+                            argument = random.nextInt(Integer.MAX_VALUE);
+                        } else {
+                            argument = random.nextInt(RoomType.values().length + 1) - 1;
+                        }
+                        if (interval == 0) {
+                            due = System.nanoTime() - start;
+                        }
+                        Operation operation = new Operation(thread, due, kind, hotel, checkInOffset, nights, argument);
+                        send(operation, start, interval != 0, warmupNanos, booked, bookedIn);
+                        if (log != null) {
+                            try {
+                                log.write(operation.format());
+                                log.newLine();
+                            } catch (IOException e) {
+                                logFailures[thread] = e;
+                                log = null; // Keeps the load going, the run fails at the end
+                            }
+                        }
+                        if (interval != 0) {
+                            due += interval;
+                        }
+                    }
+                }, "load-" + t);
+            }
+            measured = runThreads(workers, start);
+        } finally {
+            for (BufferedWriter log : logs) {
+                if (log != null) {
+                    log.close();
+                }
+            }
+        }
+        for (IOException failure : logFailures) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+        if (record != null) {
+            try (OutputStream out = Files.newOutputStream(record)) {
+                for (int t = 0; t < threads; t++) {
+                    Files.copy(logPart(record, t), out);
+                    Files.delete(logPart(record, t));
+                }
+            }
+        }
+        return measured;
+    }
+
+    /**
+     * Retrieves the file a thread writes its part of a log to while running.
+     *
+     * @param record The log.
+     * @param thread The thread.
+     * @return The file next to the log, named after it and the thread.
+     */
+    private static Path logPart(Path record, int thread) {
+        return record.resolveSibling(record.getFileName() + "." + thread);
+    }
+
+    /**
+     * Sends the operations in a log, each thread's in order from its own thread.
+     *
+     * @param operations The operations, in log order.
+     * @param paced True to send each operation when it was due in the log, false to send them as fast as possible.
+     * @param warmupNanos How far into the log operations start being measured.
+     * @return The measured time in nanoseconds.
+     * @throws InterruptedException If interrupted while waiting for the threads.
+     */
+    private long replay(List<Operation> operations, boolean paced, long warmupNanos) throws InterruptedException {
+        int threads = 0;
+        for (Operation operation : operations) {
+            threads = Math.max(threads, operation.thread + 1);
+        }
+        List<List<Operation>> byThread = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            byThread.add(new ArrayList<>());
+        }
+        for (Operation operation : operations) {
+            byThread.get(operation.thread).add(operation);
+        }
+        Thread[] workers = new Thread[threads];
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+        for (int t = 0; t < threads; t++) {
+            List<Operation> mine = byThread.get(t);
+            workers[t] = new Thread(() -> {
+                List<Reservation> booked = new ArrayList<>();
+                List<Hotel> bookedIn = new ArrayList<>();
+                for (Operation operation : mine) {
+                    send(operation, start, paced, warmupNanos, booked, bookedIn);
+                }
+            }, "replay-" + t);
+        }
+        return runThreads(workers, start);
+    }
+
+    /**
+     * Starts worker threads and waits for them all.
+     *
+     * @return The time from when the earliest measured operation began until the threads finished.
+     */
+    private long runThreads(Thread[] workers, long start) throws InterruptedException {
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long end = System.nanoTime();
+        long from = firstMeasured.get();
+        return end - (from == Long.MAX_VALUE ? start : from); // Nothing measured if the warm-up outlasted the run
+    }
+
+    /**
+     * Sends one operation, waiting until it is due if paced, and records its latency
+     * if it was due after the warm-up. Going by when it was due rather than by the clock
+     * measures a replayed log from the same operation however fast it is sent.
+     * Reservations the thread made are kept, with their hotels, for its cancellations to pick from.
+     */
+    private void send(Operation operation, long start, boolean paced, long warmupNanos,
+                      List<Reservation> booked, List<Hotel> bookedIn) {
+        long begin;
+        if (paced) {
+            begin = start + operation.startNanos;
+            long wait = begin - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        } else {
+            begin = System.nanoTime();
+        }
+        boolean measuring = operation.startNanos >= warmupNanos;
+        if (measuring) {
+            firstMeasured.accumulate(begin);
+        }
+
+        Hotel hotel = hotels.get(operation.hotel);
+        int checkIn = today + operation.checkInOffset;
+        int checkOut = checkIn + operation.nights;
+        RoomType type = operation.argument < 0 || operation.argument >= RoomType.values().length
+                ? null : RoomType.values()[operation.argument];
+        switch (operation.kind) {
+            case SEARCH:
+                hotel.countFreeRooms(checkIn, checkOut, type);
+                break;
+            case QUOTE:
+                Room room = hotel.findRoom(operation.argument);
+                if (room != null) {
+                    room.quote(checkIn, checkOut);
+                }
+                break;
+            case BOOK:
+                String discountCode = operation.checkInOffset % 10 == 0 ? BookingService.DISCOUNT_I_WORK_HERE : "";
+                ServiceResult<Reservation> result = service.reserve(hotel,
+                        "Guest " + operation.thread + "-" + operation.startNanos, checkIn, checkOut, type, discountCode);
+                if (result.isOk()) {
+                    booked.add(result.getValue());
+                    bookedIn.add(hotel);
+                }
+                if (measuring) {
+                    bookingOutcomes.get(result.getStatus()).increment();
+                }
+                break;
+            case CANCEL:
+                if (!booked.isEmpty()) {
+                    int at = operation.argument % booked.size();
+                    int last = booked.size() - 1;
+                    service.cancelReservation(bookedIn.get(at), booked.get(at));
+                    booked.set(at, booked.get(last));
+                    bookedIn.set(at, bookedIn.get(last));
+                    booked.remove(last);
+                    bookedIn.remove(last);
+                }
+                break;
+        }
+
+        if (measuring) {
+            long latency = System.nanoTime() - begin;
+            latencies.get(operation.kind).record(latency);
+            allLatencies.record(latency);
+        }
+    }
+
+    /**
+     * Formats the throughput and latency of each kind of operation as a table.
+     *
+     * @param measuredNanos The measured time in nanoseconds.
+     * @return The report.
+     */
+    public String report(long measuredNanos) {
+        double seconds = measuredNanos / 1e9;
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "%-8s %10s %10s %10s %10s %10s %10s%n",
+                "Op", "Count", "Ops/s", "p50 us", "p99 us", "p999 us", "Max us"));
+        for (Kind kind : Kind.values()) {
+            row(out, kind.name().toLowerCase(Locale.ROOT), latencies.get(kind), seconds);
+        }
+        row(out, "all", allLatencies, seconds);
+        out.append("Bookings:");
+        for (Map.Entry<ServiceStatus, LongAdder> outcome : bookingOutcomes.entrySet()) {
+            long count = outcome.getValue().sum();
+            if (count > 0) {
+                out.append(' ').append(outcome.getKey()).append('=').append(count);
+            }
+        }
+        return out.append(String.format("%n")).toString();
+    }
+
+    private static void row(StringBuilder out, String name, LatencyHistogram histogram, double seconds) {
+        out.append(String.format(Locale.ROOT, "%-8s %10d %10.0f %10.1f %10.1f %10.1f %10.1f%n", name,
+                histogram.getCount(), histogram.getCount() / seconds, histogram.getPercentile(50) / 1000.0,
+                histogram.getPercentile(99) / 1000.0, histogram.getPercentile(99.9) / 1000.0,
+                histogram.getMaxNanos() / 1000.0));
+    }
+
+    /**
+     * Builds the hotels and runs or replays the load described by the options.
+     *
+     * @param args The options, see the class description.
+     * @throws IOException If a log cannot be read or written.
+     * @throws InterruptedException If interrupted while waiting for the threads.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int hotelCount = 2;
+        int[] rooms = {300, 150, 50};
+        double fill = 0.3;
+        int horizon = 90;
+        int threads = 4;
+        long duration = 30;
+        long warmup = 5;
+        double rate = 0;
+        int[] weights = {50, 25, 15, 10};
+        long seed = 1;
+        String recordFile = null;
+        String replayFile = null;
+        boolean paced = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--hotels":
+                    hotelCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--rooms":
+                    String[] counts = args[++i].split(",");
+                    if (counts.length != 3) {
+                        throw new IllegalArgumentException("Expected standard,deluxe,executive room counts: " + args[i]);
+                    }
+                    for (int j = 0; j < 3; j++) {
+                        rooms[j] = Integer.parseInt(counts[j]);
+                    }
+                    break;
+                case "--fill":
+                    fill = Double.parseDouble(args[++i]);
+                    break;
+                case "--horizon":
+                    horizon = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--duration":
+                    duration = Long.parseLong(args[++i]);
+                    break;
+                case "--warmup":
+                    warmup = Long.parseLong(args[++i]);
+                    break;
+                case "--rate":
+                    rate = Double.parseDouble(args[++i]);
+                    break;
+                case "--mix":
+                    weights = new int[Kind.values().length];
+                    for (String part : args[++i].split(",")) {
+                        String[] weight = part.split("=");
+                        weights[Kind.valueOf(weight[0].trim().toUpperCase(Locale.ROOT)).ordinal()] = Integer.parseInt(weight[1].trim());
+                    }
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--record":
+                    recordFile = args[++i];
+                    break;
+                case "--replay":
+                    replayFile = args[++i];
+                    break;
+                case "--paced":
+                    paced = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        BookingService service = new BookingService();
+        List<Hotel> hotels = new ArrayList<>();
+        for (int i = 0; i < hotelCount; i++) {
+            ServiceResult<Hotel> hotel = service.createHotel("Load " + (i + 1), rooms[0], rooms[1], rooms[2]);
+            if (!hotel.isOk()) {
+                throw new IllegalArgumentException("Cannot create hotel: " + hotel.getStatus());
+            }
+            hotels.add(hotel.getValue());
+        }
+        LoadGenerator generator = new LoadGenerator(service, hotels);
+        generator.fill(fill, horizon, seed);
+
+        long measured;
+        if (replayFile != null) {
+            List<Operation> operations = new ArrayList<>();
+            try (BufferedReader reader = Files.newBufferedReader(Paths.get(replayFile), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        operations.add(Operation.parse(line));
+                    }
+                }
+            }
+            for (Operation operation : operations) {
+                if (operation.hotel >= hotelCount) {
+                    throw new IllegalArgumentException("Log refers to hotel " + operation.hotel + " of " + hotelCount);
+                }
+            }
+            measured = generator.replay(operations, paced, TimeUnit.SECONDS.toNanos(warmup));
+        } else {
+            measured = generator.run(threads, TimeUnit.SECONDS.toNanos(warmup), TimeUnit.SECONDS.toNanos(duration),
+                    rate, weights, horizon, seed, recordFile == null ? null : Paths.get(recordFile));
+        }
+        System.out.print(generator.report(measured));
+    }
+}
@@ -0,0 +1,159 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Room calendar kept in a fixed-size record of a {@link RoomCalendarFile}.
+ * The record holds the same ring of pages as {@link HeapRoomCalendar}, laid
+ * out as:
+ * <pre>
+ * per page (144 bytes): int pageNo | int flags | int bookedBits | int[32] modifiers | padding
+ * </pre>
+ * Reads and writes go straight to the mapped memory, so the calendar adds
+ * nothing to the Java heap beyond this object and the operating system
+ * decides which records stay resident.
+ */
+public class MappedRoomCalendar extends RoomCalendar {
+
+    /** Size of one room's record in bytes. */
+    public static final int RECORD_SIZE = PAGE_SLOTS * 144;
+
+    private static final int PAGE_SIZE = 144;
+    private static final int PAGE_NO = 0;
+    private static final int FLAGS = 4;
+    private static final int BOOKED = 8;
+    private static final int MODIFIERS = 12;
+    private static final int IN_USE = 1;
+    private static final int HAS_MODIFIERS = 2;
+
+    private final ByteBuffer record;
+
+    /**
+     * Constructs a calendar over a record and clears it.
+     *
+     * @param record The room's record, exactly {@link #RECORD_SIZE} bytes.
+     */
+    public MappedRoomCalendar(ByteBuffer record) {
+        this.record = record;
+        for (int slot = 0; slot < PAGE_SLOTS; slot++) {
+            record.putInt(slot * PAGE_SIZE + FLAGS, 0);
+        }
+    }
+
+    @Override
+    public boolean isAvailable(int day) {
+        int page = peek(day >> PAGE_SHIFT);
+        return page < 0 || (record.getInt(page + BOOKED) & (1 << (day & (PAGE_DAYS - 1)))) == 0;
+    }
+
+    @Override
+    public boolean isFree(int checkIn, int checkOut) {
+        for (int day = checkIn; day < checkOut; day = nextPageStart(day)) {
+            int page = peek(day >> PAGE_SHIFT);
+            if (page >= 0 && (record.getInt(page + BOOKED) & pageMask(day, checkOut)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void book(int checkIn, int checkOut) {
+        for (int day = checkIn; day < checkOut; day = nextPageStart(day)) {
+            int page = page(day >> PAGE_SHIFT);
+            record.putInt(page + BOOKED, record.getInt(page + BOOKED) | pageMask(day, checkOut));
+        }
+    }
+
+    @Override
+    public void cancel(int checkIn, int checkOut) {
+        for (int day = checkIn; day < checkOut; day = nextPageStart(day)) {
+            int page = peek(day >> PAGE_SHIFT);
+            if (page >= 0) {
+                record.putInt(page + BOOKED, record.getInt(page + BOOKED) & ~pageMask(day, checkOut));
+            }
+        }
+    }
+
+    @Override
+    public boolean hasBookings() {
+        for (int slot = 0; slot < PAGE_SLOTS; slot++) {
+            int page = slot * PAGE_SIZE;
+            if ((record.getInt(page + FLAGS) & IN_USE) != 0 && record.getInt(page + BOOKED) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (int slot = 0; slot < PAGE_SLOTS; slot++) {
+            if ((record.getInt(slot * PAGE_SIZE + FLAGS) & IN_USE) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int getModifier(int day) {
+        int page = peek(day >> PAGE_SHIFT);
+        if (page < 0 || (record.getInt(page + FLAGS) & HAS_MODIFIERS) == 0) {
+            return Money.ONE;
+        }
+        return record.getInt(page + MODIFIERS + 4 * (day & (PAGE_DAYS - 1)));
+    }
+
+    @Override
+    public void setModifier(int day, int modifier) {
+        if (modifier == Money.ONE && getModifier(day) == Money.ONE) {
+            return; // Nothing to store
+        }
+        int page = page(day >> PAGE_SHIFT);
+        int flags = record.getInt(page + FLAGS);
+        if ((flags & HAS_MODIFIERS) == 0) {
+            for (int i = 0; i < PAGE_DAYS; i++) {
+                record.putInt(page + MODIFIERS + 4 * i, Money.ONE);
+            }
+            record.putInt(page + FLAGS, flags | HAS_MODIFIERS);
+        }
+        record.putInt(page + MODIFIERS + 4 * (day & (PAGE_DAYS - 1)), modifier);
+    }
+
+    /**
+     * Finds the page with the given number without claiming it.
+     *
+     * @param pageNo The page number (epoch day / 32).
+     * @return The offset of the page in the record, or -1 if nothing has been written to it.
+     */
+    private int peek(int pageNo) {
+        int page = (pageNo & (PAGE_SLOTS - 1)) * PAGE_SIZE;
+        if ((record.getInt(page + FLAGS) & IN_USE) == 0 || record.getInt(page + PAGE_NO) != pageNo) {
+            return -1;
+        }
+        return page;
+    }
+
+    /**
+     * Finds the page with the given number, claiming its slot or recycling an
+     * older page in the same slot if needed.
+     *
+     * @param pageNo The page number (epoch day / 32).
+     * @return The offset of the page in the record.
+     */
+    private int page(int pageNo) {
+        int page = (pageNo & (PAGE_SLOTS - 1)) * PAGE_SIZE;
+        boolean inUse = (record.getInt(page + FLAGS) & IN_USE) != 0;
+        int current = record.getInt(page + PAGE_NO);
+        if (inUse && current == pageNo) {
+            return page;
+        }
+        if (inUse && current > pageNo) {
+            throw new IllegalArgumentException("Day is outside the calendar horizon: " + (pageNo << PAGE_SHIFT));
+        }
+        // Empty, or the old page has rolled out of the horizon
+        record.putInt(page + PAGE_NO, pageNo);
+        record.putInt(page + BOOKED, 0);
+        record.putInt(page + FLAGS, IN_USE);
+        return page;
+    }
+}
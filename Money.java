@@ -0,0 +1,66 @@
+/**
+ * Exact arithmetic on amounts of money and price rates.
+ *
+ * An amount is a whole number of centavos held in a {@code long}, and a rate
+ * (a price modifier, a room type surcharge or a discount) is a whole number
+ * of basis points held in an {@code int}, {@link #ONE} being 100%. Amounts
+ * stay primitives rather than objects, so adding up the prices of millions of
+ * reservations allocates nothing, and sums and differences are exact: earnings
+ * return to the same value after a booking is cancelled. Only multiplying by
+ * a rate rounds, once, to the nearest centavo.
+ */
+public final class Money {
+
+    /** Centavos in one peso. */
+    public static final long CENTAVOS_PER_PESO = 100;
+    /** The rate that leaves an amount unchanged, 100% in basis points. */
+    public static final int ONE = 10_000;
+
+    private Money() {
+    }
+
+    /**
+     * Converts an amount in pesos, such as one typed in by a user, to centavos.
+     *
+     * @param pesos The amount in pesos.
+     * @return The amount in centavos, rounded to the nearest centavo.
+     */
+    public static long ofPesos(double pesos) {
+        return Math.round(pesos * CENTAVOS_PER_PESO);
+    }
+
+    /**
+     * Converts a multiplier, such as 1.1 for 110%, to a rate in basis points.
+     *
+     * @param multiplier The multiplier.
+     * @return The rate, rounded to the nearest basis point.
+     */
+    public static int rate(double multiplier) {
+        return (int) Math.round(multiplier * ONE);
+    }
+
+    /**
+     * Multiplies an amount by a rate, rounding half away from zero to the nearest centavo.
+     * The rate may be a sum of rates, for instance the modifiers of every night of a stay.
+     *
+     * @param amount The amount in centavos.
+     * @param rate The rate in basis points.
+     * @return The product in centavos.
+     * @throws ArithmeticException If the product overflows.
+     */
+    public static long times(long amount, long rate) {
+        long product = Math.multiplyExact(amount, rate);
+        return product >= 0 ? (product + ONE / 2) / ONE : -((ONE / 2 - product) / ONE);
+    }
+
+    /**
+     * Formats an amount in pesos with two decimal places, for example {@code 1229.00}.
+     *
+     * @param amount The amount in centavos.
+     * @return The formatted amount.
+     */
+    public static String format(long amount) {
+        long centavos = Math.abs(amount % CENTAVOS_PER_PESO);
+        return (amount < 0 ? "-" : "") + Math.abs(amount / CENTAVOS_PER_PESO) + (centavos < 10 ? ".0" : ".") + centavos;
+    }
+}
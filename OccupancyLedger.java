@@ -0,0 +1,307 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Running per-day totals of a hotel's booked room-nights and revenue, by room type.
+ *
+ * Every reservation added to or removed from the hotel updates the totals of
+ * the nights of its stay, and its price is spread evenly over those nights.
+ * For each room type the ledger keeps the per-day totals in a pair of
+ * Fenwick trees that support adding a value to a range of days and summing
+ * any range of days, each in O(log n). Reports for any date range therefore
+ * cost a handful of array reads however many rooms and reservations the
+ * hotel has, and never rescan rooms.
+ *
+ * Like {@link PriceIndex}, the ledger covers a window of days starting a
+ * little before today, and nights outside it are not counted. The trees are
+ * updated with atomic adds under the read side of a lock, so bookings on
+ * different threads never wait on each other; the write side is only taken
+ * to move the window forward. Reports take no lock and may see a booking
+ * on some of its nights but not yet on others.
+ */
+public class OccupancyLedger {
+
+    private static final int WINDOW_DAYS = 1024; // Covers the booking horizon with room to roll forward
+    private static final int PAST_DAYS = 32; // Days kept before today when the window is moved
+    private static final VarHandle TREE = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private volatile int origin; // Epoch day of the first day in the window
+    private final RangeTree[] nights; // Booked room-nights, by room type ordinal
+    private final RangeTree[] revenue; // Revenue in centavos, by room type ordinal
+    private final AtomicIntegerArray rooms; // Rooms in the hotel, by room type ordinal
+    private final ReentrantReadWriteLock window;
+
+    /**
+     * Per-day values over the window, with range updates and range sums.
+     * Two Fenwick trees hold the differences of the values and their
+     * index-weighted differences; the sum of the first k values is
+     * {@code k * sum(slopes, k) - sum(offsets, k)}.
+     */
+    private static class RangeTree {
+        private final long[] slopes = new long[WINDOW_DAYS + 1];
+        private final long[] offsets = new long[WINDOW_DAYS + 1];
+
+        /**
+         * Adds a value to every day from one offset up to, but not including, another.
+         */
+        private void add(int from, int to, long value) {
+            point(from, value);
+            point(to, -value);
+        }
+
+        private void point(int at, long value) {
+            for (int i = at + 1; i <= WINDOW_DAYS; i += i & -i) {
+                TREE.getAndAdd(slopes, i, value);
+                TREE.getAndAdd(offsets, i, value * at);
+            }
+        }
+
+        /**
+         * Sums the values of the days from one offset up to, but not including, another.
+         */
+        private long sum(int from, int to) {
+            return prefix(to) - prefix(from);
+        }
+
+        private long prefix(int count) {
+            long slope = 0;
+            long offset = 0;
+            for (int i = count; i > 0; i -= i & -i) {
+                slope += (long) TREE.getOpaque(slopes, i);
+                offset += (long) TREE.getOpaque(offsets, i);
+            }
+            return slope * count - offset;
+        }
+
+        private void clear() {
+            for (int i = 0; i <= WINDOW_DAYS; i++) {
+                slopes[i] = 0;
+                offsets[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Constructs an empty ledger.
+     */
+    public OccupancyLedger() {
+        int types = RoomType.values().length;
+        this.origin = HotelCalendar.today() - PAST_DAYS;
+        this.nights = new RangeTree[types];
+        this.revenue = new RangeTree[types];
+        for (int t = 0; t < types; t++) {
+            nights[t] = new RangeTree();
+            revenue[t] = new RangeTree();
+        }
+        this.rooms = new AtomicIntegerArray(types);
+        this.window = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Records that a room of a type joined or left the hotel.
+     *
+     * @param type The room's type.
+     * @param change 1 when the room joined, -1 when it left.
+     */
+    public void addRooms(RoomType type, int change) {
+        rooms.addAndGet(type.ordinal(), change);
+    }
+
+    /**
+     * Adds a reservation's nights and price to the totals.
+     *
+     * @param reservation The reservation added to the hotel.
+     */
+    public void add(Reservation reservation) {
+        update(reservation, 1);
+    }
+
+    /**
+     * Adds a stay's nights and price to the totals, such as for a stay loaded into a {@link ReservationHistory}.
+     *
+     * @param type The type of the room stayed in.
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @param totalPrice The price of the stay, in centavos.
+     */
+    public void add(RoomType type, int checkIn, int checkOut, long totalPrice) {
+        update(type, checkIn, checkOut, totalPrice, 1);
+    }
+
+    /**
+     * Takes a reservation's nights and price off the totals.
+     *
+     * @param reservation The reservation removed from the hotel.
+     */
+    public void remove(Reservation reservation) {
+        update(reservation, -1);
+    }
+
+    /**
+     * Adds or takes off a reservation, moving the window forward first if its last night lies beyond it.
+     * The price is split into equal whole centavos per night with the remainder on the first night.
+     */
+    private void update(Reservation reservation, int sign) {
+        update(reservation.getRoom().getType(), reservation.getCheckIn(), reservation.getCheckOut(),
+                reservation.getTotalPrice(), sign);
+    }
+
+    private void update(RoomType roomType, int checkIn, int checkOut, long totalPrice, int sign) {
+        if (checkOut - 1 - origin >= WINDOW_DAYS) {
+            roll(checkOut - 1);
+        }
+        int type = roomType.ordinal();
+        long stayNights = checkOut - checkIn;
+        long perNight = totalPrice / stayNights;
+        long firstNight = perNight + totalPrice % stayNights;
+        window.readLock().lock();
+        try {
+            int from = Math.max(checkIn - origin, 0);
+            int to = Math.min(checkOut - origin, WINDOW_DAYS);
+            if (from >= to) {
+                return; // Entirely outside the window
+            }
+            nights[type].add(from, to, sign);
+            revenue[type].add(from, to, sign * perNight);
+            if (from == checkIn - origin) {
+                revenue[type].add(from, from + 1, sign * (firstNight - perNight));
+            }
+        } finally {
+            window.readLock().unlock();
+        }
+    }
+
+    /**
+     * Moves the window forward so that it ends on or after a day, carrying over the totals of the days kept.
+     */
+    private void roll(int lastDay) {
+        window.writeLock().lock();
+        try {
+            int oldOrigin = origin;
+            if (lastDay - oldOrigin < WINDOW_DAYS) {
+                return; // Already moved by another thread
+            }
+            int newOrigin = Math.max(HotelCalendar.today() - PAST_DAYS, lastDay - WINDOW_DAYS + 1);
+            int shift = newOrigin - oldOrigin;
+            for (RangeTree[] trees : new RangeTree[][] {nights, revenue}) {
+                for (RangeTree tree : trees) {
+                    long[] kept = new long[WINDOW_DAYS];
+                    for (int i = shift; i < WINDOW_DAYS; i++) {
+                        kept[i - shift] = tree.sum(i, i + 1);
+                    }
+                    tree.clear();
+                    for (int i = 0; i < WINDOW_DAYS - shift; i++) {
+                        if (kept[i] != 0) {
+                            tree.add(i, i + 1, kept[i]);
+                        }
+                    }
+                }
+            }
+            origin = newOrigin;
+        } finally {
+            window.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the rooms of a type booked on a night.
+     *
+     * @param day The night as an epoch day.
+     * @param type The room type, or null for every type.
+     * @return The number of rooms booked.
+     */
+    public long roomsBooked(int day, RoomType type) {
+        return bookedNights(day, day + 1, type);
+    }
+
+    /**
+     * Counts the room-nights of a type booked over a range of nights.
+     *
+     * @param from The first night as an epoch day.
+     * @param to The night after the last, as an epoch day.
+     * @param type The room type, or null for every type.
+     * @return The number of booked room-nights.
+     */
+    public long bookedNights(int from, int to, RoomType type) {
+        return sum(nights, from, to, type);
+    }
+
+    /**
+     * Adds up the revenue of the room-nights of a type booked over a range of nights.
+     *
+     * @param from The first night as an epoch day.
+     * @param to The night after the last, as an epoch day.
+     * @param type The room type, or null for every type.
+     * @return The revenue, in centavos.
+     */
+    public long revenue(int from, int to, RoomType type) {
+        return sum(revenue, from, to, type);
+    }
+
+    /**
+     * Counts the rooms of a type in the hotel.
+     *
+     * @param type The room type, or null for every type.
+     * @return The number of rooms.
+     */
+    public int rooms(RoomType type) {
+        if (type != null) {
+            return rooms.get(type.ordinal());
+        }
+        int total = 0;
+        for (int t = 0; t < rooms.length(); t++) {
+            total += rooms.get(t);
+        }
+        return total;
+    }
+
+    /**
+     * Reports occupancy and revenue over a range of nights.
+     *
+     * @param from The first night as an epoch day.
+     * @param to The night after the last, as an epoch day.
+     * @param type The room type, or null for every type.
+     * @return The report.
+     */
+    public OccupancyReport report(int from, int to, RoomType type) {
+        return new OccupancyReport(from, to, type, (long) rooms(type) * Math.max(to - from, 0),
+                bookedNights(from, to, type), revenue(from, to, type));
+    }
+
+    /**
+     * Reports occupancy and revenue for each night of a range.
+     *
+     * @param from The first night as an epoch day.
+     * @param to The night after the last, as an epoch day.
+     * @param type The room type, or null for every type.
+     * @return One report per night, in date order.
+     */
+    public List<OccupancyReport> dailyReports(int from, int to, RoomType type) {
+        List<OccupancyReport> reports = new ArrayList<>(Math.max(to - from, 0));
+        for (int day = from; day < to; day++) {
+            reports.add(report(day, day + 1, type));
+        }
+        return reports;
+    }
+
+    private long sum(RangeTree[] trees, int from, int to, RoomType type) {
+        int start = origin;
+        int first = Math.max(from - start, 0);
+        int last = Math.min(to - start, WINDOW_DAYS);
+        if (first >= last) {
+            return 0;
+        }
+        if (type != null) {
+            return trees[type.ordinal()].sum(first, last);
+        }
+        long total = 0;
+        for (RangeTree tree : trees) {
+            total += tree.sum(first, last);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Occupancy and revenue of a hotel over a range of nights, see {@link OccupancyLedger}.
+ * Room-nights available are the hotel's current rooms times the number of nights.
+ */
+public class OccupancyReport {
+
+    private final int from;
+    private final int to;
+    private final RoomType type;
+    private final long availableNights;
+    private final long bookedNights;
+    private final long revenue;
+
+    /**
+     * Constructs a report.
+     *
+     * @param from The first night as an epoch day.
+     * @param to The night after the last, as an epoch day.
+     * @param type The room type reported on, or null for every type.
+     * @param availableNights The number of room-nights the hotel could sell.
+     * @param bookedNights The number of room-nights booked.
+     * @param revenue The revenue of the booked room-nights, in centavos.
+     */
+    public OccupancyReport(int from, int to, RoomType type, long availableNights, long bookedNights, long revenue) {
+        this.from = from;
+        this.to = to;
+        this.type = type;
+        this.availableNights = availableNights;
+        this.bookedNights = bookedNights;
+        this.revenue = revenue;
+    }
+
+    /**
+     * Retrieves the first night reported on.
+     *
+     * @return The night as an epoch day.
+     */
+    public int getFrom() {
+        return from;
+    }
+
+    /**
+     * Retrieves the night after the last night reported on.
+     *
+     * @return The night as an epoch day.
+     */
+    public int getTo() {
+        return to;
+    }
+
+    /**
+     * Retrieves the room type reported on.
+     *
+     * @return The room type, or null for every type.
+     */
+    public RoomType getType() {
+        return type;
+    }
+
+    /**
+     * Retrieves the number of room-nights the hotel could sell.
+     *
+     * @return The number of room-nights.
+     */
+    public long getAvailableNights() {
+        return availableNights;
+    }
+
+    /**
+     * Retrieves the number of room-nights booked.
+     *
+     * @return The number of room-nights.
+     */
+    public long getBookedNights() {
+        return bookedNights;
+    }
+
+    /**
+     * Retrieves the revenue of the booked room-nights.
+     *
+     * @return The revenue, in centavos.
+     */
+    public long getRevenue() {
+        return revenue;
+    }
+
+    /**
+     * Retrieves the share of room-nights booked.
+     *
+     * @return The occupancy between 0 and 1, or 0 if there were no rooms.
+     */
+    public double getOccupancy() {
+        return availableNights == 0 ? 0 : (double) bookedNights / availableNights;
+    }
+
+    /**
+     * Retrieves the average daily rate: revenue per booked room-night.
+     *
+     * @return The ADR in centavos, rounded, or 0 if nothing was booked.
+     */
+    public long getAverageDailyRate() {
+        return bookedNights == 0 ? 0 : Math.round((double) revenue / bookedNights);
+    }
+
+    /**
+     * Retrieves the revenue per available room-night.
+     *
+     * @return The RevPAR in centavos, rounded, or 0 if there were no rooms.
+     */
+    public long getRevPar() {
+        return availableNights == 0 ? 0 : Math.round((double) revenue / availableNights);
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * A discount that takes a percentage off the price of a stay.
+ */
+public class PercentageDiscount extends DiscountRule {
+
+    private final int rate; // Share of the price that is kept, in basis points
+
+    /**
+     * Constructs a percentage discount.
+     *
+     * @param code The discount code guests enter.
+     * @param percentOff The share of the price taken off, in basis points (1000 for 10%).
+     * @throws IllegalArgumentException If the share is not between 0% and 100%.
+     */
+    public PercentageDiscount(String code, int percentOff) {
+        super(code);
+        if (percentOff < 0 || percentOff > Money.ONE) {
+            throw new IllegalArgumentException("Invalid discount: " + percentOff);
+        }
+        this.rate = Money.ONE - percentOff;
+    }
+
+    @Override
+    public long apply(long price, Room room, int checkIn, int checkOut) {
+        return Money.times(price, rate);
+    }
+
+    @Override
+    protected String describeDiscount() {
+        int percentOff = Money.ONE - rate;
+        String percent = percentOff % 100 == 0 ? String.valueOf(percentOff / 100)
+                : Money.format(percentOff).replaceAll("0+$", "");
+        return percent + "% discount";
+    }
+}
@@ -0,0 +1,144 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Date price modifiers of a hotel, with running totals for constant-time quotes.
+ *
+ * The index covers a window of days starting a little before today. For the
+ * window it keeps every day's modifier and the prefix sums of the modifiers,
+ * where {@code prefix[i]} is the sum of the modifiers of the first {@code i}
+ * days. Modifiers are rates in basis points (see {@link Money}), so the sums
+ * are exact. The sum of the modifiers of the nights of any stay is then
+ * {@code prefix[checkOut - origin] - prefix[checkIn - origin]}, whatever the
+ * length of the stay. Days outside the window have the default modifier.
+ *
+ * The window and its sums are held in an immutable state object that is
+ * replaced whenever a modifier changes, so quotes read it without locking.
+ * Modifier changes are rare next to quotes and rebuild at most one window.
+ *
+ * The index also keeps the hotel's price version, which moves on after every
+ * change to a modifier or to the base price of one of the hotel's rooms, so
+ * that prices cached in a {@link QuoteCache} can tell whether they are current.
+ */
+public class PriceIndex {
+
+    private static final int WINDOW_DAYS = 1024; // Covers the booking horizon with room to roll forward
+    private static final int PAST_DAYS = 32; // Days kept before today when the window is moved
+
+    private volatile State state;
+    private final AtomicLong version;
+
+    /**
+     * Modifiers and prefix sums for one window of days.
+     */
+    private static class State {
+        private final int origin; // Epoch day of the first day in the window
+        private final int[] modifiers;
+        private final long[] prefix;
+        private final boolean isDefault; // True if every day has the default modifier
+
+        private State(int origin, int[] modifiers) {
+            this.origin = origin;
+            this.modifiers = modifiers;
+            this.prefix = new long[modifiers.length + 1];
+            boolean allDefault = true;
+            for (int i = 0; i < modifiers.length; i++) {
+                prefix[i + 1] = prefix[i] + modifiers[i];
+                allDefault &= modifiers[i] == Money.ONE;
+            }
+            this.isDefault = allDefault;
+        }
+    }
+
+    /**
+     * Constructs an index where every day has the default modifier.
+     */
+    public PriceIndex() {
+        int[] modifiers = new int[WINDOW_DAYS];
+        Arrays.fill(modifiers, Money.ONE);
+        this.state = new State(HotelCalendar.today() - PAST_DAYS, modifiers);
+        this.version = new AtomicLong();
+    }
+
+    /**
+     * Retrieves the price version, which is different after any change that may change a quote.
+     *
+     * @return The version.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Moves the price version on. Called after a price has changed, never before.
+     */
+    void changed() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * Gets the price modifier for a given day.
+     *
+     * @param day The day as an epoch day.
+     * @return The price modifier in basis points, {@link Money#ONE} if none was set.
+     */
+    public int getModifier(int day) {
+        State current = state;
+        int offset = day - current.origin;
+        return offset >= 0 && offset < WINDOW_DAYS ? current.modifiers[offset] : Money.ONE;
+    }
+
+    /**
+     * Checks whether every day has the default modifier.
+     *
+     * @return True if no day has a modifier other than {@link Money#ONE}.
+     */
+    public boolean isDefault() {
+        return state.isDefault;
+    }
+
+    /**
+     * Sets the price modifier for a given day, moving the window forward if the day lies beyond it.
+     * Days before the window can no longer be booked and are ignored.
+     *
+     * @param day The day as an epoch day.
+     * @param modifier The price modifier in basis points ({@link Money#ONE} for 100%).
+     */
+    public synchronized void setModifier(int day, int modifier) {
+        State current = state;
+        int origin = current.origin;
+        if (day - origin >= WINDOW_DAYS) {
+            origin = Math.max(HotelCalendar.today() - PAST_DAYS, day - WINDOW_DAYS + 1); // Roll forward
+        }
+        if (day < origin) {
+            return;
+        }
+        int[] modifiers = new int[WINDOW_DAYS];
+        for (int i = 0; i < WINDOW_DAYS; i++) {
+            modifiers[i] = i + origin - current.origin < WINDOW_DAYS
+                    ? current.modifiers[i + origin - current.origin] : Money.ONE;
+        }
+        modifiers[day - origin] = modifier;
+        state = new State(origin, modifiers);
+        changed();
+    }
+
+    /**
+     * Adds up the price modifiers of every night from check-in up to, but not including, check-out.
+     *
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @return The sum of the modifiers in basis points; a stay at the default modifier sums to
+     *         {@link Money#ONE} times its number of nights.
+     */
+    public long sumModifiers(int checkIn, int checkOut) {
+        State current = state;
+        int from = Math.max(checkIn - current.origin, 0);
+        int to = Math.min(checkOut - current.origin, WINDOW_DAYS);
+        if (from >= to) {
+            return (long) Money.ONE * (checkOut - checkIn); // Entirely outside the window
+        }
+        // Nights outside the window count Money.ONE each
+        return current.prefix[to] - current.prefix[from] + (long) Money.ONE * ((checkOut - checkIn) - (to - from));
+    }
+}
@@ -0,0 +1,212 @@
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of stay prices, keyed by hotel, room type, room base price,
+ * check-in, check-out and resolved discount chain.
+ *
+ * Each cached price carries the hotel's price version from when it was
+ * computed, see {@link Hotel#getPriceVersion()}. The version moves on after
+ * every change to base prices or date price modifiers, so an entry is only
+ * served while nothing that went into its price has changed, and is
+ * recomputed on the next request after that. The version is read before the
+ * price is computed, so a change racing with the computation leaves an entry
+ * that is never served. Discount rules need no version: a
+ * {@link DiscountEngine} resolves codes to new chains whenever its rules
+ * change, and chains are compared by identity.
+ *
+ * Lookups take no lock: entries live in a concurrent map and a hit only
+ * marks its entry as used. When the cache grows past its capacity, one
+ * thread sweeps it CLOCK-style, approximating LRU: entries used since the
+ * last sweep lose their mark and stay, the others are dropped, until the
+ * cache is back under a fraction of its capacity.
+ */
+public class QuoteCache {
+
+    /** Number of prices kept by default. */
+    public static final int DEFAULT_CAPACITY = 65_536;
+
+    private static final double SWEEP_TARGET = 0.75; // Share of the capacity a sweep shrinks the cache to
+
+    private final int capacity;
+    private final ConcurrentHashMap<Key, Entry> entries;
+    private final Object sweepLock;
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    /**
+     * A stay whose price is cached.
+     */
+    private static final class Key {
+        private final Hotel hotel;
+        private final RoomType type;
+        private final long basePrice;
+        private final int checkIn;
+        private final int checkOut;
+        private final DiscountChain discounts;
+        private final int hash;
+
+        private Key(Hotel hotel, RoomType type, long basePrice, int checkIn, int checkOut, DiscountChain discounts) {
+            this.hotel = hotel;
+            this.type = type;
+            this.basePrice = basePrice;
+            this.checkIn = checkIn;
+            this.checkOut = checkOut;
+            this.discounts = discounts;
+            int h = System.identityHashCode(hotel);
+            h = 31 * h + type.ordinal();
+            h = 31 * h + Long.hashCode(basePrice);
+            h = 31 * h + checkIn;
+            h = 31 * h + checkOut;
+            h = 31 * h + System.identityHashCode(discounts);
+            this.hash = h ^ (h >>> 16);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return hotel == key.hotel && type == key.type && basePrice == key.basePrice
+                    && checkIn == key.checkIn && checkOut == key.checkOut && discounts == key.discounts;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A cached price, the price version it was computed at, and whether it was used since the last sweep.
+     */
+    private static final class Entry {
+        private final long version;
+        private final long price;
+        private volatile boolean used;
+
+        private Entry(long version, long price) {
+            this.version = version;
+            this.price = price;
+        }
+    }
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param capacity The most prices to keep.
+     * @throws IllegalArgumentException If the capacity is not positive.
+     */
+    public QuoteCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        this.entries = new ConcurrentHashMap<>();
+        this.sweepLock = new Object();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+    }
+
+    /**
+     * Prices a stay in a room with discounts, from the cache if the price is still current.
+     *
+     * @param hotel The hotel the room belongs to.
+     * @param room The room.
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @param discounts The discounts, already checked to apply to the stay.
+     * @return The price of the stay after discounts, in centavos.
+     */
+    public long quote(Hotel hotel, Room room, int checkIn, int checkOut, DiscountChain discounts) {
+        long version = hotel.getPriceVersion(); // Before anything the price depends on is read
+        Key key = new Key(hotel, room.getType(), room.getBasePrice(), checkIn, checkOut, discounts);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.version == version) {
+            if (!entry.used) {
+                entry.used = true; // Written only when it changes, so hot entries stay shared in caches
+            }
+            hits.increment();
+            return entry.price;
+        }
+        misses.increment();
+        long price = discounts.apply(room.quote(checkIn, checkOut), room, checkIn, checkOut);
+        Entry computed = new Entry(version, price);
+        entries.merge(key, computed, (current, next) -> current.version < next.version ? next : current);
+        if (entries.size() > capacity) {
+            sweep();
+        }
+        return price;
+    }
+
+    /**
+     * Drops entries not used since the last sweep, and takes the mark off
+     * those that were, until the cache is down to its sweep target.
+     */
+    private void sweep() {
+        synchronized (sweepLock) {
+            int target = (int) (capacity * SWEEP_TARGET);
+            Iterator<Entry> values = entries.values().iterator();
+            while (entries.size() > target) {
+                if (!values.hasNext()) {
+                    values = entries.values().iterator(); // Second pass: every entry has lost its mark
+                }
+                Entry entry = values.next();
+                if (entry.used) {
+                    entry.used = false;
+                } else {
+                    values.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops every price of a hotel, such as when the hotel is removed.
+     *
+     * @param hotel The hotel.
+     */
+    public void invalidate(Hotel hotel) {
+        entries.keySet().removeIf(key -> key.hotel == hotel);
+    }
+
+    /**
+     * Counts the prices in the cache, current or not.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Retrieves the number of quotes served from the cache.
+     *
+     * @return The count.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Retrieves the number of quotes that had to be computed.
+     *
+     * @return The count.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Retrieves the share of quotes served from the cache.
+     *
+     * @return The hit rate between 0 and 1, or 0 before the first quote.
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+}
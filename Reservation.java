@@ -4,80 +4,73 @@
  * Represents a reservation made by a guest for a specific room in a hotel.
  */
 public class Reservation {
+    private long id; // 0 until the reservation is added to a hotel
     private String guestName;
     private int checkIn;
     private int checkOut;
-    private Room room;
-    private float totalPrice;
+    private volatile Room room; // Changes only when the hotel moves the reservation
+    private long totalPrice; // In centavos
     private String discountCode;
+    private volatile boolean locked; // Kept in its room by the re-optimizer
     
     /**
      * Constructs a new Reservation object with the specified guest name, check-in date,
-     * check-out date, and room.
+     * check-out date, and room, priced with the discounts of a resolved discount code.
+     * The room is booked when the reservation is added to its hotel, see
+     * {@link Hotel#addReservation(Reservation)}.
      *
      * @param guestName The name of the guest making the reservation.
-     * @param checkIn The check-in day of the reservation (1-31).
-     * @param checkOut The check-out day of the reservation (greater than check-in day).
+     * @param checkIn The check-in date of the reservation as an epoch day.
+     * @param checkOut The check-out date of the reservation as an epoch day (after check-in).
      * @param room The Room object being reserved.
+     * @param discounts The discounts, already checked to apply to the stay; see {@link DiscountEngine}.
      */
-    public Reservation(String guestName, int checkIn, int checkOut, Room room, String discountCode) {
+    public Reservation(String guestName, int checkIn, int checkOut, Room room, DiscountChain discounts) {
         this.guestName = guestName;
         this.checkIn = checkIn;
         this.checkOut = checkOut;
         this.room = room;
-        this.discountCode = discountCode;
-        this.totalPrice = calculateTotalPrice();
-        room.bookRoom(checkIn, checkOut); // Books the room for the reservation period
+        this.discountCode = discounts.getCode();
+        this.totalPrice = discounts.apply(room.quote(checkIn, checkOut), room, checkIn, checkOut);
     }
-    
+
     /**
-     * Sets the discount code for the reservation.
+     * Constructs a reservation with a total price that was calculated earlier,
+     * used when reservations are loaded back from disk. The room's current
+     * prices may have changed since, so the price is not recalculated.
      *
-     * @param discountCode The discount code to set.
+     * @param guestName The name of the guest making the reservation.
+     * @param checkIn The check-in date of the reservation as an epoch day.
+     * @param checkOut The check-out date of the reservation as an epoch day.
+     * @param room The Room object being reserved.
+     * @param discountCode The discount code, or an empty string for none.
+     * @param totalPrice The total price of the reservation, in centavos.
      */
-    public void setDiscountCode(String discountCode) {
+    Reservation(String guestName, int checkIn, int checkOut, Room room, String discountCode, long totalPrice) {
+        this.guestName = guestName;
+        this.checkIn = checkIn;
+        this.checkOut = checkOut;
+        this.room = room;
         this.discountCode = discountCode;
-        this.totalPrice = calculateTotalPrice(); // Recalculate total price with the new discount code
+        this.totalPrice = totalPrice;
     }
     
     /**
-     * Calculates the total price for the reservation including any applicable discount.
+     * Retrieves the ID the hotel gave the reservation.
      *
-     * @return The total price of the reservation after applying the discount.
+     * @return The ID, or 0 if the reservation has not been added to a hotel.
      */
-    private float calculateTotalPrice() {
-        float totalBasePrice = 0.0f;
-
-        // Calculate base price considering date price modifiers
-        for (int day = checkIn; day < checkOut; day++) {
-            float modifier = room.getDatePriceModifier(day);
-            float dailyPrice = room.getPrice() * modifier; // Apply modifier to base price
-            totalBasePrice += dailyPrice;
-        }
-
-        float discountedPrice = totalBasePrice;
-
-        // Apply discount based on the code
-        switch (discountCode) {
-            case "I_WORK_HERE":
-                discountedPrice *= 0.90; // 10% discount
-                break;
-            case "STAY4_GET1":
-                if ((checkOut - checkIn) >= 5) {
-                    discountedPrice -= room.getPrice(); // First day free
-                }
-                break;
-            case "PAYDAY":
-                if ((checkIn <= 15 && checkOut > 15) || (checkIn <= 30 && checkOut > 30)) {
-                    discountedPrice *= 0.93; // 7% discount
-                }
-                break;
-            default:
-                // No discount applied
-                break;
-        }
+    public long getId() {
+        return id;
+    }
 
-        return discountedPrice;
+    /**
+     * Sets the ID of the reservation. Called by the hotel when the reservation is added.
+     *
+     * @param id The ID, unique within the hotel.
+     */
+    void setId(long id) {
+        this.id = id;
     }
 
     /**
@@ -90,18 +83,18 @@ public class Reservation {
     }
 
     /**
-     * Retrieves the check-in day of the reservation.
+     * Retrieves the check-in date of the reservation.
      *
-     * @return The check-in day.
+     * @return The check-in date as an epoch day.
      */
     public int getCheckIn() {
         return checkIn;
     }
 
     /**
-     * Retrieves the check-out day of the reservation.
+     * Retrieves the check-out date of the reservation.
      *
-     * @return The check-out day.
+     * @return The check-out date as an epoch day.
      */
     public int getCheckOut() {
         return checkOut;
@@ -116,12 +109,50 @@ public class Reservation {
         return room;
     }
 
+    /**
+     * Moves the reservation to another room of the same type. Called by the
+     * hotel once the new room is booked, see {@link Hotel#moveReservations(java.util.Map)}.
+     *
+     * @param room The room the reservation now holds.
+     */
+    void reassign(Room room) {
+        this.room = room;
+    }
+
+    /**
+     * Checks whether the reservation must keep its room, because the guest chose it.
+     * {@link RoomOptimizer} only moves reservations that are not locked.
+     *
+     * @return True if the reservation is locked to its room.
+     */
+    public boolean isLocked() {
+        return locked;
+    }
+
+    /**
+     * Locks the reservation to its room, or lets it be moved to another room of the same type.
+     *
+     * @param locked True to keep the reservation in its room.
+     */
+    public void setLocked(boolean locked) {
+        this.locked = locked;
+    }
+
+    /**
+     * Retrieves the discount code used for the reservation.
+     *
+     * @return The discount code, or an empty string for none.
+     */
+    public String getDiscountCode() {
+        return discountCode;
+    }
+
     /**
      * Retrieves the total price for the reservation.
      *
-     * @return The total price of the reservation.
+     * @return The total price of the reservation, in centavos.
      */
-    public float getTotalPrice() {
+    public long getTotalPrice() {
         return totalPrice;
     }
 }
@@ -0,0 +1,397 @@
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Column store of a hotel's past stays, for reports over long histories.
+ *
+ * Once a stay has checked out, the hotel can move it here from its live
+ * reservations, see {@link Hotel#archiveStays(int)}. Each stay becomes one
+ * row across parallel primitive arrays: ID, room number, room type,
+ * check-in, check-out and total price. The guest name and discount code are
+ * stored as codes into dictionaries that keep each distinct string once, so
+ * a row costs 37 bytes plus its share of the dictionaries, where a
+ * {@link Reservation} costs an object, its strings and its index entries.
+ * Reports are plain loops over the arrays, and rows are read through a
+ * {@link Stay} view that is moved from row to row rather than through one
+ * object per stay.
+ *
+ * Rows are only ever appended, one writer at a time. A writer fills in a row,
+ * copying the arrays into larger ones first when they are full, and then
+ * publishes the new row count; readers read the count before the arrays, so
+ * they never take a lock and always find the rows they count.
+ */
+public class ReservationHistory {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final RoomType[] ROOM_TYPES = RoomType.values();
+
+    private volatile Columns columns;
+    private volatile int size;
+    private final Dictionary guestNames;
+    private final Dictionary discountCodes;
+
+    /**
+     * The arrays holding the rows, replaced by larger copies as they fill up.
+     */
+    private static final class Columns {
+        private final long[] ids;
+        private final int[] roomNos;
+        private final byte[] types;
+        private final int[] checkIns;
+        private final int[] checkOuts;
+        private final long[] prices;
+        private final int[] guests;
+        private final int[] discounts;
+
+        private Columns(int capacity) {
+            this(new long[capacity], new int[capacity], new byte[capacity], new int[capacity], new int[capacity],
+                    new long[capacity], new int[capacity], new int[capacity]);
+        }
+
+        private Columns(long[] ids, int[] roomNos, byte[] types, int[] checkIns, int[] checkOuts, long[] prices,
+                        int[] guests, int[] discounts) {
+            this.ids = ids;
+            this.roomNos = roomNos;
+            this.types = types;
+            this.checkIns = checkIns;
+            this.checkOuts = checkOuts;
+            this.prices = prices;
+            this.guests = guests;
+            this.discounts = discounts;
+        }
+
+        private Columns grow(int capacity) {
+            return new Columns(Arrays.copyOf(ids, capacity), Arrays.copyOf(roomNos, capacity),
+                    Arrays.copyOf(types, capacity), Arrays.copyOf(checkIns, capacity),
+                    Arrays.copyOf(checkOuts, capacity), Arrays.copyOf(prices, capacity),
+                    Arrays.copyOf(guests, capacity), Arrays.copyOf(discounts, capacity));
+        }
+    }
+
+    /**
+     * Distinct strings, each given the next code when first seen.
+     * Like the columns, codes are added by one writer and read without a lock.
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+        private volatile String[] values = new String[16];
+        private int count;
+
+        private int intern(String value) {
+            Integer code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            String[] current = values;
+            if (count == current.length) {
+                current = Arrays.copyOf(current, count * 2);
+            }
+            current[count] = value;
+            values = current;
+            codes.put(value, count);
+            return count++;
+        }
+
+        private String get(int code) {
+            return values[code];
+        }
+    }
+
+    /**
+     * A view of one row, moved from row to row with {@link #moveTo(int)}.
+     * A view sees the rows there were when it was made.
+     */
+    public final class Stay {
+        private final Columns data;
+        private final int rows;
+        private int row;
+
+        private Stay(Columns data, int rows) {
+            this.data = data;
+            this.rows = rows;
+        }
+
+        /**
+         * Points the view at a row.
+         *
+         * @param row The row, from 0 for the first stay archived.
+         * @return This view.
+         * @throws IndexOutOfBoundsException If the row did not exist when the view was made.
+         */
+        public Stay moveTo(int row) {
+            if (row < 0 || row >= rows) {
+                throw new IndexOutOfBoundsException("Row " + row + " of " + rows);
+            }
+            this.row = row;
+            return this;
+        }
+
+        /**
+         * Retrieves the row the view points at.
+         *
+         * @return The row.
+         */
+        public int getRow() {
+            return row;
+        }
+
+        /**
+         * Retrieves the ID the stay had as a reservation.
+         *
+         * @return The ID.
+         */
+        public long getId() {
+            return data.ids[row];
+        }
+
+        /**
+         * Retrieves the name of the guest.
+         *
+         * @return The guest name.
+         */
+        public String getName() {
+            return guestNames.get(data.guests[row]);
+        }
+
+        /**
+         * Retrieves the check-in date.
+         *
+         * @return The check-in date as an epoch day.
+         */
+        public int getCheckIn() {
+            return data.checkIns[row];
+        }
+
+        /**
+         * Retrieves the check-out date.
+         *
+         * @return The check-out date as an epoch day.
+         */
+        public int getCheckOut() {
+            return data.checkOuts[row];
+        }
+
+        /**
+         * Retrieves the number of the room stayed in.
+         *
+         * @return The room number.
+         */
+        public int getRoomNo() {
+            return data.roomNos[row];
+        }
+
+        /**
+         * Retrieves the type of the room stayed in.
+         *
+         * @return The room type.
+         */
+        public RoomType getRoomType() {
+            return ROOM_TYPES[data.types[row]];
+        }
+
+        /**
+         * Retrieves the discount codes applied to the stay.
+         *
+         * @return The codes joined with '+', or an empty string for none.
+         */
+        public String getDiscountCode() {
+            return discountCodes.get(data.discounts[row]);
+        }
+
+        /**
+         * Retrieves the price paid for the stay.
+         *
+         * @return The total price, in centavos.
+         */
+        public long getTotalPrice() {
+            return data.prices[row];
+        }
+    }
+
+    /**
+     * Constructs an empty history.
+     */
+    public ReservationHistory() {
+        this.columns = new Columns(INITIAL_CAPACITY);
+        this.guestNames = new Dictionary();
+        this.discountCodes = new Dictionary();
+    }
+
+    /**
+     * Appends a reservation as a row.
+     *
+     * @param reservation The reservation, which keeps its ID.
+     */
+    public void add(Reservation reservation) {
+        add(reservation.getId(), reservation.getName(), reservation.getCheckIn(), reservation.getCheckOut(),
+                reservation.getRoom().getRoomNo(), reservation.getRoom().getType(), reservation.getDiscountCode(),
+                reservation.getTotalPrice());
+    }
+
+    /**
+     * Appends a stay as a row.
+     *
+     * @param id The ID the stay had as a reservation.
+     * @param guestName The name of the guest.
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @param roomNo The number of the room stayed in.
+     * @param type The type of the room stayed in.
+     * @param discountCode The discount codes applied, or an empty string for none.
+     * @param totalPrice The price paid, in centavos.
+     */
+    public synchronized void add(long id, String guestName, int checkIn, int checkOut, int roomNo, RoomType type,
+                                 String discountCode, long totalPrice) {
+        int row = size;
+        Columns data = columns;
+        if (row == data.ids.length) {
+            data = data.grow(row * 2);
+        }
+        data.ids[row] = id;
+        data.roomNos[row] = roomNo;
+        data.types[row] = (byte) type.ordinal();
+        data.checkIns[row] = checkIn;
+        data.checkOuts[row] = checkOut;
+        data.prices[row] = totalPrice;
+        data.guests[row] = guestNames.intern(guestName);
+        data.discounts[row] = discountCodes.intern(discountCode);
+        columns = data;
+        size = row + 1; // Publishes the row
+    }
+
+    /**
+     * Counts the stays in the history.
+     *
+     * @return The number of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Makes a view of the rows there are now.
+     *
+     * @return A view, pointing at the first row if there is one.
+     */
+    public Stay view() {
+        int rows = size;
+        return new Stay(columns, rows);
+    }
+
+    /**
+     * Runs an action on every stay, in the order they were archived, moving one view from row to row.
+     *
+     * @param action The action; it must not keep the view.
+     */
+    public void forEach(Consumer<Stay> action) {
+        Stay stay = view();
+        for (int row = 0; row < stay.rows; row++) {
+            action.accept(stay.moveTo(row));
+        }
+    }
+
+    /**
+     * Finds the stays of a guest, ignoring case and surrounding spaces.
+     *
+     * @param guestName The guest name.
+     * @return The rows of the guest's stays, in the order they were archived.
+     */
+    public int[] findStays(String guestName) {
+        int rows = size;
+        Columns data = columns;
+        String[] names = guestNames.values;
+        String key = guestName.trim().toLowerCase(Locale.ROOT);
+        boolean[] matches = new boolean[names.length];
+        boolean any = false;
+        for (int code = 0; code < names.length && names[code] != null; code++) {
+            matches[code] = names[code].trim().toLowerCase(Locale.ROOT).equals(key);
+            any |= matches[code];
+        }
+        if (!any) {
+            return new int[0];
+        }
+        int[] found = new int[16];
+        int count = 0;
+        int[] guests = data.guests;
+        for (int row = 0; row < rows; row++) {
+            int code = guests[row];
+            if (code < matches.length && matches[code]) {
+                if (count == found.length) {
+                    found = Arrays.copyOf(found, count * 2);
+                }
+                found[count++] = row;
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * Counts the room-nights of a type stayed over a range of nights.
+     *
+     * @param from The first night as an epoch day.
+     * @param to The night after the last, as an epoch day.
+     * @param type The room type, or null for every type.
+     * @return The number of room-nights.
+     */
+    public long bookedNights(int from, int to, RoomType type) {
+        int rows = size;
+        Columns data = columns;
+        int[] checkIns = data.checkIns;
+        int[] checkOuts = data.checkOuts;
+        byte[] types = data.types;
+        int wanted = type == null ? -1 : type.ordinal();
+        long nights = 0;
+        for (int row = 0; row < rows; row++) {
+            if (wanted >= 0 && types[row] != wanted) {
+                continue;
+            }
+            int first = Math.max(checkIns[row], from);
+            int last = Math.min(checkOuts[row], to);
+            if (first < last) {
+                nights += last - first;
+            }
+        }
+        return nights;
+    }
+
+    /**
+     * Adds up the revenue of the room-nights of a type stayed over a range of
+     * nights, spreading each stay's price over its nights like {@link OccupancyLedger}.
+     *
+     * @param from The first night as an epoch day.
+     * @param to The night after the last, as an epoch day.
+     * @param type The room type, or null for every type.
+     * @return The revenue, in centavos.
+     */
+    public long revenue(int from, int to, RoomType type) {
+        int rows = size;
+        Columns data = columns;
+        int[] checkIns = data.checkIns;
+        int[] checkOuts = data.checkOuts;
+        long[] prices = data.prices;
+        byte[] types = data.types;
+        int wanted = type == null ? -1 : type.ordinal();
+        long revenue = 0;
+        for (int row = 0; row < rows; row++) {
+            if (wanted >= 0 && types[row] != wanted) {
+                continue;
+            }
+            int checkIn = checkIns[row];
+            int first = Math.max(checkIn, from);
+            int last = Math.min(checkOuts[row], to);
+            if (first >= last) {
+                continue;
+            }
+            long stayNights = checkOuts[row] - checkIn;
+            long perNight = prices[row] / stayNights;
+            revenue += perNight * (last - first);
+            if (first == checkIn) {
+                revenue += prices[row] % stayNights; // The remainder goes on the first night
+            }
+        }
+        return revenue;
+    }
+}
@@ -0,0 +1,249 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streams reservations from a CSV or JSON Lines file into a {@link BookingService}.
+ *
+ * The file is read a line at a time and booked in chunks through
+ * {@link BookingService#reserveBatch}, so only one chunk is held in memory
+ * however long the file is. A CSV file has the columns
+ * <pre>
+ * hotel,guest,checkIn,checkOut,room,type,discountCode
+ * </pre>
+ * with an optional header line, dates as YYYY-MM-DD, and an empty room or
+ * type for any. Fields may be quoted with double quotes. A JSON Lines file
+ * has one object per line with the same field names.
+ */
+public class ReservationImporter {
+
+    /** Number of requests booked per call to {@link BookingService#reserveBatch}. */
+    public static final int DEFAULT_CHUNK_SIZE = 10_000;
+
+    private static final String[] COLUMNS = {"hotel", "guest", "checkIn", "checkOut", "room", "type", "discountCode"};
+
+    private final BookingService service;
+    private final int chunkSize;
+
+    /**
+     * Receives the outcome of each line of an import.
+     */
+    public interface Listener {
+        /**
+         * Called once per line with a request, in line order.
+         *
+         * @param lineNo The line number, starting at 1.
+         * @param result The reservation, or the reason none was made.
+         */
+        void onResult(long lineNo, ServiceResult<Reservation> result);
+    }
+
+    /**
+     * One line of the file, read but not yet booked.
+     */
+    private static class Row {
+        private final long lineNo;
+        private final String hotel;
+        private final BookingRequest request; // Null if the line could not be read
+        private final ServiceStatus error;
+
+        private Row(long lineNo, String hotel, BookingRequest request, ServiceStatus error) {
+            this.lineNo = lineNo;
+            this.hotel = hotel;
+            this.request = request;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Constructs an importer that books in chunks of {@link #DEFAULT_CHUNK_SIZE}.
+     *
+     * @param service The service to book in.
+     */
+    public ReservationImporter(BookingService service) {
+        this(service, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs an importer.
+     *
+     * @param service The service to book in.
+     * @param chunkSize The number of requests to book at a time.
+     */
+    public ReservationImporter(BookingService service, int chunkSize) {
+        this.service = service;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Imports a file, reading it as JSON Lines if its name ends in .jsonl or .json and as CSV otherwise.
+     *
+     * @param file The file.
+     * @param listener Receives the outcome of each line, or null if only the totals are wanted.
+     * @return The number of lines with each outcome.
+     * @throws IOException If the file cannot be read.
+     */
+    public Map<ServiceStatus, Long> importFile(Path file, Listener listener) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        boolean json = name.endsWith(".jsonl") || name.endsWith(".json");
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importLines(reader, json, listener);
+        }
+    }
+
+    /**
+     * Imports lines of CSV or JSON Lines.
+     *
+     * @param reader The lines.
+     * @param json True for JSON Lines, false for CSV.
+     * @param listener Receives the outcome of each line, or null if only the totals are wanted.
+     * @return The number of lines with each outcome.
+     * @throws IOException If the lines cannot be read.
+     */
+    public Map<ServiceStatus, Long> importLines(BufferedReader reader, boolean json, Listener listener) throws IOException {
+        Map<ServiceStatus, Long> totals = new EnumMap<>(ServiceStatus.class);
+        List<Row> chunk = new ArrayList<>(chunkSize);
+        long lineNo = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            if (line.trim().isEmpty() || (lineNo == 1 && !json && line.toLowerCase(Locale.ROOT).startsWith("hotel,"))) {
+                continue; // Blank line or CSV header
+            }
+            chunk.add(json ? parseJson(lineNo, line) : parseCsv(lineNo, line));
+            if (chunk.size() == chunkSize) {
+                book(chunk, totals, listener);
+                chunk.clear();
+            }
+        }
+        book(chunk, totals, listener);
+        return totals;
+    }
+
+    /**
+     * Books a chunk of rows, one batch per hotel, and reports the outcomes in line order.
+     */
+    private void book(List<Row> chunk, Map<ServiceStatus, Long> totals, Listener listener) {
+        List<ServiceResult<Reservation>> results = new ArrayList<>(chunk.size());
+        Map<String, List<Integer>> byHotel = new LinkedHashMap<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            Row row = chunk.get(i);
+            results.add(row.request == null ? ServiceResult.failure(row.error) : null);
+            if (row.request != null) {
+                byHotel.computeIfAbsent(row.hotel, key -> new ArrayList<>()).add(i);
+            }
+        }
+        for (List<Integer> rows : byHotel.values()) {
+            List<BookingRequest> requests = new ArrayList<>(rows.size());
+            for (int i : rows) {
+                requests.add(chunk.get(i).request);
+            }
+            Hotel hotel = service.findHotel(chunk.get(rows.get(0)).hotel);
+            List<ServiceResult<Reservation>> booked = service.reserveBatch(hotel, requests);
+            for (int j = 0; j < rows.size(); j++) {
+                results.set(rows.get(j), booked.get(j));
+            }
+        }
+        for (int i = 0; i < chunk.size(); i++) {
+            ServiceResult<Reservation> result = results.get(i);
+            totals.merge(result.getStatus(), 1L, Long::sum);
+            if (listener != null) {
+                listener.onResult(chunk.get(i).lineNo, result);
+            }
+        }
+    }
+
+    private static Row parseJson(long lineNo, String line) {
+        try {
+            return toRow(lineNo, Json.parseObject(line));
+        } catch (IllegalArgumentException e) {
+            return new Row(lineNo, null, null, ServiceStatus.INVALID_REQUEST);
+        }
+    }
+
+    private static Row parseCsv(long lineNo, String line) {
+        List<String> fields = splitCsv(line);
+        if (fields == null || fields.size() < 4 || fields.size() > COLUMNS.length) {
+            return new Row(lineNo, null, null, ServiceStatus.INVALID_REQUEST);
+        }
+        Map<String, String> values = new LinkedHashMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            values.put(COLUMNS[i], fields.get(i));
+        }
+        return toRow(lineNo, values);
+    }
+
+    /**
+     * Builds a row from the named fields of a line.
+     */
+    private static Row toRow(long lineNo, Map<String, String> values) {
+        String hotel = values.getOrDefault("hotel", "").trim();
+        if (hotel.isEmpty()) {
+            return new Row(lineNo, null, null, ServiceStatus.HOTEL_NOT_FOUND);
+        }
+        int checkIn = HotelCalendar.parseDate(values.getOrDefault("checkIn", ""));
+        int checkOut = HotelCalendar.parseDate(values.getOrDefault("checkOut", ""));
+        if (checkIn < 0 || checkOut < 0) {
+            return new Row(lineNo, null, null, ServiceStatus.INVALID_DATES);
+        }
+        int roomNo;
+        RoomType type = null;
+        try {
+            String room = values.getOrDefault("room", "").trim();
+            roomNo = room.isEmpty() ? 0 : Integer.parseInt(room);
+            String typeName = values.getOrDefault("type", "").trim();
+            if (!typeName.isEmpty()) {
+                type = RoomType.valueOf(typeName.toUpperCase(Locale.ROOT));
+            }
+        } catch (IllegalArgumentException e) { // Also covers NumberFormatException
+            return new Row(lineNo, null, null, ServiceStatus.INVALID_REQUEST);
+        }
+        BookingRequest request = new BookingRequest(values.getOrDefault("guest", ""), checkIn, checkOut, roomNo, type,
+                values.getOrDefault("discountCode", "").trim());
+        return new Row(lineNo, hotel, request, null);
+    }
+
+    /**
+     * Splits a CSV line into fields, removing quotes around quoted fields.
+     *
+     * @return The fields, or null if a quoted field is not closed.
+     */
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(COLUMNS.length);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"'); // Escaped quote
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
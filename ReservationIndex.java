@@ -0,0 +1,235 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Index of the reservations of one hotel, by ID and by guest name.
+ *
+ * Reservation IDs are handed out by the hotel in sequence, so the ID index
+ * is an array of pages indexed by ID rather than a map: lookups are two array
+ * reads, and walking the pages lists reservations in booking order. Pages are
+ * allocated as IDs reach them, and each counts the reservations it holds.
+ * A page that empties out once the hotel has moved on to later pages, as
+ * happens when its reservations are cancelled or archived, is freed, so
+ * memory and walks grow with the reservations held rather than with every
+ * ID ever issued.
+ *
+ * The guest index maps a lower-cased, trimmed guest name to a list of that
+ * guest's reservations. Each list is changed and copied only while holding
+ * its own lock, so adding a reservation costs the same however many the
+ * guest already has.
+ *
+ * All methods are safe to call from many threads.
+ */
+public class ReservationIndex {
+
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT; // 4096 reservations per page
+    private static final int FREED = Integer.MIN_VALUE;
+
+    private volatile Page[] pages;
+    private final ConcurrentHashMap<String, List<Reservation>> byGuest;
+    private final AtomicInteger size;
+    private final AtomicLong highestId; // The page holding it is never freed, as IDs are still being handed out there
+
+    /**
+     * One page of the ID index.
+     */
+    private static final class Page {
+        private final AtomicReferenceArray<Reservation> entries = new AtomicReferenceArray<>(PAGE_SIZE);
+        private final AtomicInteger live = new AtomicInteger(); // Entries held or being added, FREED once freed
+
+        /**
+         * Counts an entry about to be added, unless the page has been freed.
+         */
+        private boolean enter() {
+            for (int count = live.get(); count >= 0; count = live.get()) {
+                if (live.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Constructs an empty index.
+     */
+    public ReservationIndex() {
+        this.pages = new Page[1];
+        this.byGuest = new ConcurrentHashMap<>();
+        this.size = new AtomicInteger();
+        this.highestId = new AtomicLong();
+    }
+
+    /**
+     * Adds a reservation that already has an ID.
+     *
+     * @param reservation The reservation.
+     * @return False if another reservation already has the same ID.
+     */
+    public boolean add(Reservation reservation) {
+        long id = reservation.getId();
+        highestId.accumulateAndGet(id, Math::max);
+        Page page;
+        do {
+            page = page(id, true);
+        } while (!page.enter()); // Freed just now; the next look finds or makes its successor
+        if (!page.entries.compareAndSet((int) id & (PAGE_SIZE - 1), null, reservation)) {
+            leave(page, id);
+            return false;
+        }
+        byGuest.compute(guestKey(reservation.getName()), (key, stays) -> {
+            List<Reservation> list = stays != null ? stays : new ArrayList<>(1);
+            synchronized (list) {
+                list.add(reservation);
+            }
+            return list;
+        });
+        size.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Removes a reservation.
+     *
+     * @param reservation The reservation.
+     * @return False if the reservation is not in the index.
+     */
+    public boolean remove(Reservation reservation) {
+        long id = reservation.getId();
+        Page page = page(id, false);
+        if (page == null || !page.entries.compareAndSet((int) id & (PAGE_SIZE - 1), reservation, null)) {
+            return false;
+        }
+        byGuest.computeIfPresent(guestKey(reservation.getName()), (key, stays) -> {
+            synchronized (stays) {
+                stays.remove(reservation);
+                return stays.isEmpty() ? null : stays;
+            }
+        });
+        size.decrementAndGet();
+        leave(page, id);
+        return true;
+    }
+
+    /**
+     * Finds a reservation by ID.
+     *
+     * @param id The reservation ID.
+     * @return The reservation, or null if there is none with that ID.
+     */
+    public Reservation get(long id) {
+        Page page = page(id, false);
+        return page == null ? null : page.entries.get((int) id & (PAGE_SIZE - 1));
+    }
+
+    /**
+     * Finds the reservations made under a guest name, ignoring case and surrounding spaces.
+     *
+     * @param guestName The guest name.
+     * @return The reservations, in the order they were added.
+     */
+    public List<Reservation> findByGuest(String guestName) {
+        List<Reservation> stays = byGuest.get(guestKey(guestName));
+        if (stays == null) {
+            return new ArrayList<>();
+        }
+        synchronized (stays) {
+            return new ArrayList<>(stays);
+        }
+    }
+
+    /**
+     * Counts the reservations in the index.
+     *
+     * @return The number of reservations.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Lists every reservation in ID order.
+     *
+     * @return A new list of the reservations.
+     */
+    public ArrayList<Reservation> toList() {
+        ArrayList<Reservation> list = new ArrayList<>(size());
+        for (Page page : pages) {
+            if (page == null) {
+                continue;
+            }
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                Reservation reservation = page.entries.get(i);
+                if (reservation != null) {
+                    list.add(reservation);
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Finds the page holding an ID, optionally allocating it and growing the page directory.
+     */
+    private Page page(long id, boolean create) {
+        if (id <= 0 || (id >>> PAGE_SHIFT) >= Integer.MAX_VALUE) {
+            if (create) {
+                throw new IllegalArgumentException("Invalid reservation ID: " + id);
+            }
+            return null;
+        }
+        int pageNo = (int) (id >>> PAGE_SHIFT);
+        Page[] current = pages;
+        if (pageNo < current.length && current[pageNo] != null && current[pageNo].live.get() != FREED) {
+            return current[pageNo];
+        }
+        if (!create) {
+            return null;
+        }
+        synchronized (this) {
+            current = pages;
+            if (pageNo >= current.length) {
+                current = Arrays.copyOf(current, Math.max(current.length * 2, pageNo + 1));
+            }
+            if (current[pageNo] == null || current[pageNo].live.get() == FREED) {
+                current[pageNo] = new Page();
+                Page previous = pageNo > 0 ? current[pageNo - 1] : null;
+                if (previous != null && previous.live.compareAndSet(0, FREED)) {
+                    current[pageNo - 1] = null; // Emptied while it was the newest page
+                }
+            }
+            pages = current; // Publishes the new page
+            return current[pageNo];
+        }
+    }
+
+    /**
+     * Uncounts an entry of a page, freeing the page if that emptied it and
+     * the hotel has moved on to later pages.
+     */
+    private void leave(Page page, long id) {
+        int pageNo = (int) (id >>> PAGE_SHIFT);
+        if (page.live.decrementAndGet() != 0 || pageNo >= (highestId.get() >>> PAGE_SHIFT)
+                || !page.live.compareAndSet(0, FREED)) {
+            return;
+        }
+        synchronized (this) {
+            Page[] current = pages;
+            if (current[pageNo] == page) {
+                current[pageNo] = null;
+                pages = current;
+            }
+        }
+    }
+
+    private static String guestKey(String guestName) {
+        return guestName.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,76 +1,250 @@
 /**
  * Represents a room in a hotel.
+ * Calendar reads and writes are synchronized on the room, so each room is its
+ * own lock and bookings for different rooms never wait on each other.
  */
 public abstract class Room {
 
     private int roomNo;
-    private float basePrice;
-    private boolean[] availability;
-    private float[] datePriceModifiers; // Array to store price modifiers for each day of the month
+    private final RoomType type;
+    private volatile long basePrice; // In centavos
+    private RoomCalendar calendar; // Booked nights and date price modifiers, keyed by epoch day
+    private FreeRoomIndex index; // Index of the hotel the room belongs to, null if not in a hotel
+    private volatile PriceIndex prices; // Modifiers of the hotel the room belongs to, null if not in a hotel
+    private volatile HotelMetrics metrics; // Metrics of the hotel the room belongs to, null if not in a hotel
+    private int slot;
 
     /**
      * Initializes a room with the specified room number and base price.
-     * By default, the room is available for all 31 days of the month.
+     * By default, the room is available on every day at the base price.
      *
      * @param roomNo The room number.
-     * @param basePrice The base price per night for the room.
+     * @param basePrice The base price per night for the room, in centavos.
+     * @param type The room's type.
      */
-    public Room(int roomNo, float basePrice) {
+    public Room(int roomNo, long basePrice, RoomType type) {
         this.roomNo = roomNo;
+        this.type = type;
         this.basePrice = basePrice;
-        this.availability = new boolean[31]; // 0 if booked, 1 if available
-        for (int i = 0; i < 31; i++) {
-            this.availability[i] = true;
-        }
-        this.datePriceModifiers = new float[31]; // Initialize with default modifiers (1.0 for 100%)
-        for (int i = 0; i < datePriceModifiers.length; i++) {
-            datePriceModifiers[i] = 1.0f; // Default modifier is 100%
-        }
+        this.calendar = new HeapRoomCalendar();
     }
     
-    public void setDatePriceModifier(int day, float modifier) {
-        datePriceModifiers[day - 1] = modifier;
+    /**
+     * Sets the price modifier for a given day.
+     *
+     * @param day The day as an epoch day.
+     * @param modifier The price modifier in basis points ({@link Money#ONE} for 100%).
+     */
+    public synchronized void setDatePriceModifier(int day, int modifier) {
+        calendar.setModifier(day, modifier);
     }
     
     /**
      * Gets the price modifier for a given day.
      *
-     * @param day The day of the month.
-     * @return The price modifier for the given day.
+     * @param day The day as an epoch day.
+     * @return The price modifier for the given day, in basis points.
      */
-    public float getDatePriceModifier(int day) {
-        return datePriceModifiers[day - 1];
+    public synchronized int getDatePriceModifier(int day) {
+        return calendar.getModifier(day);
+    }
+
+    /**
+     * Calculates the price of a stay before discounts: the price per night
+     * times the sum of the nights' modifiers, rounded once to the centavo. In a
+     * hotel this takes constant time using the hotel's {@link PriceIndex};
+     * otherwise the modifiers are added up one by one.
+     *
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @return The price of the stay, in centavos.
+     */
+    public long quote(int checkIn, int checkOut) {
+        HotelMetrics hotelMetrics = metrics;
+        if (hotelMetrics != null) {
+            hotelMetrics.recordQuote();
+        }
+        PriceIndex hotelPrices = prices;
+        if (hotelPrices != null) {
+            return Money.times(getPrice(), hotelPrices.sumModifiers(checkIn, checkOut));
+        }
+        long modifiers = 0;
+        for (int day = checkIn; day < checkOut; day++) {
+            modifiers += getDatePriceModifier(day);
+        }
+        return Money.times(getPrice(), modifiers);
     }
 
     public int getRoomNo() {
         return roomNo;
     }
 
-    public float getBasePrice() {
+    /**
+     * Retrieves the type of the room.
+     *
+     * @return The room type.
+     */
+    public RoomType getType() {
+        return type;
+    }
+
+    public long getBasePrice() {
         return basePrice;
     }
 
-    public abstract float getPrice();
+    public abstract long getPrice();
 
-    public void setPrice(float newPrice) {
+    public void setPrice(long newPrice) {
         this.basePrice = newPrice;
+        PriceIndex hotelPrices = prices;
+        if (hotelPrices != null) {
+            hotelPrices.changed(); // After the write, so cached quotes see either the change or a new version
+        }
     }
 
-    public boolean isAvailable(int day) {
-        return availability[day - 1];
+    public synchronized boolean isAvailable(int day) {
+        return calendar.isAvailable(day);
     }
 
-    public void bookRoom(int checkIn, int checkOut) {
-        for (int i = checkIn; i < checkOut; i++) {
-            availability[i - 1] = false;
+    /**
+     * Checks whether the room is free for every night from check-in up to,
+     * but not including, check-out.
+     *
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @return True if none of the nights in the range are booked.
+     */
+    public synchronized boolean isFree(int checkIn, int checkOut) {
+        if (metrics != null) {
+            metrics.recordAvailabilityCheck();
         }
+        return calendar.isFree(checkIn, checkOut);
     }
 
-    public void cancelBooking(int checkIn, int checkOut) {
-        for (int i = checkIn; i < checkOut; i++) {
-            availability[i - 1] = true;
+    /**
+     * Marks every night from check-in up to, but not including, check-out as booked.
+     *
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     */
+    public synchronized void book(int checkIn, int checkOut) {
+        calendar.book(checkIn, checkOut);
+        if (index != null) {
+            index.markBooked(slot, checkIn, checkOut);
+        }
+        if (metrics != null) {
+            metrics.recordNights(checkOut - checkIn);
         }
     }
-    
+
+    /**
+     * Books every night from check-in up to, but not including, check-out,
+     * but only if all of them are still free. The check and the booking
+     * happen under the room's lock, so two callers can never both succeed
+     * for overlapping nights.
+     *
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @return True if the room was booked, false if any night was already taken.
+     */
+    public synchronized boolean tryBook(int checkIn, int checkOut) {
+        if (!calendar.isFree(checkIn, checkOut)) {
+            return false;
+        }
+        book(checkIn, checkOut);
+        return true;
+    }
+
+    /**
+     * Books several stays at once under a single hold of the room's lock, so
+     * other callers see either none or all of them. Each stay is booked only if
+     * all of its nights are free, including of the stays booked before it.
+     *
+     * @param checkIns The check-in dates as epoch days.
+     * @param checkOuts The check-out dates as epoch days, in the same order.
+     * @return For each stay, true if it was booked.
+     */
+    public synchronized boolean[] tryBookAll(int[] checkIns, int[] checkOuts) {
+        boolean[] booked = new boolean[checkIns.length];
+        for (int i = 0; i < checkIns.length; i++) {
+            booked[i] = tryBook(checkIns[i], checkOuts[i]);
+        }
+        return booked;
+    }
+
+    /**
+     * Marks every night from check-in up to, but not including, check-out as available.
+     *
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     */
+    public synchronized void cancel(int checkIn, int checkOut) {
+        calendar.cancel(checkIn, checkOut);
+        if (index != null) {
+            index.markFree(slot, checkIn, checkOut);
+        }
+    }
+
+    /**
+     * Checks whether the room has any booked night.
+     *
+     * @return True if at least one night is booked.
+     */
+    public synchronized boolean hasBookings() {
+        return calendar.hasBookings();
+    }
+
+    /**
+     * Links the room to the indexes of the hotel it was added to, so that
+     * bookings and cancellations keep the free-room index up to date,
+     * quotes use the hotel's modifier sums, and both are counted in the hotel's metrics.
+     *
+     * @param index The hotel's free-room index, or null when the room leaves the hotel.
+     * @param prices The hotel's price index, or null when the room leaves the hotel.
+     * @param metrics The hotel's metrics, or null when the room leaves the hotel.
+     * @param slot The room's slot in the hotel.
+     */
+    synchronized void attach(FreeRoomIndex index, PriceIndex prices, HotelMetrics metrics, int slot) {
+        this.index = index;
+        this.prices = prices;
+        this.metrics = metrics;
+        this.slot = slot;
+    }
+
+    /**
+     * Replaces the room's date price modifiers with those of a hotel, from today to the end of the booking horizon.
+     *
+     * @param prices The hotel's price index.
+     */
+    synchronized void applyModifiers(PriceIndex prices) {
+        if (calendar.isEmpty() && prices.isDefault()) {
+            return; // Both have only the default modifier
+        }
+        for (int day = HotelCalendar.today(); day < HotelCalendar.lastCheckOut(); day++) {
+            int modifier = prices.getModifier(day);
+            if (calendar.getModifier(day) != modifier) {
+                calendar.setModifier(day, modifier);
+            }
+        }
+    }
+
+    /**
+     * Moves the room's bookings and modifiers to another calendar and keeps using that one.
+     *
+     * @param target The calendar to move to.
+     */
+    synchronized void moveCalendar(RoomCalendar target) {
+        target.copyFrom(calendar);
+        this.calendar = target;
+    }
+
+    public void bookRoom(int checkIn, int checkOut) {
+        book(checkIn, checkOut);
+    }
+
+    public void cancelBooking(int checkIn, int checkOut) {
+        cancel(checkIn, checkOut);
+    }
+
 
 }
@@ -0,0 +1,116 @@
+/**
+ * Stores the booked nights and date price modifiers of a single room.
+ * Days are epoch days. The calendar is split into 32-day pages (roughly one
+ * month each), each holding a bit mask of booked nights and the modifiers of
+ * its days. Pages live in a ring that covers more than the booking horizon;
+ * when the horizon rolls forward, the slot of a page that has fallen far
+ * enough into the past is reused for the new page.
+ *
+ * {@link HeapRoomCalendar} keeps the pages on the Java heap and
+ * {@link MappedRoomCalendar} keeps them in a memory-mapped file.
+ * Calendars are not thread-safe; {@link Room} serializes access to its calendar.
+ */
+public abstract class RoomCalendar {
+
+    protected static final int PAGE_SHIFT = 5;
+    protected static final int PAGE_DAYS = 1 << PAGE_SHIFT; // 32 days per page
+    protected static final int PAGE_SLOTS = 16; // 512 days, more than the booking horizon
+
+    /**
+     * Checks whether a day is available.
+     *
+     * @param day The day as an epoch day.
+     * @return True if the day is not booked.
+     */
+    public abstract boolean isAvailable(int day);
+
+    /**
+     * Checks whether every night from check-in up to, but not including, check-out is available.
+     *
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     * @return True if none of the nights in the range are booked.
+     */
+    public abstract boolean isFree(int checkIn, int checkOut);
+
+    /**
+     * Marks every night from check-in up to, but not including, check-out as booked.
+     *
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     */
+    public abstract void book(int checkIn, int checkOut);
+
+    /**
+     * Marks every night from check-in up to, but not including, check-out as available.
+     *
+     * @param checkIn The check-in date as an epoch day.
+     * @param checkOut The check-out date as an epoch day.
+     */
+    public abstract void cancel(int checkIn, int checkOut);
+
+    /**
+     * Checks whether any day held by the calendar is booked.
+     *
+     * @return True if at least one night is booked.
+     */
+    public abstract boolean hasBookings();
+
+    /**
+     * Gets the price modifier for a given day.
+     *
+     * @param day The day as an epoch day.
+     * @return The price modifier in basis points, {@link Money#ONE} if none was set.
+     */
+    public abstract int getModifier(int day);
+
+    /**
+     * Checks whether nothing has been written to the calendar since it was created.
+     *
+     * @return True if no night has been booked and no modifier set.
+     */
+    public abstract boolean isEmpty();
+
+    /**
+     * Sets the price modifier for a given day.
+     *
+     * @param day The day as an epoch day.
+     * @param modifier The price modifier in basis points ({@link Money#ONE} for 100%).
+     */
+    public abstract void setModifier(int day, int modifier);
+
+    /**
+     * Copies the bookings and modifiers of another calendar, from today to the end of the booking horizon.
+     *
+     * @param source The calendar to copy from.
+     */
+    public void copyFrom(RoomCalendar source) {
+        if (source.isEmpty()) {
+            return;
+        }
+        int today = HotelCalendar.today();
+        int end = today + HotelCalendar.HORIZON_DAYS;
+        for (int day = today; day < end; day++) {
+            if (!source.isAvailable(day)) {
+                book(day, day + 1);
+            }
+            int modifier = source.getModifier(day);
+            if (modifier != Money.ONE) {
+                setModifier(day, modifier);
+            }
+        }
+    }
+
+    /**
+     * Builds the bit mask for the part of [day, end) that falls on the page containing day.
+     */
+    protected static int pageMask(int day, int end) {
+        int from = day & (PAGE_DAYS - 1);
+        int to = Math.min(end - (day - from), PAGE_DAYS);
+        return (-1 >>> (PAGE_DAYS - (to - from))) << from;
+    }
+
+    protected static int nextPageStart(int day) {
+        return (day | (PAGE_DAYS - 1)) + 1;
+    }
+}
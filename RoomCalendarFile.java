@@ -0,0 +1,89 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * File of fixed-size room calendar records, mapped into memory.
+ * The record of the room in slot {@code s} (see {@link RoomStore}) starts at
+ * byte {@code s * MappedRoomCalendar.RECORD_SIZE}. The file is mapped in
+ * segments as rooms are added, so it grows with the hotel and is not limited
+ * by the 2 GB size of a single mapping.
+ *
+ * Bookings are rebuilt from the reservations when a hotel is loaded, so a
+ * record is cleared whenever a room takes over its slot; the file is working
+ * storage that keeps calendars off the heap, not a copy of the data.
+ */
+public class RoomCalendarFile implements AutoCloseable {
+
+    private static final int RECORDS_PER_SEGMENT = 4096; // About 9 MB per segment
+
+    private final Path file;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> segments;
+
+    /**
+     * Creates a calendar file.
+     *
+     * @param file The file.
+     * @throws FileAlreadyExistsException If the file already exists.
+     * @throws IOException If the file cannot be created.
+     */
+    public RoomCalendarFile(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.segments = new ArrayList<>();
+    }
+
+    /**
+     * Creates an empty calendar over the record of a room slot, mapping more of the file if needed.
+     *
+     * @param slot The room's slot.
+     * @return The calendar.
+     * @throws UncheckedIOException If the file cannot be grown or mapped.
+     */
+    public synchronized RoomCalendar calendar(int slot) {
+        int segment = slot / RECORDS_PER_SEGMENT;
+        while (segments.size() <= segment) {
+            long offset = (long) segments.size() * RECORDS_PER_SEGMENT * MappedRoomCalendar.RECORD_SIZE;
+            try {
+                segments.add(channel.map(FileChannel.MapMode.READ_WRITE, offset,
+                        (long) RECORDS_PER_SEGMENT * MappedRoomCalendar.RECORD_SIZE));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        int offset = (slot % RECORDS_PER_SEGMENT) * MappedRoomCalendar.RECORD_SIZE;
+        return new MappedRoomCalendar(segments.get(segment).slice(offset, MappedRoomCalendar.RECORD_SIZE));
+    }
+
+    /**
+     * Closes the file. Calendars created from it can still be read and written,
+     * as a mapping outlives the channel it was made from, but no more can be created.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        segments.clear();
+        channel.close();
+    }
+
+    /**
+     * Closes the file and deletes it. Calendars created from it can still be
+     * used as after {@link #close()}, their pages staying mapped until they are
+     * no longer referenced.
+     *
+     * @throws IOException If the file cannot be closed or deleted.
+     */
+    public synchronized void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * A free room found by a search across hotels, with the price of the stay,
+ * see {@link BookingService#searchAllHotels}.
+ */
+public class RoomOffer {
+
+    private final Hotel hotel;
+    private final Room room;
+    private final long price;
+
+    /**
+     * Constructs an offer.
+     *
+     * @param hotel The hotel the room is in.
+     * @param room The free room.
+     * @param price The price of the stay before discounts, in centavos.
+     */
+    public RoomOffer(Hotel hotel, Room room, long price) {
+        this.hotel = hotel;
+        this.room = room;
+        this.price = price;
+    }
+
+    /**
+     * Retrieves the hotel the room is in.
+     *
+     * @return The hotel.
+     */
+    public Hotel getHotel() {
+        return hotel;
+    }
+
+    /**
+     * Retrieves the free room.
+     *
+     * @return The room.
+     */
+    public Room getRoom() {
+        return room;
+    }
+
+    /**
+     * Retrieves the price of the stay before discounts.
+     *
+     * @return The price, in centavos.
+     */
+    public long getPrice() {
+        return price;
+    }
+}
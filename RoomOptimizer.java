@@ -0,0 +1,265 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chooses rooms for stays so that the free nights left in each room's
+ * calendar stay in runs long enough to sell.
+ *
+ * A stay placed in a room splits the free run it lands in into a run before
+ * it and a run after it. A run of a single night is an orphan night that
+ * will rarely sell, so {@link #fitCost(int, int)} scores a room by those two
+ * runs: an orphan costs far more than any run, and otherwise the shorter the
+ * runs the better, since a tight fit keeps the long runs of other rooms whole.
+ * {@link Hotel#findFreeRoomsBestFit(int, int, RoomType)} uses this score to
+ * pick a room when a guest does not ask for one.
+ *
+ * {@link #plan(Hotel, RoomType)} goes further and reshuffles future
+ * reservations that are not locked to their room between rooms of the same
+ * type, placing them again in check-in order by the same score. Like
+ * {@link FreeRoomIndex}, it keeps one bitset of rooms per night over the
+ * booking horizon, so finding the rooms free for a stay and measuring the
+ * runs around it look at 64 rooms per word operation.
+ */
+public class RoomOptimizer {
+
+    /** Fewest nights a free run needs to be worth selling; shorter runs are orphans. */
+    public static final int MIN_SELLABLE_NIGHTS = 2;
+
+    /** Free runs at least this long count as fitting a long stay. */
+    public static final int LONG_STAY_NIGHTS = 7;
+
+    /** Longest free run measured next to a stay; longer runs score as this long. */
+    public static final int MAX_GAP = 28;
+
+    private static final int ORPHAN_COST = 1_000; // More than any two runs of sellable length
+
+    private RoomOptimizer() {
+    }
+
+    /**
+     * Scores placing a stay between two free runs; lower is a better fit.
+     *
+     * @param before The free nights right before the stay, at most {@link #MAX_GAP}.
+     * @param after The free nights right after the stay, at most {@link #MAX_GAP}.
+     * @return The cost of the fit.
+     */
+    public static int fitCost(int before, int after) {
+        return gapCost(before) + gapCost(after);
+    }
+
+    private static int gapCost(int gap) {
+        if (gap == 0) {
+            return 0;
+        }
+        return gap < MIN_SELLABLE_NIGHTS ? ORPHAN_COST : Math.min(gap, MAX_GAP);
+    }
+
+    /**
+     * Plans new rooms for the unlocked future reservations of one room type,
+     * leaving the hotel as it is. Reservations that have already checked in
+     * and those locked to their room stay where they are. The plan is kept
+     * only if it leaves fewer orphan nights, or as many orphan nights and
+     * more free runs of at least {@link #LONG_STAY_NIGHTS} nights.
+     *
+     * @param hotel The hotel.
+     * @param type The room type whose reservations to move.
+     * @return The reservations to move and the room each moves to, empty if
+     *         there is nothing to gain; apply with {@link Hotel#moveReservations(Map)}.
+     */
+    public static Map<Reservation, Room> plan(Hotel hotel, RoomType type) {
+        int today = HotelCalendar.today();
+        int horizon = HotelCalendar.lastCheckOut() - today;
+        List<Room> rooms = new ArrayList<>();
+        int slotLimit = 0;
+        for (Room room : hotel.getRooms()) {
+            if (room.getType() == type) {
+                rooms.add(room);
+                slotLimit = Math.max(slotLimit, RoomStore.slotOf(room.getRoomNo()) + 1);
+            }
+        }
+        Map<Reservation, Room> moves = new LinkedHashMap<>();
+        if (rooms.size() < 2) {
+            return moves;
+        }
+        int[] indexOfSlot = new int[slotLimit];
+        Arrays.fill(indexOfSlot, -1);
+        for (int i = 0; i < rooms.size(); i++) {
+            indexOfSlot[RoomStore.slotOf(rooms.get(i).getRoomNo())] = i;
+        }
+
+        // One bitset of rooms per night over [today, today + horizon), bit set when the room is booked
+        int words = (rooms.size() + 63) >>> 6;
+        long[][] booked = new long[horizon][words];
+        for (int night = 0; night < horizon; night++) {
+            long[] slots = hotel.bookedSlots(today + night);
+            if (slots == null) {
+                continue;
+            }
+            for (int w = 0; w < slots.length && (w << 6) < slotLimit; w++) {
+                for (long word = slots[w]; word != 0; word &= word - 1) {
+                    int slot = (w << 6) + Long.numberOfTrailingZeros(word);
+                    if (slot < slotLimit && indexOfSlot[slot] >= 0) {
+                        set(booked[night], indexOfSlot[slot]);
+                    }
+                }
+            }
+        }
+
+        List<Reservation> movable = new ArrayList<>();
+        for (Reservation reservation : hotel.getReservations()) {
+            Room room = reservation.getRoom();
+            int slot = RoomStore.slotOf(room.getRoomNo());
+            if (reservation.isLocked() || reservation.getCheckIn() <= today
+                    || reservation.getCheckOut() > today + horizon
+                    || slot < 0 || slot >= slotLimit || indexOfSlot[slot] < 0
+                    || rooms.get(indexOfSlot[slot]) != room) {
+                continue;
+            }
+            movable.add(reservation);
+        }
+        if (movable.isEmpty()) {
+            return moves;
+        }
+        long before = score(booked, rooms.size());
+
+        // Longer stays first among those checking in on the same day, as they are the hardest to place
+        movable.sort(Comparator.comparingInt(Reservation::getCheckIn)
+                .thenComparingInt(reservation -> reservation.getCheckIn() - reservation.getCheckOut()));
+        int[] current = new int[movable.size()];
+        for (int m = 0; m < movable.size(); m++) {
+            Reservation reservation = movable.get(m);
+            current[m] = indexOfSlot[RoomStore.slotOf(reservation.getRoom().getRoomNo())];
+            for (int night = reservation.getCheckIn() - today; night < reservation.getCheckOut() - today; night++) {
+                clear(booked[night], current[m]);
+            }
+        }
+
+        int[] placed = new int[movable.size()];
+        int[] runsBefore = new int[words << 6];
+        int[] runsAfter = new int[words << 6];
+        long[] free = new long[words];
+        for (int m = 0; m < movable.size(); m++) {
+            Reservation reservation = movable.get(m);
+            int in = reservation.getCheckIn() - today;
+            int out = reservation.getCheckOut() - today;
+            Arrays.fill(free, -1L);
+            free[words - 1] = -1L >>> ((words << 6) - rooms.size()); // Bits past the last room are never free
+            for (int night = in; night < out; night++) {
+                for (int w = 0; w < words; w++) {
+                    free[w] &= ~booked[night][w];
+                }
+            }
+            freeRuns(booked, free, in - 1, -1, Math.min(in, MAX_GAP), runsBefore);
+            freeRuns(booked, free, out, 1, Math.min(horizon - out, MAX_GAP), runsAfter);
+            int best = -1;
+            int bestCost = Integer.MAX_VALUE;
+            for (int w = 0; w < words; w++) {
+                for (long word = free[w]; word != 0; word &= word - 1) {
+                    int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                    int cost = fitCost(runsBefore[i], runsAfter[i]);
+                    if (cost < bestCost || (cost == bestCost && i == current[m])) {
+                        best = i;
+                        bestCost = cost;
+                    }
+                }
+            }
+            if (best < 0) {
+                return moves; // Placing earlier stays first boxed this one out; keep the rooms as they are
+            }
+            placed[m] = best;
+            for (int night = in; night < out; night++) {
+                set(booked[night], best);
+            }
+        }
+
+        if (!improves(score(booked, rooms.size()), before)) {
+            return moves;
+        }
+        for (int m = 0; m < movable.size(); m++) {
+            if (placed[m] != current[m]) {
+                moves.put(movable.get(m), rooms.get(placed[m]));
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Measures how many nights in a row each room in a set is free, walking
+     * one way from a night for up to a limit, all rooms a word at a time like
+     * {@link FreeRoomIndex#freeRuns(long[], int, int, int)}.
+     */
+    private static void freeRuns(long[][] booked, long[] rooms, int from, int step, int limit, int[] runs) {
+        long[] open = rooms.clone();
+        int night = from;
+        for (int k = 0; k < limit; k++, night += step) {
+            boolean anyOpen = false;
+            for (int w = 0; w < open.length; w++) {
+                long ended = open[w] & booked[night][w];
+                open[w] &= ~ended;
+                while (ended != 0) {
+                    runs[(w << 6) + Long.numberOfTrailingZeros(ended)] = k;
+                    ended &= ended - 1;
+                }
+                anyOpen |= open[w] != 0;
+            }
+            if (!anyOpen) {
+                return;
+            }
+        }
+        for (int w = 0; w < open.length; w++) {
+            for (long word = open[w]; word != 0; word &= word - 1) {
+                runs[(w << 6) + Long.numberOfTrailingZeros(word)] = limit;
+            }
+        }
+    }
+
+    /**
+     * Scores the rooms' calendars as orphan nights in the high half and long
+     * free runs in the low half. A run reaching the end of the horizon is
+     * never an orphan, as the nights after it are not on sale yet.
+     */
+    private static long score(long[][] booked, int roomCount) {
+        long orphans = 0;
+        long longRuns = 0;
+        for (int i = 0; i < roomCount; i++) {
+            int run = 0;
+            for (long[] night : booked) {
+                if ((night[i >>> 6] & (1L << i)) == 0) {
+                    run++;
+                    continue;
+                }
+                if (run > 0 && run < MIN_SELLABLE_NIGHTS) {
+                    orphans += run;
+                } else if (run >= LONG_STAY_NIGHTS) {
+                    longRuns++;
+                }
+                run = 0;
+            }
+            if (run >= LONG_STAY_NIGHTS) {
+                longRuns++;
+            }
+        }
+        return (orphans << 32) | longRuns;
+    }
+
+    private static boolean improves(long after, long before) {
+        long orphansAfter = after >>> 32;
+        long orphansBefore = before >>> 32;
+        if (orphansAfter != orphansBefore) {
+            return orphansAfter < orphansBefore;
+        }
+        return (after & 0xFFFFFFFFL) > (before & 0xFFFFFFFFL);
+    }
+
+    private static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private static void clear(long[] bits, int index) {
+        bits[index >>> 6] &= ~(1L << index);
+    }
+}
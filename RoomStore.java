@@ -0,0 +1,203 @@
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Holds the rooms of a hotel, indexed by slot.
+ * Room numbers follow the floor layout used by the hotel: floor * 100 + position,
+ * with positions 1 to 10 on every floor (101-110, 201-210, ..., 1101-1110, ...).
+ * A room's slot is derived directly from its number, so lookups are a bounds
+ * check and an array read, and walking the slots in order visits the rooms
+ * floor by floor. The store grows by doubling and has no fixed capacity.
+ */
+public class RoomStore implements Iterable<Room> {
+
+    /** Number of rooms on every floor. */
+    public static final int ROOMS_PER_FLOOR = 10;
+
+    private Room[] slots;
+    private int size;
+    private BitSet occupied; // Bit i is set when slot i holds a room
+    private int firstFree; // Lowest slot that does not hold a room
+
+    /**
+     * Constructs an empty room store.
+     *
+     * @param initialCapacity The number of slots to allocate up front.
+     */
+    public RoomStore(int initialCapacity) {
+        this.slots = new Room[Math.max(initialCapacity, ROOMS_PER_FLOOR)];
+        this.size = 0;
+        this.occupied = new BitSet(slots.length);
+        this.firstFree = 0;
+    }
+
+    /**
+     * Converts a room number to its slot.
+     *
+     * @param roomNo The room number.
+     * @return The slot, or -1 if the number does not follow the floor layout.
+     */
+    public static int slotOf(int roomNo) {
+        int floor = roomNo / 100;
+        int position = roomNo % 100;
+        if (floor < 1 || position < 1 || position > ROOMS_PER_FLOOR) {
+            return -1;
+        }
+        return (floor - 1) * ROOMS_PER_FLOOR + (position - 1);
+    }
+
+    /**
+     * Converts a slot to its room number.
+     *
+     * @param slot The slot.
+     * @return The room number.
+     */
+    public static int roomNumberOf(int slot) {
+        int floor = slot / ROOMS_PER_FLOOR + 1;
+        int position = slot % ROOMS_PER_FLOOR + 1;
+        return floor * 100 + position;
+    }
+
+    /**
+     * Retrieves the number of rooms in the store.
+     *
+     * @return The number of rooms.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves the number of slots that may currently hold a room.
+     * Every occupied slot is below this value.
+     *
+     * @return One past the highest slot that can be occupied.
+     */
+    public int slotLimit() {
+        return occupied.length();
+    }
+
+    /**
+     * Adds a room to the slot matching its room number.
+     *
+     * @param room The room to add.
+     * @return True if the room was added, false if its number is invalid or already taken.
+     */
+    public boolean add(Room room) {
+        int slot = slotOf(room.getRoomNo());
+        if (slot < 0) {
+            return false;
+        }
+        if (slot >= slots.length) {
+            Room[] grown = new Room[Math.max(slots.length * 2, slot + 1)];
+            System.arraycopy(slots, 0, grown, 0, slots.length);
+            slots = grown;
+        }
+        if (slots[slot] != null) {
+            return false;
+        }
+        slots[slot] = room;
+        occupied.set(slot);
+        size++;
+        if (slot == firstFree) {
+            firstFree = occupied.nextClearBit(slot + 1);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the room with the given number.
+     *
+     * @param roomNo The room number.
+     * @return The removed room, or null if there was no such room.
+     */
+    public Room remove(int roomNo) {
+        Room room = get(roomNo);
+        if (room == null) {
+            return null;
+        }
+        int slot = slotOf(roomNo);
+        slots[slot] = null;
+        occupied.clear(slot);
+        size--;
+        if (slot < firstFree) {
+            firstFree = slot;
+        }
+        return room;
+    }
+
+    /**
+     * Finds the room with the given number.
+     *
+     * @param roomNo The room number.
+     * @return The room, or null if there is no such room.
+     */
+    public Room get(int roomNo) {
+        int slot = slotOf(roomNo);
+        if (slot < 0 || slot >= slots.length) {
+            return null;
+        }
+        return slots[slot];
+    }
+
+    /**
+     * Retrieves the room in a slot.
+     *
+     * @param slot The slot.
+     * @return The room, or null if the slot is empty.
+     */
+    public Room getAt(int slot) {
+        return slot < slots.length ? slots[slot] : null;
+    }
+
+    /**
+     * Finds the lowest room number that is not in use.
+     *
+     * @return The next free room number.
+     */
+    public int nextFreeRoomNumber() {
+        return roomNumberOf(firstFree);
+    }
+
+    /**
+     * Copies the rooms into an array in floor order.
+     *
+     * @return An array holding every room, ordered by room number.
+     */
+    public Room[] toArray() {
+        Room[] rooms = new Room[size];
+        int i = 0;
+        for (Room room : this) {
+            rooms[i++] = room;
+        }
+        return rooms;
+    }
+
+    /**
+     * Iterates over the rooms in floor order.
+     *
+     * @return An iterator over every room, ordered by room number.
+     */
+    @Override
+    public Iterator<Room> iterator() {
+        return new Iterator<Room>() {
+            private int next = occupied.nextSetBit(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public Room next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                Room room = slots[next];
+                next = occupied.nextSetBit(next + 1);
+                return room;
+            }
+        };
+    }
+}
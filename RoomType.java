@@ -0,0 +1,41 @@
+/**
+ * The kinds of rooms a hotel can offer.
+ */
+public enum RoomType {
+    STANDARD("Standard"),
+    DELUXE("Deluxe"),
+    EXECUTIVE("Executive");
+
+    private final String displayName;
+
+    RoomType(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * Retrieves the name of the room type as shown to users.
+     *
+     * @return The display name.
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Creates a room of this type.
+     *
+     * @param roomNo The room number.
+     * @param basePrice The base price per night, in centavos.
+     * @return The new room.
+     */
+    public Room newRoom(int roomNo, long basePrice) {
+        switch (this) {
+            case DELUXE:
+                return new DeluxeRoom(roomNo, basePrice);
+            case EXECUTIVE:
+                return new ExecutiveRoom(roomNo, basePrice);
+            default:
+                return new StandardRoom(roomNo, basePrice);
+        }
+    }
+}
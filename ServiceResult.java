@@ -0,0 +1,64 @@
+/**
+ * Result of a {@link BookingService} operation that produces a value.
+ *
+ * @param <T> The type of the value produced on success.
+ */
+public class ServiceResult<T> {
+
+    private final ServiceStatus status;
+    private final T value;
+
+    private ServiceResult(ServiceStatus status, T value) {
+        this.status = status;
+        this.value = value;
+    }
+
+    /**
+     * Creates a successful result.
+     *
+     * @param value The value produced.
+     * @param <T> The type of the value.
+     * @return The result.
+     */
+    public static <T> ServiceResult<T> ok(T value) {
+        return new ServiceResult<>(ServiceStatus.OK, value);
+    }
+
+    /**
+     * Creates a failed result.
+     *
+     * @param status The reason for the failure.
+     * @param <T> The type of the value that would have been produced.
+     * @return The result.
+     */
+    public static <T> ServiceResult<T> failure(ServiceStatus status) {
+        return new ServiceResult<>(status, null);
+    }
+
+    /**
+     * Retrieves the outcome of the operation.
+     *
+     * @return The status.
+     */
+    public ServiceStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Retrieves the value produced by the operation.
+     *
+     * @return The value, or null if the operation failed.
+     */
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * Checks whether the operation succeeded.
+     *
+     * @return True if the status is OK.
+     */
+    public boolean isOk() {
+        return status == ServiceStatus.OK;
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Outcome of an operation performed through {@link BookingService}.
+ */
+public enum ServiceStatus {
+    OK("Success."),
+    HOTEL_NOT_FOUND("Hotel not found."),
+    DUPLICATE_HOTEL_NAME("Hotel with this name already exists."),
+    INVALID_HOTEL_NAME("Invalid hotel name."),
+    INVALID_ROOM_COUNT("Invalid number of rooms."),
+    ROOM_NOT_FOUND("Room not found."),
+    ROOM_HAS_RESERVATIONS("Room has a reservation and cannot be removed!"),
+    HOTEL_HAS_RESERVATIONS("Cannot update Base Price as there are still existing reservations"),
+    INVALID_PRICE("The Price is too low! Base Prices should be Php100 minimum"),
+    INVALID_MODIFIER("Invalid modifier. Please enter a value between 0.5 and 1.5."),
+    INVALID_DATE("Invalid date."),
+    INVALID_DATES("Invalid check-in or check-out dates."),
+    INVALID_GUEST_NAME("Invalid guest name. Please enter a valid name."),
+    INVALID_DISCOUNT_CODE("Invalid discount code."),
+    DISCOUNT_NOT_APPLICABLE("This discount code is not applicable to your check-in and check-out dates."),
+    NO_ROOM_AVAILABLE("No rooms available for the selected dates."),
+    ROOM_ALREADY_BOOKED("The room is already booked for the selected dates."),
+    RESERVATION_NOT_FOUND("Reservation not found."),
+    HOLD_NOT_FOUND("The hold has expired or was already used."),
+    INVALID_HOLD_TIME("Invalid hold time."),
+    INVALID_LIMIT("Invalid number of results."),
+    INVALID_REQUEST("The request could not be read.");
+
+    private final String message;
+
+    ServiceStatus(String message) {
+        this.message = message;
+    }
+
+    /**
+     * Retrieves a message describing the outcome, suitable for showing to users.
+     *
+     * @return The message.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Checks whether the operation succeeded.
+     *
+     * @return True if the status is OK.
+     */
+    public boolean isOk() {
+        return this == OK;
+    }
+}
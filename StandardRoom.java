@@ -3,12 +3,12 @@
  */
 public class StandardRoom extends Room {
 
-    public StandardRoom(int roomNo, float basePrice) {
-        super(roomNo, basePrice);
+    public StandardRoom(int roomNo, long basePrice) {
+        super(roomNo, basePrice, RoomType.STANDARD);
     }
 
     @Override
-    public float getPrice() {
+    public long getPrice() {
         return getBasePrice(); // Standard room rate is the base price
     }
     
@@ -0,0 +1,124 @@
+import java.util.List;
+import java.util.Random;
+
+import benchmarks.BookingFixture;
+
+/**
+ * {@link BookingFixture} over a hotel built for one combination of benchmark
+ * parameters: the number of rooms, the number of days ahead that stays are
+ * spread over (the horizon), and the share of room-nights already booked in
+ * that horizon (the density).
+ *
+ * Benchmarks that book a reservation cancel it again in the same operation and
+ * reuse one reservation ID for every booking, so the hotel and its reservation
+ * index stay the same size from one iteration to the next.
+ */
+public class BookingBenchmarkFixture implements BookingFixture {
+
+    private static final int INPUTS = 1 << 12; // Pre-generated inputs, cycled through
+    private static final long PRICE = Money.ofPesos(1299);
+
+    private final Hotel hotel;
+    private final int[] roomNos;
+    private final int[] checkIns;
+    private final int[] checkOuts;
+    private final DiscountChain discounts;
+    private final QuoteCache quotes;
+    private final long scratchId; // Given to every reservation a benchmark books and cancels
+
+    /**
+     * Builds the hotel and inputs.
+     *
+     * @param roomCount The number of rooms.
+     * @param horizon The number of days ahead over which stays are drawn.
+     * @param density The share of room-nights booked beforehand.
+     */
+    public BookingBenchmarkFixture(int roomCount, int horizon, double density) {
+        Random random = new Random(42);
+        hotel = new Hotel("Benchmark", roomCount);
+        for (int i = 0; i < roomCount; i++) {
+            hotel.addRoom(RoomType.values()[i % 3].newRoom(hotel.getNextAvailableRoomNumber(), PRICE));
+        }
+        Room[] rooms = hotel.getRooms();
+
+        int today = HotelCalendar.today();
+        int end = Math.min(today + horizon, HotelCalendar.lastCheckOut());
+        long id = 0;
+        for (Room room : rooms) {
+            int day = today;
+            while (day < end) {
+                int nights = Math.min(1 + random.nextInt(4), end - day);
+                if (random.nextDouble() < density) {
+                    hotel.addReservation(new Reservation("Guest " + id++, day, day + nights, room, DiscountChain.NONE));
+                }
+                day += nights;
+            }
+        }
+
+        roomNos = new int[INPUTS];
+        checkIns = new int[INPUTS];
+        checkOuts = new int[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            roomNos[i] = rooms[random.nextInt(rooms.length)].getRoomNo();
+            checkIns[i] = today + random.nextInt(Math.max(end - today - 1, 1));
+            checkOuts[i] = Math.min(checkIns[i] + 1 + random.nextInt(4), HotelCalendar.lastCheckOut());
+        }
+        discounts = hotel.getDiscounts().compile(BookingService.DISCOUNT_I_WORK_HERE);
+        quotes = new QuoteCache(QuoteCache.DEFAULT_CAPACITY);
+        scratchId = hotel.getNumReservations() + 1L; // Set-up reservations took IDs 1 to n
+    }
+
+    @Override
+    public boolean isFree(int i) {
+        int at = i & (INPUTS - 1);
+        return hotel.findRoom(roomNos[at]).isFree(checkIns[at], checkOuts[at]);
+    }
+
+    @Override
+    public long quote(int i) {
+        int at = i & (INPUTS - 1);
+        // What Reservation.calculateTotalPrice() used to do: modifiers, then discounts
+        return new Reservation("Guest", checkIns[at], checkOuts[at], hotel.findRoom(roomNos[at]), discounts)
+                .getTotalPrice();
+    }
+
+    @Override
+    public long cachedQuote(int i) {
+        int at = i & (INPUTS - 1);
+        return quotes.quote(hotel, hotel.findRoom(roomNos[at]), checkIns[at], checkOuts[at], discounts);
+    }
+
+    @Override
+    public int findRoom(int i) {
+        return hotel.findRoom(roomNos[i & (INPUTS - 1)]).getRoomNo();
+    }
+
+    @Override
+    public int nextRoomNumber() {
+        return hotel.getNextAvailableRoomNumber();
+    }
+
+    @Override
+    public long addRemove(int i) {
+        int at = i & (INPUTS - 1);
+        return bookAndCancel(hotel.findRoom(roomNos[at]), checkIns[at], checkOuts[at]);
+    }
+
+    @Override
+    public long searchBook(int i) {
+        int at = i & (INPUTS - 1);
+        // A guest's full cycle: look for a free room of a type, book the first one
+        List<Room> free = hotel.findFreeRooms(checkIns[at], checkOuts[at], RoomType.values()[at % 3]);
+        return free.isEmpty() ? 0 : bookAndCancel(free.get(0), checkIns[at], checkOuts[at]);
+    }
+
+    private long bookAndCancel(Room room, int checkIn, int checkOut) {
+        Reservation reservation = new Reservation("Guest", checkIn, checkOut, room, DiscountChain.NONE);
+        reservation.setId(scratchId);
+        if (!hotel.addReservation(reservation)) {
+            return 0;
+        }
+        hotel.removeReservation(reservation); // Keeps the density steady
+        return reservation.getTotalPrice();
+    }
+}
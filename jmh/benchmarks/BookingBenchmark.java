@@ -0,0 +1,97 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH microbenchmarks for the availability, pricing and booking hot paths.
+ *
+ * Each benchmark runs against a hotel built for every combination of the
+ * parameters, see {@code BookingBenchmarkFixture}. Every thread gets its own
+ * hotel, as the booking benchmarks change it. Run with
+ * <pre>
+ * gradle jmh
+ * gradle jmh -Pjmh='BookingBenchmark.searchBook -p rooms=1000 -p density=0.5'
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class BookingBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int rooms;
+
+    @Param({"30", "366"})
+    public int horizon;
+
+    @Param({"0", "0.5", "0.9"})
+    public double density;
+
+    private BookingFixture fixture;
+    private int next; // Index of the next input
+
+    /**
+     * Builds the hotel and inputs for this combination of parameters.
+     *
+     * @throws ReflectiveOperationException If the fixture cannot be built.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        // Looked up by name, as a named package cannot refer to the default package
+        fixture = (BookingFixture) Class.forName("BookingBenchmarkFixture")
+                .getConstructor(int.class, int.class, double.class)
+                .newInstance(rooms, horizon, density);
+    }
+
+    @Benchmark
+    public void isFree(Blackhole blackhole) {
+        blackhole.consume(fixture.isFree(next++));
+    }
+
+    @Benchmark
+    public void quote(Blackhole blackhole) {
+        blackhole.consume(fixture.quote(next++));
+    }
+
+    @Benchmark
+    public void cachedQuote(Blackhole blackhole) {
+        blackhole.consume(fixture.cachedQuote(next++));
+    }
+
+    @Benchmark
+    public void findRoom(Blackhole blackhole) {
+        blackhole.consume(fixture.findRoom(next++));
+    }
+
+    @Benchmark
+    public void nextRoomNumber(Blackhole blackhole) {
+        blackhole.consume(fixture.nextRoomNumber());
+    }
+
+    @Benchmark
+    public void addRemove(Blackhole blackhole) {
+        blackhole.consume(fixture.addRemove(next++));
+    }
+
+    @Benchmark
+    public void searchBook(Blackhole blackhole) {
+        blackhole.consume(fixture.searchBook(next++));
+    }
+}
@@ -0,0 +1,47 @@
+package benchmarks;
+
+/**
+ * Hotel and inputs that {@link BookingBenchmark} measures against.
+ *
+ * JMH only accepts benchmarks in a named package, and the application lives in
+ * the default package, which named packages cannot refer to. The fixture is
+ * therefore implemented in the default package by {@code BookingBenchmarkFixture}
+ * and reached through this interface, so a benchmark costs one interface call
+ * on top of the work it measures.
+ *
+ * Each operation works on the i-th of a set of inputs generated up front,
+ * cycling through them.
+ */
+public interface BookingFixture {
+
+    /** Checks whether an input's room is free for its stay. */
+    boolean isFree(int i);
+
+    /** Prices an input's stay from scratch, with date modifiers and discounts. */
+    long quote(int i);
+
+    /** Prices an input's stay through a quote cache big enough for every input. */
+    long cachedQuote(int i);
+
+    /** Finds an input's room by number. */
+    int findRoom(int i);
+
+    /** Finds the lowest free room number. */
+    int nextRoomNumber();
+
+    /**
+     * Books an input's room for its stay and cancels the booking again, so the
+     * hotel stays the same from one call to the next.
+     *
+     * @return The price of the stay, or 0 if the room was taken.
+     */
+    long addRemove(int i);
+
+    /**
+     * Searches for a free room of a type for an input's stay, books the first
+     * one found and cancels the booking again.
+     *
+     * @return The price of the stay, or 0 if no room was free.
+     */
+    long searchBook(int i);
+}
@@ -0,0 +1,69 @@
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Checks that a search across hotels turns away a negative limit instead of
+ * failing, both through {@link BookingService} and through {@link BookingServer}.
+ *
+ * The project has no test framework, so this runs as a plain program and
+ * exits with status 1 on the first failed check. {@code gradle check} runs it,
+ * or by hand:
+ * <pre>
+ * javac -d out *.java test/*.java
+ * java -cp out SearchLimitTest
+ * </pre>
+ */
+public class SearchLimitTest {
+
+    public static void main(String[] args) throws IOException {
+        BookingService service = new BookingService();
+        service.createHotel("Hilton", 3, 2, 1);
+        int checkIn = HotelCalendar.today() + 1;
+        int checkOut = checkIn + 2;
+
+        ServiceResult<List<RoomOffer>> negative = service.searchAllHotels(checkIn, checkOut, null, Long.MAX_VALUE, -1);
+        check(negative.getStatus() == ServiceStatus.INVALID_LIMIT, "negative limit gives INVALID_LIMIT");
+
+        ServiceResult<List<RoomOffer>> none = service.searchAllHotels(checkIn, checkOut, null, Long.MAX_VALUE, 0);
+        check(none.isOk() && none.getValue().isEmpty(), "limit 0 gives no offers");
+
+        ServiceResult<List<RoomOffer>> some = service.searchAllHotels(checkIn, checkOut, null, Long.MAX_VALUE, 4);
+        check(some.isOk() && some.getValue().size() == 4, "limit 4 gives 4 offers");
+
+        BookingServer server = new BookingServer(service, 0);
+        server.start();
+        try {
+            String query = "/search?checkIn=" + LocalDate.ofEpochDay(checkIn)
+                    + "&checkOut=" + LocalDate.ofEpochDay(checkOut);
+            check(get(server, query + "&limit=-1") == 400, "server answers 400 to a negative limit");
+            check(get(server, query + "&limit=2") == 200, "server answers 200 to a valid limit");
+        } finally {
+            server.stop();
+        }
+        System.out.println("All checks passed.");
+    }
+
+    /**
+     * Sends a GET request to the server and returns the response code.
+     */
+    private static int get(BookingServer server, String path) throws IOException {
+        URI uri = URI.create("http://localhost:" + server.getPort() + path);
+        HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static void check(boolean passed, String what) {
+        if (!passed) {
+            System.out.println("FAILED: " + what);
+            System.exit(1);
+        }
+        System.out.println("ok: " + what);
+    }
+}